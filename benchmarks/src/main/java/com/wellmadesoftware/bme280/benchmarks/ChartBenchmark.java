@@ -0,0 +1,72 @@
+package com.wellmadesoftware.bme280.benchmarks;
+
+import com.wellmadesoftware.bme280.chart.ChartGenerator;
+import com.wellmadesoftware.bme280.data.model.HiLowAvg;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import org.jfree.chart.JFreeChart;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and encoding the hourly (60 points), daily (1440) and weekly (10080) charts, and a year
+ * (525600), all downsampled to the chart width.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ChartBenchmark {
+
+    @Param({"60", "1440", "10080", "525600"})
+    public int points;
+
+    private final ChartGenerator generator = new ChartGenerator(System.getProperty("java.io.tmpdir"));
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(256 * 1024);
+    private List<Measurement> data;
+    private HiLowAvg hiLowAvg;
+    private JFreeChart chart;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        data = new ArrayList<>(points);
+        hiLowAvg = new HiLowAvg("bench");
+        for (int i = 0; i < points; i++) {
+            Measurement measurement = new Measurement();
+            measurement.setTimestamp(now - (points - i) * 60000L);
+            measurement.setTemperature(20 + random.nextFloat() * 5);
+            measurement.setCpuTemp(45 + random.nextFloat() * 10);
+            data.add(measurement);
+            hiLowAvg.addValue(measurement.getTemperature());
+        }
+        chart = generator.createChart(data, "Benchmark", hiLowAvg);
+    }
+
+    @Benchmark
+    public JFreeChart createChart() {
+        return generator.createChart(data, "Benchmark", hiLowAvg);
+    }
+
+    @Benchmark
+    public int encodeChart() throws IOException {
+        out.reset();
+        generator.writeChart(chart, out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int createAndEncodeChart() throws IOException {
+        out.reset();
+        generator.writeChart(generator.createChart(data, "Benchmark", hiLowAvg), out);
+        return out.size();
+    }
+}
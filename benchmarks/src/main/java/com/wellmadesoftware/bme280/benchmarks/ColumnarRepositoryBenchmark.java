@@ -0,0 +1,103 @@
+package com.wellmadesoftware.bme280.benchmarks;
+
+import com.wellmadesoftware.bme280.data.exception.DBException;
+import com.wellmadesoftware.bme280.data.model.Channel;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import com.wellmadesoftware.bme280.data.repository.ColumnarMeasurementRepository;
+import com.wellmadesoftware.bme280.data.repository.MeasurementQuery;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.wellmadesoftware.bme280.chart.ChartGenerator.*;
+
+/**
+ * ColumnarMeasurementRepository range queries and single channel streams, on the same one row per
+ * minute layout as {@link RepositoryBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColumnarRepositoryBenchmark {
+
+    private static final long MINUTE = 60000;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private ColumnarMeasurementRepository repository;
+    private long end;
+
+    @Setup(Level.Trial)
+    public void setup() throws DBException {
+        File dir = new File(System.getProperty("bme280.bench.dir", System.getProperty("java.io.tmpdir")));
+        File columns = new File(dir, String.format("bme280-bench-%d.columns", rows));
+        File marker = new File(dir, String.format("bme280-bench-%d.columns.done", rows));
+        end = 1500000000000L;
+        if (!marker.isFile()) {
+            populate(columns);
+            try {
+                marker.createNewFile();
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        repository = new ColumnarMeasurementRepository(columns.getAbsolutePath());
+    }
+
+    private void populate(File columns) throws DBException {
+        ColumnarMeasurementRepository store = new ColumnarMeasurementRepository(columns.getAbsolutePath());
+        store.deleteRange(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+        Random random = new Random(42);
+        for (int row = 0; row < rows; row++) {
+            Measurement measurement = new Measurement();
+            measurement.setTimestamp(end - (rows - row) * MINUTE);
+            measurement.setTemperature(20 + random.nextFloat() * 5);
+            measurement.setHumidity(40 + random.nextFloat() * 20);
+            measurement.setPressure(100000 + random.nextFloat() * 2000);
+            measurement.setCpuTemp(45 + random.nextFloat() * 10);
+            measurement.setCpuCoreVoltage(1.2f);
+            store.create(measurement);
+        }
+        store.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Benchmark
+    public List<Measurement> listDay() {
+        return repository.list(end - DAY, end);
+    }
+
+    @Benchmark
+    public List<Measurement> listWeek() {
+        return repository.list(end - WEEK, end);
+    }
+
+    @Benchmark
+    public void streamWeekTemperature(Blackhole blackhole) {
+        repository.stream(MeasurementQuery.range(end - WEEK, end).channels(Channel.TEMPERATURE), (timestamp, values) -> {
+            blackhole.consume(values[0]);
+            return true;
+        });
+    }
+
+    @Benchmark
+    public void streamYearTemperatureHourly(Blackhole blackhole) {
+        repository.stream(MeasurementQuery.range(end - 365 * DAY, end).channels(Channel.TEMPERATURE).step(HOUR), (timestamp, values) -> {
+            blackhole.consume(values[0]);
+            return true;
+        });
+    }
+}
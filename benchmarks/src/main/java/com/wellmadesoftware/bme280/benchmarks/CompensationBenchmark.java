@@ -0,0 +1,77 @@
+package com.wellmadesoftware.bme280.benchmarks;
+
+import com.wellmadesoftware.bme280.calibration.CalibrationData;
+import com.wellmadesoftware.bme280.compensation.Compensator;
+import com.wellmadesoftware.bme280.compensation.FloatCompensator;
+import com.wellmadesoftware.bme280.compensation.IntegerCompensator;
+import com.wellmadesoftware.bme280.transport.SimulatedBME280Transport;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Float versus fixed point compensation of a full temperature, pressure and humidity sample.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompensationBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    private final CalibrationData calibration = SimulatedBME280Transport.DATASHEET_CALIBRATION;
+    private final Compensator floatCompensator = new FloatCompensator();
+    private final Compensator integerCompensator = new IntegerCompensator();
+
+    private final int[] adcT = new int[SAMPLES];
+    private final int[] adcP = new int[SAMPLES];
+    private final int[] adcH = new int[SAMPLES];
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        // Raw values around 15 - 35 C, 950 - 1050 hPa and 20 - 80 %RH for the datasheet trimming values
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            adcT[i] = 480000 + random.nextInt(80000);
+            adcP[i] = 380000 + random.nextInt(60000);
+            adcH[i] = 24000 + random.nextInt(16000);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (SAMPLES - 1);
+        return index;
+    }
+
+    @Benchmark
+    public void floatCompensation(Blackhole blackhole) {
+        sample(floatCompensator, next(), blackhole);
+    }
+
+    @Benchmark
+    public void integerCompensation(Blackhole blackhole) {
+        sample(integerCompensator, next(), blackhole);
+    }
+
+    @Benchmark
+    public void integerFixedPoint(Blackhole blackhole) {
+        int i = next();
+        int tFine = IntegerCompensator.compensateFineTemperature(calibration, adcT[i]);
+        blackhole.consume(IntegerCompensator.compensateTemperature(tFine));
+        blackhole.consume(IntegerCompensator.compensatePressure(calibration, adcP[i], tFine));
+        blackhole.consume(IntegerCompensator.compensateHumidity(calibration, adcH[i], tFine));
+    }
+
+    private void sample(Compensator compensator, int i, Blackhole blackhole) {
+        int tFine = compensator.fineTemperature(calibration, adcT[i]);
+        blackhole.consume(compensator.temperature(calibration, adcT[i]));
+        blackhole.consume(compensator.pressure(calibration, adcP[i], tFine));
+        blackhole.consume(compensator.humidity(calibration, adcH[i], tFine));
+    }
+}
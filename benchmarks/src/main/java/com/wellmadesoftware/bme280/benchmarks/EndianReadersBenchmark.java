@@ -0,0 +1,61 @@
+package com.wellmadesoftware.bme280.benchmarks;
+
+import com.wellmadesoftware.bme280.calibration.CalibrationData;
+import com.wellmadesoftware.bme280.transport.SimulatedBME280Transport;
+import com.wellmadesoftware.bme280.utils.EndianReaders;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.wellmadesoftware.bme280.BME280.BME280_I2CADDR;
+import static com.wellmadesoftware.bme280.BME280.BME280_REGISTER_PRESSURE_DATA;
+
+/**
+ * Raw byte decoding in EndianReaders, from buffers and through a zero latency simulated bus.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EndianReadersBenchmark {
+
+    private final SimulatedBME280Transport transport = new SimulatedBME280Transport();
+    private final byte[] bank1 = new byte[CalibrationData.BANK1_LENGTH];
+    private final byte[] bank2 = new byte[CalibrationData.BANK2_LENGTH];
+    private final byte[] data = new byte[8];
+
+    @Setup
+    public void setup() {
+        SimulatedBME280Transport.DATASHEET_CALIBRATION.encode(bank1, bank2);
+    }
+
+    @Benchmark
+    public int decodeWordsLE() {
+        int sum = 0;
+        for (int offset = 0; offset < 24; offset += 2)
+            sum += EndianReaders.readS16LE(bank1, offset);
+        return sum;
+    }
+
+    @Benchmark
+    public CalibrationData decodeCalibration() {
+        return CalibrationData.decode(bank1, bank2);
+    }
+
+    @Benchmark
+    public void readDataBlock(Blackhole blackhole) throws Exception {
+        EndianReaders.readBlock(transport, BME280_I2CADDR, BME280_REGISTER_PRESSURE_DATA, data, 0, data.length, false);
+        blackhole.consume(data);
+    }
+
+    @Benchmark
+    public int readDataBytes() throws Exception {
+        int sum = 0;
+        for (int i = 0; i < 8; i++)
+            sum += EndianReaders.readU8(transport, BME280_I2CADDR, BME280_REGISTER_PRESSURE_DATA + i, false);
+        return sum;
+    }
+}
@@ -0,0 +1,128 @@
+package com.wellmadesoftware.bme280.benchmarks;
+
+import com.wellmadesoftware.bme280.data.exception.DBException;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import com.wellmadesoftware.bme280.data.repository.MeasurementRepositoryImpl;
+import org.dizitart.no2.Nitrite;
+import org.dizitart.no2.objects.ObjectRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.wellmadesoftware.bme280.chart.ChartGenerator.*;
+
+/**
+ * MeasurementRepositoryImpl inserts and range queries against stores pre-populated with one row per minute.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+
+    private static final long MINUTE = 60000;
+    private static final int BATCH = 10000;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private MeasurementRepositoryImpl repository;
+    private long end;
+
+    @Setup(Level.Trial)
+    public void setup() throws DBException {
+        File dir = new File(System.getProperty("bme280.bench.dir", System.getProperty("java.io.tmpdir")));
+        File file = new File(dir, String.format("bme280-bench-%d.db", rows));
+        File marker = new File(dir, String.format("bme280-bench-%d.done", rows));
+        // Rows are laid out ending at a fixed time so a store can be reused across runs
+        end = 1500000000000L;
+        if (!marker.isFile()) {
+            file.delete();
+            populate(file);
+            try {
+                marker.createNewFile();
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        repository = new MeasurementRepositoryImpl(file.getAbsolutePath());
+        // A run that was killed part way never got to tear down
+        removeCreated();
+    }
+
+    private void populate(File file) {
+        Nitrite db = Nitrite.builder().compressed().filePath(file.getAbsolutePath()).openOrCreate();
+        ObjectRepository<Measurement> objects = db.getRepository(Measurement.class);
+        Random random = new Random(42);
+        Measurement[] batch = new Measurement[BATCH];
+        for (int row = 0; row < rows; row += BATCH) {
+            int size = Math.min(BATCH, rows - row);
+            if (size != batch.length)
+                batch = new Measurement[size];
+            for (int i = 0; i < size; i++)
+                batch[i] = measurement(end - (rows - row - i) * MINUTE, random);
+            objects.insert(batch);
+            db.commit();
+        }
+        db.close();
+    }
+
+    private static Measurement measurement(long timestamp, Random random) {
+        Measurement measurement = new Measurement();
+        measurement.setTimestamp(timestamp);
+        measurement.setTemperature(20 + random.nextFloat() * 5);
+        measurement.setHumidity(40 + random.nextFloat() * 20);
+        measurement.setPressure(100000 + random.nextFloat() * 2000);
+        measurement.setCpuTemp(45 + random.nextFloat() * 10);
+        measurement.setCpuCoreVoltage(1.2f);
+        return measurement;
+    }
+
+    @Benchmark
+    @Warmup(iterations = 1, batchSize = 100)
+    @org.openjdk.jmh.annotations.Measurement(iterations = 5, batchSize = 100)
+    @BenchmarkMode(Mode.SingleShotTime)
+    public Measurement create() throws DBException {
+        // Inserted after the fixture's last row, so they can be told apart and removed again
+        Measurement measurement = new Measurement();
+        measurement.setTimestamp(end + MINUTE);
+        return repository.create(measurement);
+    }
+
+    /**
+     * Take out the rows create() added, so the cached store is the same for every iteration and run
+     */
+    @TearDown(Level.Iteration)
+    public void removeCreated() throws DBException {
+        int deleted;
+        do {
+            deleted = repository.deleteRange(end, Long.MAX_VALUE, BATCH);
+        } while (deleted == BATCH);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Benchmark
+    public List<Measurement> listHour() {
+        return repository.list(end - HOUR, end);
+    }
+
+    @Benchmark
+    public List<Measurement> listDay() {
+        return repository.list(end - DAY, end);
+    }
+
+    @Benchmark
+    public List<Measurement> listWeek() {
+        return repository.list(end - WEEK, end);
+    }
+}
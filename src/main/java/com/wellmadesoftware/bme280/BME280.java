@@ -1,51 +1,58 @@
 package com.wellmadesoftware.bme280;
 
-import com.google.gson.Gson;
 import com.pi4j.io.i2c.I2CBus;
-import com.pi4j.io.i2c.I2CDevice;
 import com.pi4j.io.i2c.I2CFactory;
 
 import com.pi4j.system.SystemInfo;
+import com.wellmadesoftware.bme280.calibration.CalibrationData;
+import com.wellmadesoftware.bme280.calibration.CalibrationSnapshot;
+import com.wellmadesoftware.bme280.chart.ChartGenerator;
+import com.wellmadesoftware.bme280.compensation.CompensationMode;
+import com.wellmadesoftware.bme280.compensation.Compensator;
+import com.wellmadesoftware.bme280.config.Oversampling;
+import com.wellmadesoftware.bme280.config.SensorConfiguration;
+import com.wellmadesoftware.bme280.config.SensorMode;
 import com.wellmadesoftware.bme280.data.exception.DBException;
-import com.wellmadesoftware.bme280.data.model.AveragingMeasurement;
 import com.wellmadesoftware.bme280.data.model.Measurement;
+import com.wellmadesoftware.bme280.data.repository.MeasurementRepositories;
 import com.wellmadesoftware.bme280.data.repository.MeasurementRepository;
-import com.wellmadesoftware.bme280.data.repository.MeasurementRepositoryImpl;
+import com.wellmadesoftware.bme280.data.repository.RetentionPolicy;
+import com.wellmadesoftware.bme280.data.repository.RetentionService;
+import com.wellmadesoftware.bme280.data.repository.RollupMeasurementRepository;
+import com.wellmadesoftware.bme280.data.repository.WriteBehindMeasurementRepository;
+import com.wellmadesoftware.bme280.http.ApiServer;
+import com.wellmadesoftware.bme280.metrics.LatencyHistogram;
+import com.wellmadesoftware.bme280.metrics.Metrics;
+import com.wellmadesoftware.bme280.pipeline.BackpressurePolicy;
+import com.wellmadesoftware.bme280.pipeline.SamplingScheduler;
+import com.wellmadesoftware.bme280.pipeline.Stage;
+import com.wellmadesoftware.bme280.stats.SlidingWindowStatistics;
+import com.wellmadesoftware.bme280.trace.I2CTrace;
+import com.wellmadesoftware.bme280.transport.I2CTransport;
+import com.wellmadesoftware.bme280.transport.Pi4jTransport;
+import com.wellmadesoftware.bme280.transport.Transports;
 import com.wellmadesoftware.bme280.utils.EndianReaders;
-import org.apache.commons.io.FileUtils;
-import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartUtilities;
-import org.jfree.chart.JFreeChart;
-import org.jfree.chart.plot.Marker;
-import org.jfree.chart.plot.ValueMarker;
-import org.jfree.chart.plot.XYPlot;
-import org.jfree.data.time.Second;
-import org.jfree.data.time.TimeSeries;
-import org.jfree.data.time.TimeSeriesCollection;
-import org.jfree.data.xy.XYDataset;
-import org.jfree.data.xy.XYSeriesCollection;
-import org.jfree.ui.RectangleAnchor;
-import org.jfree.ui.RectangleInsets;
-import org.jfree.ui.TextAnchor;
-import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.awt.*;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.util.*;
-import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 public class BME280 {
 
 	private static final Logger logger = LoggerFactory.getLogger(BME280.class);
+	private static final LatencyHistogram CONVERSION_WAITS = Metrics.histogram("bme280_conversion_wait_seconds",
+			"Time from triggering a forced conversion until the sensor reports it complete");
 
-	private static final long SLEEP_TIME = 60000; // Amount of time in milliseconds to sleep between readings
-    private static final String DATA_PATH = "/var/www/html/graphs";
+	private static final long SLEEP_TIME = 60000; // Default time in milliseconds between readings
+    private static final String DATA_PATH = System.getProperty("bme280.data.path", "/var/www/html/graphs");
 	private static final boolean verboseOutput = true;
 
 	private final static EndianReaders.Endianness BME280_ENDIANNESS = EndianReaders.Endianness.LITTLE_ENDIAN;
@@ -99,115 +106,131 @@ public class BME280 {
 	public final static int BME280_REGISTER_SOFTRESET = 0xE0;
 
 	public final static int BME280_REGISTER_CONTROL_HUM = 0xF2;
+	public final static int BME280_REGISTER_STATUS = 0xF3;
 	public final static int BME280_REGISTER_CONTROL = 0xF4;
 	public final static int BME280_REGISTER_CONFIG = 0xF5;
 	public final static int BME280_REGISTER_PRESSURE_DATA = 0xF7;
 	public final static int BME280_REGISTER_TEMP_DATA = 0xFA;
 	public final static int BME280_REGISTER_HUMIDITY_DATA = 0xFD;
 
-	private int dig_T1 = 0;
-	private int dig_T2 = 0;
-	private int dig_T3 = 0;
-
-	private int dig_P1 = 0;
-	private int dig_P2 = 0;
-	private int dig_P3 = 0;
-	private int dig_P4 = 0;
-	private int dig_P5 = 0;
-	private int dig_P6 = 0;
-	private int dig_P7 = 0;
-	private int dig_P8 = 0;
-	private int dig_P9 = 0;
-
-	private int dig_H1 = 0;
-	private int dig_H2 = 0;
-	private int dig_H3 = 0;
-	private int dig_H4 = 0;
-	private int dig_H5 = 0;
-	private int dig_H6 = 0;
-
-	private float tFine = 0F;
+	// Status register bit that is set while a conversion is running
+	private final static int BME280_STATUS_MEASURING = 0x08;
 
-	private static boolean verbose = "true".equals(System.getProperty("bme280.debug", "false"));
+	// The pressure, temperature and humidity registers (0xF7 - 0xFE) are read as one block
+	private final static int BME280_DATA_LENGTH = 8;
+
+	private CalibrationData calibration;
+	private volatile Compensator compensator = compensationMode.getCompensator();
 
-	private I2CBus bus;
-	private I2CDevice bme280;
-	private int mode = BME280_OSAMPLE_8;
+	private static boolean verbose = "true".equals(System.getProperty("bme280.debug", "false"));
+	private static String calibrationSnapshot = System.getProperty("bme280.calibration.snapshot");
+	private static CompensationMode compensationMode = CompensationMode.valueOf(System.getProperty("bme280.compensation", "FLOAT").toUpperCase());
+
+	private I2CTransport bme280;
+	private int address;
+	private volatile SensorConfiguration configuration = SensorConfiguration.forProfile(System.getProperty("bme280.profile", "default"));
+	private final byte[] data = new byte[BME280_DATA_LENGTH];
+	private long pollIntervalMicros = Long.getLong("bme280.poll.interval.us", 500);
+	// Derived from the configuration unless set
+	private Long pollTimeoutMillis = Long.getLong("bme280.poll.timeout.ms");
+	private long pollMarginMillis = Long.getLong("bme280.poll.margin.ms", 20);
+	private volatile long lastConversionNanos = 0;
 
 	public BME280() throws I2CFactory.UnsupportedBusNumberException {
 		this(BME280_I2CADDR);
 	}
 
 	public BME280(int address) throws I2CFactory.UnsupportedBusNumberException {
+		this(openBus(address));
+	}
+
+	private static I2CTransport openBus(int address) throws I2CFactory.UnsupportedBusNumberException {
 		try {
-			// Get i2c bus
-			bus = I2CFactory.getInstance(I2CBus.BUS_1); // Depends onthe RasPI version
+			// Get i2c bus and the device itself
+			I2CTransport transport = Pi4jTransport.open(I2CBus.BUS_1, address); // Depends onthe RasPI version
 			if (verbose)
-				System.out.println("Connected to bus. OK.");
+				logger.debug("Connected to device 0x{}", Integer.toHexString(address));
+			return transport;
+		} catch (IOException e) {
+			logger.error("Failed to open device 0x{} : {}", Integer.toHexString(address), e.getMessage());
+			throw new RuntimeException(e);
+		}
+	}
 
-			// Get device itself
-			bme280 = bus.getDevice(address);
-			if (verbose)
-				System.out.println("Connected to device. OK.");
+	public BME280(I2CTransport transport) {
+		try {
+			this.address = transport.getAddress();
+			this.bme280 = transport;
 
 			try {
 				this.readCalibrationData();
 			} catch (Exception ex) {
-				ex.printStackTrace();
+				logger.error("Failed to read calibration data : {}", ex.getMessage());
 			}
 
-			bme280.write(BME280_REGISTER_CONTROL, (byte) 0x3F);
-			tFine = 0.0f;
+			configure(configuration);
 		} catch (IOException e) {
-			System.err.println(e.getMessage());
+			logger.error("Failed to configure the sensor : {}", e.getMessage());
 			throw new RuntimeException(e);
 		}
 	}
 
-	private int readU8(int register) throws Exception {
-		return EndianReaders.readU8(this.bme280, BME280_I2CADDR, register, verbose);
+	/**
+	 * Apply the mode, oversampling, filter and standby settings to the sensor.
+	 *
+	 * The sensor is put to sleep first because writes to the config register may be ignored in normal mode.
+	 */
+	public synchronized void configure(SensorConfiguration configuration) throws IOException {
+		writeRegister(BME280_REGISTER_CONTROL, configuration.controlMeasurement(SensorMode.SLEEP));
+		writeRegister(BME280_REGISTER_CONFIG, configuration.config());
+		// Changes to ctrl_hum only become effective after a write to ctrl_meas
+		writeRegister(BME280_REGISTER_CONTROL_HUM, configuration.controlHumidity());
+		SensorMode mode = configuration.getMode() == SensorMode.NORMAL ? SensorMode.NORMAL : SensorMode.SLEEP;
+		writeRegister(BME280_REGISTER_CONTROL, configuration.controlMeasurement(mode));
+		this.configuration = configuration;
+	}
+
+	public SensorConfiguration getConfiguration() {
+		return configuration;
 	}
 
-	private int readS8(int register) throws Exception {
-		return EndianReaders.readS8(this.bme280, BME280_I2CADDR, register, verbose);
+	private void writeRegister(int register, int value) throws IOException {
+		EndianReaders.writeU8(this.bme280, address, register, value, verbose);
 	}
 
-	private int readU16LE(int register) throws Exception {
-		return EndianReaders.readU16LE(this.bme280, BME280_I2CADDR, register, verbose);
+	private void readBlock(int register, byte[] buffer) throws Exception {
+		EndianReaders.readBlock(this.bme280, address, register, buffer, 0, buffer.length, verbose);
 	}
 
-	private int readS16LE(int register) throws Exception {
-		return EndianReaders.readS16LE(this.bme280, BME280_I2CADDR, register, verbose);
+	private void readData() throws Exception {
+		// Burst read of all data registers so that the shadow registers give a consistent sample
+		readBlock(BME280_REGISTER_PRESSURE_DATA, data);
+	}
+
+	private int dataU8(int register) {
+		return data[register - BME280_REGISTER_PRESSURE_DATA] & 0xFF;
 	}
 
 	public void readCalibrationData() throws Exception {
-		// Reads the calibration data from the IC
-		dig_T1 = readU16LE(BME280_REGISTER_DIG_T1);
-		dig_T2 = readS16LE(BME280_REGISTER_DIG_T2);
-		dig_T3 = readS16LE(BME280_REGISTER_DIG_T3);
-
-		dig_P1 = readU16LE(BME280_REGISTER_DIG_P1);
-		dig_P2 = readS16LE(BME280_REGISTER_DIG_P2);
-		dig_P3 = readS16LE(BME280_REGISTER_DIG_P3);
-		dig_P4 = readS16LE(BME280_REGISTER_DIG_P4);
-		dig_P5 = readS16LE(BME280_REGISTER_DIG_P5);
-		dig_P6 = readS16LE(BME280_REGISTER_DIG_P6);
-		dig_P7 = readS16LE(BME280_REGISTER_DIG_P7);
-		dig_P8 = readS16LE(BME280_REGISTER_DIG_P8);
-		dig_P9 = readS16LE(BME280_REGISTER_DIG_P9);
-
-		dig_H1 = readU8(BME280_REGISTER_DIG_H1);
-		dig_H2 = readS16LE(BME280_REGISTER_DIG_H2);
-		dig_H3 = readU8(BME280_REGISTER_DIG_H3);
-		dig_H6 = readS8(BME280_REGISTER_DIG_H7);
-
-		int h4 = readS8(BME280_REGISTER_DIG_H4);
-		h4 = (h4 << 24) >> 20;
-		dig_H4 = h4 | (readU8(BME280_REGISTER_DIG_H5) & 0x0F);
-
-		int h5 = readS8(BME280_REGISTER_DIG_H6);
-		h5 = (h5 << 24) >> 20;
-		dig_H5 = h5 | (readU8(BME280_REGISTER_DIG_H5) >> 4 & 0x0F);
+		// Chip ID and version sit next to each other, so one transaction identifies the sensor
+		byte[] id = new byte[2];
+		readBlock(BME280_REGISTER_CHIPID, id);
+		int chipId = EndianReaders.readU8(id, 0);
+		int version = EndianReaders.readU8(id, 1);
+
+		File snapshot = calibrationSnapshot == null ? null : new File(calibrationSnapshot);
+		CalibrationData trim = snapshot == null ? null : CalibrationSnapshot.load(snapshot, address, chipId, version);
+		if (trim == null) {
+			// Reads the calibration data from the IC, one block transaction per bank
+			byte[] bank1 = new byte[CalibrationData.BANK1_LENGTH];
+			byte[] bank2 = new byte[CalibrationData.BANK2_LENGTH];
+			readBlock(CalibrationData.BANK1_REGISTER, bank1);
+			readBlock(CalibrationData.BANK2_REGISTER, bank2);
+			trim = CalibrationData.decode(bank1, bank2);
+			if (snapshot != null)
+				CalibrationSnapshot.save(snapshot, address, chipId, version, trim);
+		}
+		calibration = trim;
 
 		if (verbose)
 			showCalibrationData();
@@ -218,126 +241,173 @@ public class BME280 {
 	}
 
 	private void showCalibrationData() {
-		// Displays the calibration values for debugging purposes
-		System.out.println("======================");
-		System.out.println("DBG: T1 = " + displayRegister(dig_T1));
-		System.out.println("DBG: T2 = " + displayRegister(dig_T2));
-		System.out.println("DBG: T3 = " + displayRegister(dig_T3));
-		System.out.println("----------------------");
-		System.out.println("DBG: P1 = " + displayRegister(dig_P1));
-		System.out.println("DBG: P2 = " + displayRegister(dig_P2));
-		System.out.println("DBG: P3 = " + displayRegister(dig_P3));
-		System.out.println("DBG: P4 = " + displayRegister(dig_P4));
-		System.out.println("DBG: P5 = " + displayRegister(dig_P5));
-		System.out.println("DBG: P6 = " + displayRegister(dig_P6));
-		System.out.println("DBG: P7 = " + displayRegister(dig_P7));
-		System.out.println("DBG: P8 = " + displayRegister(dig_P8));
-		System.out.println("DBG: P9 = " + displayRegister(dig_P9));
-		System.out.println("----------------------");
-		System.out.println("DBG: H1 = " + displayRegister(dig_H1));
-		System.out.println("DBG: H2 = " + displayRegister(dig_H2));
-		System.out.println("DBG: H3 = " + displayRegister(dig_H3));
-		System.out.println("DBG: H4 = " + displayRegister(dig_H4));
-		System.out.println("DBG: H5 = " + displayRegister(dig_H5));
-		System.out.println("DBG: H6 = " + displayRegister(dig_H6));
-		System.out.println("======================");
-	}
-
-	private int readRawTemp() throws Exception {
-		// Reads the raw (uncompensated) temperature from the sensor
-		int meas = mode;
-		if (verbose)
-			System.out.println(String.format("readRawTemp: 1 - meas=%d", meas));
-		bme280.write(BME280_REGISTER_CONTROL_HUM, (byte) meas); // HUM ?
-		meas = mode << 5 | mode << 2 | 1;
+		// Logs the calibration values for debugging purposes
+		logger.debug("Calibration T1 = {}, T2 = {}, T3 = {}", displayRegister(calibration.dig_T1),
+				displayRegister(calibration.dig_T2), displayRegister(calibration.dig_T3));
+		logger.debug("Calibration P1 = {}, P2 = {}, P3 = {}, P4 = {}, P5 = {}, P6 = {}, P7 = {}, P8 = {}, P9 = {}",
+				displayRegister(calibration.dig_P1), displayRegister(calibration.dig_P2), displayRegister(calibration.dig_P3),
+				displayRegister(calibration.dig_P4), displayRegister(calibration.dig_P5), displayRegister(calibration.dig_P6),
+				displayRegister(calibration.dig_P7), displayRegister(calibration.dig_P8), displayRegister(calibration.dig_P9));
+		logger.debug("Calibration H1 = {}, H2 = {}, H3 = {}, H4 = {}, H5 = {}, H6 = {}", displayRegister(calibration.dig_H1),
+				displayRegister(calibration.dig_H2), displayRegister(calibration.dig_H3), displayRegister(calibration.dig_H4),
+				displayRegister(calibration.dig_H5), displayRegister(calibration.dig_H6));
+	}
+
+	/**
+	 * Triggers a conversion when in forced mode and burst reads the result.
+	 *
+	 * @return the raw temperature, pressure and humidity packed into one value, see rawTemperature, rawPressure and rawHumidity
+	 */
+	private synchronized long readRawSample() throws Exception {
+		if (configuration.getMode() == SensorMode.FORCED) {
+			writeRegister(BME280_REGISTER_CONTROL, configuration.controlMeasurement(SensorMode.FORCED));
+			awaitConversion();
+		}
+		// In normal mode the data registers always hold the latest completed measurement
+		readData();
+		long pressure = dataU20(BME280_REGISTER_PRESSURE_DATA);
+		long temperature = dataU20(BME280_REGISTER_TEMP_DATA);
+		long humidity = (dataU8(BME280_REGISTER_HUMIDITY_DATA) << 8) | dataU8(BME280_REGISTER_HUMIDITY_DATA + 1);
+		long sample = temperature << 36 | pressure << 16 | humidity;
 		if (verbose)
-			System.out.println(String.format("readRawTemp: 2 - meas=%d", meas));
-		bme280.write(BME280_REGISTER_CONTROL, (byte) meas);
-
-		double sleepTime = 0.00125 + 0.0023 * (1 << mode);
-		sleepTime = sleepTime + 0.0023 * (1 << mode) + 0.000575;
-		sleepTime = sleepTime + 0.0023 * (1 << mode) + 0.000575;
-		waitfor((long) (sleepTime * 1_000L));
-		int msb = readU8(BME280_REGISTER_TEMP_DATA);
-		int lsb = readU8(BME280_REGISTER_TEMP_DATA + 1);
-		int xlsb = readU8(BME280_REGISTER_TEMP_DATA + 2);
-		int raw = ((msb << 16) | (lsb << 8) | xlsb) >> 4;
+			I2CTrace.get().sample(address, sample);
+		return sample;
+	}
+
+	private int dataU20(int register) {
+		return ((dataU8(register) << 16) | (dataU8(register + 1) << 8) | dataU8(register + 2)) >> 4;
+	}
+
+	private static int rawTemperature(long sample) {
+		return (int) (sample >>> 36);
+	}
+
+	private static int rawPressure(long sample) {
+		return (int) (sample >>> 16) & 0xFFFFF;
+	}
+
+	private static int rawHumidity(long sample) {
+		return (int) sample & 0xFFFF;
+	}
+
+	private void awaitConversion() throws Exception {
+		// The measuring bit is already set by the time the next transaction after the trigger reaches the sensor
+		long start = System.nanoTime();
+		long timeoutMillis = conversionTimeoutMillis();
+		long timeout = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while ((EndianReaders.readRegister(this.bme280, address, BME280_REGISTER_STATUS, verbose) & BME280_STATUS_MEASURING) != 0) {
+			if (System.nanoTime() - start > timeout)
+				throw new IOException("Conversion did not complete within " + timeoutMillis + " ms");
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(pollIntervalMicros));
+			if (Thread.interrupted())
+				throw new InterruptedException("Interrupted while waiting for conversion");
+		}
+		lastConversionNanos = System.nanoTime() - start;
+		CONVERSION_WAITS.record(lastConversionNanos);
+	}
+
+	/**
+	 * @return how long the last forced conversion took, measured by polling the status register
+	 */
+	public long getLastConversionNanos() {
+		return lastConversionNanos;
+	}
+
+	public void setPollInterval(long pollIntervalMicros) {
+		this.pollIntervalMicros = pollIntervalMicros;
+	}
+
+	public void setPollTimeout(long pollTimeoutMillis) {
+		this.pollTimeoutMillis = pollTimeoutMillis;
+	}
+
+	/**
+	 * Extra time allowed beyond the datasheet's maximum conversion time, when the timeout is derived
+	 */
+	public void setPollMargin(long pollMarginMillis) {
+		this.pollMarginMillis = pollMarginMillis;
+	}
+
+	/**
+	 * @return bme280.poll.timeout.ms if set, or else the datasheet's maximum conversion time for the
+	 * current oversampling plus bme280.poll.margin.ms (20)
+	 */
+	private long conversionTimeoutMillis() {
+		if (pollTimeoutMillis != null)
+			return pollTimeoutMillis;
+		return TimeUnit.MICROSECONDS.toMillis(configuration.maxMeasurementMicros() + 999) + pollMarginMillis;
+	}
+
+	/**
+	 * Takes a single sample and fills in the temperature, pressure and humidity of the target.
+	 *
+	 * Temperature, pressure and humidity all come from the same conversion and one burst read, and no
+	 * intermediate state is kept between calls, so this can be called from several threads.
+	 */
+	public Measurement readAll(Measurement target) throws Exception {
+		long sample = readRawSample();
+		Compensator compensator = this.compensator;
+		int adcT = rawTemperature(sample);
+		int tFine = compensator.fineTemperature(calibration, adcT);
+		target.setTemperature(compensator.temperature(calibration, adcT));
+		target.setPressure(compensatePressure(compensator, rawPressure(sample), tFine));
+		target.setHumidity(compensateHumidity(compensator, rawHumidity(sample), tFine));
 		if (verbose)
-			System.out.println("DBG: Raw Temp: " + (raw & 0xFFFF) + ", " + raw + String.format(", msb: 0x%04X lsb: 0x%04X xlsb: 0x%04X", msb, lsb, xlsb));
-		return raw;
+			logger.debug("Temperature = {} C, Pressure = {} Pa, Humidity = {}", target.getTemperature(), target.getPressure(),
+					target.getHumidity());
+		return target;
 	}
 
-	private int readRawPressure() throws Exception {
-		// Reads the raw (uncompensated) pressure level from the sensor
-		int msb = readU8(BME280_REGISTER_PRESSURE_DATA);
-		int lsb = readU8(BME280_REGISTER_PRESSURE_DATA + 1);
-		int xlsb = readU8(BME280_REGISTER_PRESSURE_DATA + 2);
-		int raw = ((msb << 16) | (lsb << 8) | xlsb) >> 4;
-		return raw;
+	private float compensatePressure(Compensator compensator, int adc, int tFine) {
+		if (configuration.getPressureOversampling() == Oversampling.SKIPPED)
+			return Float.NaN;
+		return compensator.pressure(calibration, adc, tFine);
 	}
 
-	private int readRawHumidity() throws Exception {
-		int msb = readU8(BME280_REGISTER_HUMIDITY_DATA);
-		int lsb = readU8(BME280_REGISTER_HUMIDITY_DATA + 1);
-		int raw = (msb << 8) | lsb;
-		return raw;
+	private float compensateHumidity(Compensator compensator, int adc, int tFine) {
+		if (configuration.getHumidityOversampling() == Oversampling.SKIPPED)
+			return Float.NaN;
+		return compensator.humidity(calibration, adc, tFine);
 	}
 
 	public float readTemperature() throws Exception {
 		// Gets the compensated temperature in degrees celcius
-		float UT = readRawTemp();
-		float var1 = 0;
-		float var2 = 0;
-		float temp = 0.0f;
-
-		// Read raw temp before aligning it with the calibration values
-		var1 = (UT / 16384.0f - dig_T1 / 1024.0f) * (float) dig_T2;
-		var2 = ((UT / 131072.0f - dig_T1 / 8192.0f) * (UT / 131072.0f - dig_T1 / 8192.0f)) * (float) dig_T3;
-		tFine = (int) (var1 + var2);
-		temp = (var1 + var2) / 5120.0f;
+		int adc = rawTemperature(readRawSample());
+		float temp = compensator.temperature(calibration, adc);
 		if (verbose)
-			System.out.println("DBG: Calibrated temperature = " + temp + " C");
+			logger.debug("Calibrated temperature = {} C", temp);
 		return temp;
 	}
 
 	public float readPressure() throws Exception {
 		// Gets the compensated pressure in pascal
-		int adc = readRawPressure();
-		if (verbose)
-			System.out.println("ADC:" + adc + ", tFine:" + tFine);
-		float var1 = (tFine / 2.0f) - 64000.0f;
-		float var2 = var1 * var1 * (dig_P6 / 32768.0f);
-		var2 = var2 + var1 * dig_P5 * 2.0f;
-		var2 = (var2 / 4.0f) + (dig_P4 * 65536.0f);
-		var1 = (dig_P3 * var1 * var1 / 524288.0f + dig_P2 * var1) / 524288.0f;
-		var1 = (1.0f + var1 / 32768.0f) * dig_P1;
-		if (var1 == 0f)
-			return 0f;
-		float p = 1048576.0f - adc;
-		p = ((p - var2 / 4096.0f) * 6250.0f) / var1;
-		var1 = dig_P9 * p * p / 2147483648.0f;
-		var2 = p * dig_P8 / 32768.0f;
-		p = p + (var1 + var2 + dig_P7) / 16.0f;
+		long sample = readRawSample();
+		Compensator compensator = this.compensator;
+		int tFine = compensator.fineTemperature(calibration, rawTemperature(sample));
+		float p = compensatePressure(compensator, rawPressure(sample), tFine);
 		if (verbose)
-			System.out.println("DBG: Pressure = " + p + " Pa");
+			logger.debug("Pressure = {} Pa", p);
 		return p;
 	}
 
 	public float readHumidity() throws Exception {
-		int adc = readRawHumidity();
-		float h = tFine - 76800.0f;
-		h = (adc - (dig_H4 * 64.0f + dig_H5 / 16384.8f * h)) *
-						(dig_H2 / 65536.0f * (1.0f + dig_H6 / 67108864.0f * h * (1.0f + dig_H3 / 67108864.0f * h)));
-		h = h * (1.0f - dig_H1 * h / 524288.0f);
-		if (h > 100)
-			h = 100;
-		else if (h < 0)
-			h = 0;
+		long sample = readRawSample();
+		Compensator compensator = this.compensator;
+		int tFine = compensator.fineTemperature(calibration, rawTemperature(sample));
+		float h = compensateHumidity(compensator, rawHumidity(sample), tFine);
 		if (verbose)
-			System.out.println("DBG: Humidity = " + h);
+			logger.debug("Humidity = {}", h);
 		return h;
 	}
 
+	public CalibrationData getCalibration() {
+		return calibration;
+	}
+
+	public void setCompensationMode(CompensationMode mode) {
+		this.compensator = mode.getCompensator();
+	}
+
 	private int standardSeaLevelPressure = 101325;
 
 	public void setStandardSeaLevelPressure(int standardSeaLevelPressure) {
@@ -345,21 +415,17 @@ public class BME280 {
 	}
 
 	public double readAltitude() throws Exception {
-		// "Calculates the altitude in meters"
-		double altitude = 0.0;
-		float pressure = readPressure();
-		altitude = 44330.0 * (1.0 - Math.pow(pressure / standardSeaLevelPressure, 0.1903));
-		if (verbose)
-			System.out.println("DBG: Altitude = " + altitude);
-		return altitude;
+		return altitude(readPressure());
 	}
 
-	protected static void waitfor(long howMuch) {
-		try {
-			Thread.sleep(howMuch);
-		} catch (InterruptedException ie) {
-			ie.printStackTrace();
-		}
+	/**
+	 * Calculates the altitude in meters from a pressure in pascal that has already been read
+	 */
+	public double altitude(float pressure) {
+		double altitude = 44330.0 * (1.0 - Math.pow(pressure / standardSeaLevelPressure, 0.1903));
+		if (verbose)
+			logger.debug("Altitude = {}", altitude);
+		return altitude;
 	}
 
 	private static String lpad(String s, String with, int len) {
@@ -369,51 +435,108 @@ public class BME280 {
 		return str;
 	}
 
-	public static void main(String[] args) throws I2CFactory.UnsupportedBusNumberException {
+	public static void main(String[] args) throws I2CFactory.UnsupportedBusNumberException, IOException {
 		final NumberFormat NF = new DecimalFormat("##00.00");
-		BME280 sensor = new BME280();
+		I2CTransport transport = Transports.fromSystemProperties();
+		BME280 sensor = new BME280(transport);
 
 		logger.debug("Creating databases...");
-		MeasurementRepository repository = new MeasurementRepositoryImpl();
-
-		while (true) {
-			Measurement measurement = new Measurement();
+		MeasurementRepository store = MeasurementRepositories.fromSystemProperties();
+		int batchSize = Integer.getInteger("bme280.db.batch.size", 1);
+		if (batchSize > 1)
+			store = new WriteBehindMeasurementRepository(store, batchSize, Long.getLong("bme280.db.flush.interval.ms", SLEEP_TIME * 5),
+					Integer.getInteger("bme280.db.max.pending", batchSize * 16));
+		RollupMeasurementRepository repository = new RollupMeasurementRepository(store);
+		repository.catchUp();
+		RetentionPolicy retentionPolicy = RetentionPolicy.fromSystemProperties();
+		RetentionService retention = null;
+		if (!retentionPolicy.keepsEverything()) {
+			retention = new RetentionService(repository, retentionPolicy, Integer.getInteger("bme280.retention.batch.size", 1000),
+					Long.getLong("bme280.retention.compact.rows", 10000),
+					Long.getLong("bme280.retention.compact.interval.ms", TimeUnit.DAYS.toMillis(1)));
+			retention.start(Long.getLong("bme280.retention.interval.ms", ChartGenerator.HOUR));
+		}
+		ChartGenerator charts = new ChartGenerator(DATA_PATH);
+		// Seeded from the raw measurements, as the longer ranges of the rollup repository are averaged
+		SlidingWindowStatistics statistics = ChartGenerator.createStatistics();
+		statistics.seed(store, System.currentTimeMillis());
+		charts.seed(store, System.currentTimeMillis());
+
+		// Optional, with bme280.http.port
+		ApiServer api = ApiServer.fromSystemProperties(repository, statistics, charts);
+		if (api != null) {
+			repository.addListener(api::publish);
+			api.start();
+		}
+		// For node_exporter's textfile collector, when there is no HTTP API to scrape, every bme280.metrics.file.interval.ms
+		String metricsPath = System.getProperty("bme280.metrics.file");
+		ScheduledExecutorService metricsWriter = metricsPath == null ? null
+				: Metrics.writePrometheusEvery(new File(metricsPath), Long.getLong("bme280.metrics.file.interval.ms", 30000));
+		// Files can be left out when everything is fetched over HTTP
+		boolean publishFiles = Boolean.parseBoolean(System.getProperty("bme280.publish.files", "true"));
+
+		// The charts already hold every measurement, so only the latest render needs to happen
+		Stage<Measurement> publishing = Stage.fromSystemProperties("publish", 1, BackpressurePolicy.COALESCE,
+				measurement -> charts.createCharts(statistics));
+		// A day of measurements can queue up behind a slow store before any are dropped
+		Stage<Measurement> persistence = Stage.fromSystemProperties("persist", 1440, BackpressurePolicy.DROP, measurement -> {
 			try {
-				measurement.setTemperature(sensor.readTemperature());
-			} catch (Exception ex) {
-				logger.error("Failed to read temperature : {}", ex.getMessage());
-				ex.printStackTrace();
+				repository.create(measurement);
+			} catch ( DBException ioe ) {
+				logger.error("Failed to write measurement : {}", ioe.getMessage());
 			}
-
-			try {
-				measurement.setPressure(sensor.readPressure());
-			} catch (Exception ex) {
-				logger.error("Failed to read pressure : {}", ex.getMessage());
-				ex.printStackTrace();
+			statistics.add(measurement);
+			charts.add(measurement);
+			if (api != null)
+				api.publish(measurement);
+			if (publishFiles)
+				publishing.offer(measurement);
+		});
+
+		// Samples on the minute, or every bme280.sample.period.ms
+		SamplingScheduler scheduler = SamplingScheduler.fromSystemProperties(SLEEP_TIME);
+
+		final RetentionService retentionService = retention;
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			scheduler.stop();
+			if (api != null)
+				api.stop();
+			persistence.close(10000);
+			publishing.close(10000);
+			if (retentionService != null)
+				retentionService.stop(30000);
+			if (metricsWriter != null)
+				metricsWriter.shutdown();
+			repository.close();
+			if (transport instanceof Closeable) {
+				try {
+					((Closeable) transport).close();
+				} catch (IOException ex) {
+					logger.error("Failed to close the transport : {}", ex.getMessage());
+				}
 			}
+		}, "measurement-repository-close"));
 
+		scheduler.run(deadline -> {
+			// Stamped with the deadline rather than the time of the reading, so samples are evenly spaced
+			Measurement measurement = new Measurement();
+			measurement.setTimestamp(deadline);
 			try {
-				measurement.setHumidity(sensor.readHumidity());
+				sensor.readAll(measurement);
 			} catch (Exception ex) {
-				logger.error("Failed to read humidity : {}", ex.getMessage());
+				logger.error("Failed to read sensor : {}", ex.getMessage());
 				ex.printStackTrace();
 			}
 
 			try {
 				measurement.setCpuTemp(SystemInfo.getCpuTemperature());
 				measurement.setCpuCoreVoltage(SystemInfo.getCpuVoltage());
-			} catch (InterruptedException | IOException ie) {
+			} catch (Exception ie) {
+				// Not available when running against a simulated sensor off the Raspberry Pi
 				logger.error("Failed to read CPU Temperature/Voltage : {}", ie.getMessage());
 				ie.printStackTrace();
 			}
 
-			try {
-				repository.create(measurement);
-			} catch ( DBException ioe ) {
-				logger.error("Failed to write measurement...");
-				ioe.printStackTrace();
-			}
-
 			if ( verboseOutput ) {
 				logger.debug("Temperature: {} C", NF.format(measurement.getTemperature()));
 				logger.debug("Pressure   : {} hpa", NF.format(measurement.getPressure() / 100));
@@ -424,154 +547,9 @@ public class BME280 {
 				logger.debug("CPU Core Voltage  :  {}", measurement.getCpuCoreVoltage());
 			}
 
-			try {
-				createCharts(repository);
-			} catch (IOException e) {
-				logger.error("Failed to create charts : {}", e.getMessage());
-				e.printStackTrace();
-			}
-
-
-			try {
-				Thread.sleep(SLEEP_TIME);
-			} catch (InterruptedException e) {
-				System.err.println(e.getMessage());
-			}
-		}
-	}
-
-	private static final long HOUR = 3600000;
-	private static final long DAY = HOUR * 24;
-	private static final long WEEK = DAY * 7;
-	private static final long MONTH = DAY * 30;
-
-	private static Gson gson = new Gson();
-
-	private static class HiLowAvg {
-	    public String title;
-	    public float hi = -100000.0f;
-	    public float low = 100000.0f;
-	    public float avg = 0.0f;
-	    public int count;
-
-	    public HiLowAvg(String title) {
-	        this.title = title;
-        }
-
-	    public void addValue(float value) {
-	        if ( value > hi ) {
-	            hi = value;
-            }
-            if ( value < low ) {
-	            low = value;
-            }
-            avg = ( ( avg * count ) + value ) / (count + 1);
-	        count ++;
-        }
-    }
-
-	private static void createCharts( MeasurementRepository repository) throws IOException {
-
-	    List<HiLowAvg> hiLowAvgList = new ArrayList<>();
-        HiLowAvg hourly = new HiLowAvg("hourly");
-        HiLowAvg daily = new HiLowAvg("daily");
-        HiLowAvg weekly = new HiLowAvg("weekly");
-        hiLowAvgList.add(hourly);
-        hiLowAvgList.add(daily);
-        hiLowAvgList.add(weekly);
-
-		List<Measurement> data = repository.list(System.currentTimeMillis() - HOUR, System.currentTimeMillis());
-		for ( Measurement measurement : data ) {
-            hourly.addValue(measurement.getTemperature());
-        }
-		createChart(data, "Last Hour", "hourly.jpg", hourly);
-
-		// Get data for the last 24 hours
-		data = repository.list(System.currentTimeMillis() - DAY, System.currentTimeMillis());
-        for ( Measurement measurement : data ) {
-            daily.addValue(measurement.getTemperature());
-        }
-		createChart(data, "Last 24 Hours", "last24hours.jpg", daily);
-
-		data = repository.list(System.currentTimeMillis() - WEEK, System.currentTimeMillis());
-        for ( Measurement measurement : data ) {
-            weekly.addValue(measurement.getTemperature());
-        }
-		createChart(data, "Last 7 Days", "lastweek.jpg", weekly);
-
-        // Now output values to a JSON file
-        String json = gson.toJson(hiLowAvgList);
-        FileUtils.writeStringToFile(new File(String.format("%s/measurements.json", DATA_PATH)), json, "UTF-8");
-
-	}
-
-	private static void createChart(List<Measurement> data, String title, String filename, HiLowAvg hiLowAvg) throws IOException {
-
-		// Get data
-
-		final TimeSeries temperatureSeries = new TimeSeries( "Temperature" );
-        final TimeSeries humiditySeries = new TimeSeries("Humidity" );
-        final TimeSeries pressureSeries = new TimeSeries( "Barometric Pressure");
-        final TimeSeries cpuVoltageSeries = new TimeSeries( "CPU Voltage" );
-        final TimeSeries cpuTemperatureSeries = new TimeSeries( "CPU Temperature" );
-        for ( Measurement measurement : data ) {
-			Second timestamp = new Second(new Date(measurement.getTimestamp()));
-			temperatureSeries.addOrUpdate(timestamp, measurement.getTemperature());
-			//humiditySeries.addOrUpdate(timestamp, measurement.getHumidity());
-			//pressureSeries.addOrUpdate(timestamp, measurement.getPressure());
-			//cpuVoltageSeries.addOrUpdate(timestamp, measurement.getCpuCoreVoltage());
-			cpuTemperatureSeries.addOrUpdate(timestamp, measurement.getCpuTemp());
-		}
-
-		final TimeSeriesCollection timeSeriesCollection = new TimeSeriesCollection(temperatureSeries, TimeZone.getDefault());
-        //timeSeriesCollection.addSeries(humiditySeries);
-        //timeSeriesCollection.addSeries(cpuTemperatureSeries);
-
-		JFreeChart timechart = ChartFactory.createTimeSeriesChart(
-				title,
-				"Timestamp",
-				"Measurement",
-				timeSeriesCollection,
-				false,
-				true,
-				false);
-
-		timechart.setBackgroundPaint(Color.white);
-		XYPlot plot = (XYPlot) timechart.getPlot();
-		plot.setBackgroundPaint(Color.lightGray);
-		plot.setDomainGridlinePaint(Color.white);
-		plot.setRangeGridlinePaint(Color.white);
-		plot.setAxisOffset(new RectangleInsets(5.0, 5.0, 5.0, 5.0));
-
-		Font markerFont = new Font("Helvetica", Font.BOLD, 18);
-        final Marker hiMarker = new ValueMarker(hiLowAvg.hi);
-        hiMarker.setPaint(Color.black);
-        hiMarker.setLabel("Hi Temp : " + String.format("%.2f C", hiLowAvg.hi));
-        hiMarker.setLabelAnchor(RectangleAnchor.BOTTOM_LEFT);
-        hiMarker.setLabelTextAnchor(TextAnchor.TOP_LEFT);
-        hiMarker.setLabelFont(markerFont);
-        plot.addRangeMarker(hiMarker);
-
-        final Marker lowMarker = new ValueMarker(hiLowAvg.low);
-        lowMarker.setPaint(Color.black);
-        lowMarker.setLabel("Low Temp: " + String.format("%.2f C", hiLowAvg.low));
-        lowMarker.setLabelAnchor(RectangleAnchor.BOTTOM_LEFT);
-        lowMarker.setLabelTextAnchor(TextAnchor.TOP_LEFT);
-        lowMarker.setLabelFont(markerFont);
-        plot.addRangeMarker(lowMarker);
-
-        final Marker avgMarker = new ValueMarker(hiLowAvg.avg);
-        avgMarker.setPaint(Color.black);
-        avgMarker.setLabel("Average Temp: " + String.format("%.2f C", hiLowAvg.avg));
-        avgMarker.setLabelAnchor(RectangleAnchor.BOTTOM_LEFT);
-        avgMarker.setLabelTextAnchor(TextAnchor.TOP_LEFT);
-        avgMarker.setLabelFont(markerFont);
-        plot.addRangeMarker(avgMarker);
-
-        int width = 1024;   /* Width of the image */
-		int height = 768;  /* Height of the image */
-		File timeChart = new File( String.format("%s/%s", DATA_PATH, filename ));
-		ChartUtilities.saveChartAsJPEG( timeChart, timechart, width, height );
+			// Storing and charting run on their own threads, so the next reading is not held up by them
+			persistence.offer(measurement);
+		});
 	}
 
 }
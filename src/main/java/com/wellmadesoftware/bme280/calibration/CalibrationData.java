@@ -0,0 +1,110 @@
+package com.wellmadesoftware.bme280.calibration;
+
+import static com.wellmadesoftware.bme280.utils.EndianReaders.*;
+
+/**
+ * Trimming parameters burned into the BME280 at the factory.
+ *
+ * The values live in two register banks, 0x88 - 0xA1 and 0xE1 - 0xE7, which are
+ * read in one block transaction each and decoded here.
+ */
+public class CalibrationData {
+
+    public final static int BANK1_REGISTER = 0x88;
+    public final static int BANK1_LENGTH = 26;
+    public final static int BANK2_REGISTER = 0xE1;
+    public final static int BANK2_LENGTH = 7;
+
+    public final int dig_T1;
+    public final int dig_T2;
+    public final int dig_T3;
+
+    public final int dig_P1;
+    public final int dig_P2;
+    public final int dig_P3;
+    public final int dig_P4;
+    public final int dig_P5;
+    public final int dig_P6;
+    public final int dig_P7;
+    public final int dig_P8;
+    public final int dig_P9;
+
+    public final int dig_H1;
+    public final int dig_H2;
+    public final int dig_H3;
+    public final int dig_H4;
+    public final int dig_H5;
+    public final int dig_H6;
+
+    public CalibrationData(int dig_T1, int dig_T2, int dig_T3,
+                           int dig_P1, int dig_P2, int dig_P3, int dig_P4, int dig_P5,
+                           int dig_P6, int dig_P7, int dig_P8, int dig_P9,
+                           int dig_H1, int dig_H2, int dig_H3, int dig_H4, int dig_H5, int dig_H6) {
+        this.dig_T1 = dig_T1;
+        this.dig_T2 = dig_T2;
+        this.dig_T3 = dig_T3;
+        this.dig_P1 = dig_P1;
+        this.dig_P2 = dig_P2;
+        this.dig_P3 = dig_P3;
+        this.dig_P4 = dig_P4;
+        this.dig_P5 = dig_P5;
+        this.dig_P6 = dig_P6;
+        this.dig_P7 = dig_P7;
+        this.dig_P8 = dig_P8;
+        this.dig_P9 = dig_P9;
+        this.dig_H1 = dig_H1;
+        this.dig_H2 = dig_H2;
+        this.dig_H3 = dig_H3;
+        this.dig_H4 = dig_H4;
+        this.dig_H5 = dig_H5;
+        this.dig_H6 = dig_H6;
+    }
+
+    /**
+     * Decode the trimming parameters from the raw contents of both calibration banks
+     */
+    public static CalibrationData decode(byte[] bank1, byte[] bank2) {
+        // 0xE5 holds the low nibble of H4 and the high nibble of H5
+        int e5 = readU8(bank2, 0xE5 - BANK2_REGISTER);
+        return new CalibrationData(
+                readU16LE(bank1, 0x88 - BANK1_REGISTER),
+                readS16LE(bank1, 0x8A - BANK1_REGISTER),
+                readS16LE(bank1, 0x8C - BANK1_REGISTER),
+
+                readU16LE(bank1, 0x8E - BANK1_REGISTER),
+                readS16LE(bank1, 0x90 - BANK1_REGISTER),
+                readS16LE(bank1, 0x92 - BANK1_REGISTER),
+                readS16LE(bank1, 0x94 - BANK1_REGISTER),
+                readS16LE(bank1, 0x96 - BANK1_REGISTER),
+                readS16LE(bank1, 0x98 - BANK1_REGISTER),
+                readS16LE(bank1, 0x9A - BANK1_REGISTER),
+                readS16LE(bank1, 0x9C - BANK1_REGISTER),
+                readS16LE(bank1, 0x9E - BANK1_REGISTER),
+
+                readU8(bank1, 0xA1 - BANK1_REGISTER),
+                readS16LE(bank2, 0xE1 - BANK2_REGISTER),
+                readU8(bank2, 0xE3 - BANK2_REGISTER),
+                (readS8(bank2, 0xE4 - BANK2_REGISTER) << 4) | (e5 & 0x0F),
+                (readS8(bank2, 0xE6 - BANK2_REGISTER) << 4) | (e5 >> 4 & 0x0F),
+                readS8(bank2, 0xE7 - BANK2_REGISTER));
+    }
+
+    /**
+     * Lay the trimming parameters out the way the sensor stores them, the inverse of decode
+     */
+    public void encode(byte[] bank1, byte[] bank2) {
+        int[] words = {dig_T1, dig_T2, dig_T3, dig_P1, dig_P2, dig_P3, dig_P4, dig_P5, dig_P6, dig_P7, dig_P8, dig_P9};
+        for (int i = 0; i < words.length; i++) {
+            bank1[i * 2] = (byte) words[i];
+            bank1[i * 2 + 1] = (byte) (words[i] >> 8);
+        }
+        bank1[0xA1 - BANK1_REGISTER] = (byte) dig_H1;
+        bank2[0xE1 - BANK2_REGISTER] = (byte) dig_H2;
+        bank2[0xE2 - BANK2_REGISTER] = (byte) (dig_H2 >> 8);
+        bank2[0xE3 - BANK2_REGISTER] = (byte) dig_H3;
+        bank2[0xE4 - BANK2_REGISTER] = (byte) (dig_H4 >> 4);
+        bank2[0xE5 - BANK2_REGISTER] = (byte) ((dig_H4 & 0x0F) | (dig_H5 & 0x0F) << 4);
+        bank2[0xE6 - BANK2_REGISTER] = (byte) (dig_H5 >> 4);
+        bank2[0xE7 - BANK2_REGISTER] = (byte) dig_H6;
+    }
+}
@@ -0,0 +1,78 @@
+package com.wellmadesoftware.bme280.calibration;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A copy of the trimming parameters kept on disk so that restarts can skip reading them from the bus.
+ *
+ * The snapshot is keyed by the I2C address, chip ID (0xD0) and version (0xD1) of the sensor it was
+ * taken from.  Those identify the part, not the individual unit, so the snapshot file should be
+ * removed when a sensor is physically swapped for another one at the same address.
+ */
+public class CalibrationSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(CalibrationSnapshot.class);
+
+    private static Gson gson = new Gson();
+
+    private int address;
+    private int chipId;
+    private int version;
+    private CalibrationData calibration;
+
+    public CalibrationSnapshot() {
+
+    }
+
+    public CalibrationSnapshot(int address, int chipId, int version, CalibrationData calibration) {
+        this.address = address;
+        this.chipId = chipId;
+        this.version = version;
+        this.calibration = calibration;
+    }
+
+    public boolean matches(int address, int chipId, int version) {
+        return this.calibration != null && this.address == address && this.chipId == chipId && this.version == version;
+    }
+
+    public CalibrationData getCalibration() {
+        return calibration;
+    }
+
+    /**
+     * Load the calibration data stored in the given file if it was taken from the same sensor.
+     *
+     * @return the stored calibration, or null when the file is missing, unreadable or for another sensor
+     */
+    public static CalibrationData load(File file, int address, int chipId, int version) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            CalibrationSnapshot snapshot = gson.fromJson(FileUtils.readFileToString(file, "UTF-8"), CalibrationSnapshot.class);
+            if (snapshot != null && snapshot.matches(address, chipId, version)) {
+                return snapshot.getCalibration();
+            }
+            logger.info("Ignoring calibration snapshot {} taken from a different sensor", file);
+        } catch (IOException | JsonParseException ex) {
+            logger.warn("Failed to read calibration snapshot {} : {}", file, ex.getMessage());
+        }
+        return null;
+    }
+
+    public static void save(File file, int address, int chipId, int version, CalibrationData calibration) {
+        try {
+            String json = gson.toJson(new CalibrationSnapshot(address, chipId, version, calibration));
+            FileUtils.writeStringToFile(file, json, "UTF-8");
+        } catch (IOException ex) {
+            logger.warn("Failed to write calibration snapshot {} : {}", file, ex.getMessage());
+        }
+    }
+}
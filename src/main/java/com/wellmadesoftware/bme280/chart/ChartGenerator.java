@@ -0,0 +1,262 @@
+package com.wellmadesoftware.bme280.chart;
+
+import com.google.gson.stream.JsonWriter;
+import com.wellmadesoftware.bme280.data.model.Channel;
+import com.wellmadesoftware.bme280.data.model.HiLowAvg;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import com.wellmadesoftware.bme280.data.repository.MeasurementQuery;
+import com.wellmadesoftware.bme280.data.repository.MeasurementRepository;
+import com.wellmadesoftware.bme280.stats.SlidingWindowStatistics;
+import com.wellmadesoftware.bme280.utils.AtomicFiles;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.Marker;
+import org.jfree.chart.plot.ValueMarker;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+import org.jfree.ui.Layer;
+import org.jfree.ui.RectangleAnchor;
+import org.jfree.ui.RectangleInsets;
+import org.jfree.ui.TextAnchor;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Renders the hourly, daily and weekly temperature charts, as JPEG, PNG or SVG (see
+ * {@link ImageFormat}), and the hi/low/avg JSON file.
+ *
+ * The charts are kept in memory as {@link LiveChart}s, seeded once and then fed each measurement,
+ * so a render only moves the markers and encodes the images.
+ */
+public class ChartGenerator {
+
+    public static final long HOUR = 3600000;
+    public static final long DAY = HOUR * 24;
+    public static final long WEEK = DAY * 7;
+
+    public static final int WIDTH = 1024;   /* Width of the image */
+    public static final int HEIGHT = 768;   /* Height of the image */
+
+    private static final String[] MARKER_LABELS = { "Hi Temp : ", "Low Temp: ", "Average Temp: " };
+
+    private final String dataPath;
+    private final ImageFormat format;
+    private List<HiLowAvg> publishedStatistics = new ArrayList<>();
+    // In the order of the windows of createStatistics()
+    private final List<LiveChart> liveCharts = new ArrayList<>();
+
+    public ChartGenerator(String dataPath) {
+        this(dataPath, ImageFormat.fromSystemProperties());
+    }
+
+    public ChartGenerator(String dataPath, ImageFormat format) {
+        this.dataPath = dataPath;
+        this.format = format;
+        liveCharts.add(new LiveChart(this, "Last Hour", "hourly", HOUR));
+        liveCharts.add(new LiveChart(this, "Last 24 Hours", "last24hours", DAY));
+        liveCharts.add(new LiveChart(this, "Last 7 Days", "lastweek", WEEK));
+    }
+
+    /**
+     * @return statistics over the windows the charts are drawn for, to be seeded and fed with every
+     * measurement
+     */
+    public static SlidingWindowStatistics createStatistics() {
+        return new SlidingWindowStatistics(Channel.TEMPERATURE)
+                .addWindow("hourly", HOUR)
+                .addWindow("daily", DAY)
+                .addWindow("weekly", WEEK);
+    }
+
+    /**
+     * Fill the charts from stored raw measurements, once at startup, in a single pass over the
+     * temperature column of the longest window
+     */
+    public synchronized void seed(MeasurementRepository repository, long now) {
+        repository.stream(MeasurementQuery.range(now - WEEK, now).channels(Channel.TEMPERATURE), (timestamp, values) -> {
+            for ( LiveChart chart : liveCharts ) {
+                if ( timestamp >= now - chart.getDurationMillis() ) {
+                    chart.add(timestamp, values[0]);
+                }
+            }
+            return true;
+        });
+    }
+
+    public synchronized void add(Measurement measurement) {
+        for ( LiveChart chart : liveCharts ) {
+            chart.add(measurement.getTimestamp(), measurement.getTemperature());
+        }
+    }
+
+    /**
+     * Write out the charts that changed since they were last written, and the hi/low/avg JSON file
+     * if the statistics did. Every file is replaced atomically.
+     */
+    public synchronized void createCharts(SlidingWindowStatistics statistics) throws IOException {
+
+        long now = System.currentTimeMillis();
+        List<HiLowAvg> hiLowAvgList = statistics.getAll(Channel.TEMPERATURE, now);
+
+        for ( int i = 0; i < liveCharts.size(); i++ ) {
+            LiveChart liveChart = liveCharts.get(i);
+            liveChart.update(now, hiLowAvgList.get(i));
+            if ( liveChart.isUnpublished() ) {
+                EncodedChart chart = liveChart.encode(format);
+                AtomicFiles.write(new File(String.format("%s/%s.%s", dataPath, liveChart.getName(), format.getExtension())),
+                        out -> out.write(chart.getBytes()));
+                liveChart.published(chart.getVersion());
+            }
+        }
+
+        // Now output values to a JSON file
+        if ( !same(hiLowAvgList, publishedStatistics) ) {
+            AtomicFiles.write(new File(String.format("%s/measurements.json", dataPath)), out -> writeStatistics(hiLowAvgList, out));
+            publishedStatistics = hiLowAvgList;
+        }
+
+    }
+
+    /**
+     * Bring one of the charts up to date and encode it, for serving on demand
+     *
+     * @param name hourly, last24hours or lastweek
+     * @return the chart, or null if there is none by that name
+     */
+    public synchronized EncodedChart encodeChart(String name, SlidingWindowStatistics statistics) throws IOException {
+        for ( int i = 0; i < liveCharts.size(); i++ ) {
+            LiveChart liveChart = liveCharts.get(i);
+            if ( liveChart.getName().equals(name) ) {
+                long now = System.currentTimeMillis();
+                liveChart.update(now, statistics.getAll(Channel.TEMPERATURE, now).get(i));
+                return liveChart.encode(format);
+            }
+        }
+        return null;
+    }
+
+    private static boolean same(List<HiLowAvg> a, List<HiLowAvg> b) {
+        if ( a.size() != b.size() ) {
+            return false;
+        }
+        for ( int i = 0; i < a.size(); i++ ) {
+            HiLowAvg x = a.get(i);
+            HiLowAvg y = b.get(i);
+            if ( !x.title.equals(y.title) || x.hi != y.hi || x.low != y.low || x.avg != y.avg || x.count != y.count ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stream the statistics out as a JSON array of {title, hi, low, avg, count}. An empty window
+     * keeps the initial values of {@link HiLowAvg} with a count of 0.
+     */
+    public static void writeStatistics(List<HiLowAvg> hiLowAvgList, OutputStream out) throws IOException {
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.beginArray();
+        for ( HiLowAvg hiLowAvg : hiLowAvgList ) {
+            writer.beginObject();
+            writer.name("title").value(hiLowAvg.title);
+            // Boxed, so they print as floats rather than widened doubles
+            writer.name("hi").value((Float) hiLowAvg.hi);
+            writer.name("low").value((Float) hiLowAvg.low);
+            writer.name("avg").value((Float) hiLowAvg.avg);
+            writer.name("count").value(hiLowAvg.count);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    public JFreeChart createChart(List<Measurement> data, String title, HiLowAvg hiLowAvg) {
+        long start = data.isEmpty() ? 0 : data.get(0).getTimestamp();
+        long end = data.isEmpty() ? 0 : data.get(data.size() - 1).getTimestamp() + 1;
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(new TimeSeries( "Temperature" ), start, end, WIDTH);
+        for ( Measurement measurement : data ) {
+            downsampler.add(measurement.getTimestamp(), measurement.getTemperature());
+        }
+        return createChart(downsampler.finish(), title, hiLowAvg);
+    }
+
+    public JFreeChart createChart(TimeSeries temperatureSeries, String title, HiLowAvg hiLowAvg) {
+
+        final TimeSeriesCollection timeSeriesCollection = new TimeSeriesCollection(temperatureSeries, TimeZone.getDefault());
+        //timeSeriesCollection.addSeries(humiditySeries);
+        //timeSeriesCollection.addSeries(cpuTemperatureSeries);
+
+        JFreeChart timechart = ChartFactory.createTimeSeriesChart(
+                title,
+                "Timestamp",
+                "Measurement",
+                timeSeriesCollection,
+                false,
+                true,
+                false);
+
+        timechart.setBackgroundPaint(Color.white);
+        XYPlot plot = (XYPlot) timechart.getPlot();
+        plot.setBackgroundPaint(Color.lightGray);
+        plot.setDomainGridlinePaint(Color.white);
+        plot.setRangeGridlinePaint(Color.white);
+        plot.setAxisOffset(new RectangleInsets(5.0, 5.0, 5.0, 5.0));
+
+        Font markerFont = new Font("Helvetica", Font.BOLD, 18);
+        for ( int i = 0; i < MARKER_LABELS.length; i++ ) {
+            final Marker marker = new ValueMarker(0);
+            marker.setPaint(Color.black);
+            marker.setLabelAnchor(RectangleAnchor.BOTTOM_LEFT);
+            marker.setLabelTextAnchor(TextAnchor.TOP_LEFT);
+            marker.setLabelFont(markerFont);
+            plot.addRangeMarker(marker);
+        }
+        updateMarkers(plot, hiLowAvg);
+
+        return timechart;
+    }
+
+    /**
+     * Move the hi, low and average markers of a chart made by createChart, if their labels change
+     *
+     * @return whether any did
+     */
+    static boolean updateMarkers(XYPlot plot, HiLowAvg hiLowAvg) {
+        float[] values = { hiLowAvg.hi, hiLowAvg.low, hiLowAvg.avg };
+        boolean changed = false;
+        int i = 0;
+        for ( Object marker : plot.getRangeMarkers(Layer.FOREGROUND) ) {
+            ValueMarker valueMarker = (ValueMarker) marker;
+            String label = MARKER_LABELS[i] + String.format("%.2f C", values[i]);
+            if ( !label.equals(valueMarker.getLabel()) ) {
+                valueMarker.setValue(values[i]);
+                valueMarker.setLabel(label);
+                changed = true;
+            }
+            i ++;
+        }
+        return changed;
+    }
+
+    public void saveChart(JFreeChart chart, String filename) throws IOException {
+        File timeChart = new File( String.format("%s/%s", dataPath, filename ));
+        AtomicFiles.write(timeChart, out -> writeChart(chart, out));
+    }
+
+    public void writeChart(JFreeChart chart, OutputStream out) throws IOException {
+        format.write(chart, out, WIDTH, HEIGHT);
+    }
+
+    public ImageFormat getFormat() {
+        return format;
+    }
+}
@@ -0,0 +1,30 @@
+package com.wellmadesoftware.bme280.chart;
+
+/**
+ * A chart image as encoded for one version of its data. The version grows every time the chart
+ * changes, so it can serve as a cache key while the process lives.
+ */
+public class EncodedChart {
+
+    private final byte[] bytes;
+    private final long version;
+    private final ImageFormat format;
+
+    EncodedChart(byte[] bytes, long version, ImageFormat format) {
+        this.bytes = bytes;
+        this.version = version;
+        this.format = format;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public ImageFormat getFormat() {
+        return format;
+    }
+}
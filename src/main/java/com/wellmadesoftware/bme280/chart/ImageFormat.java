@@ -0,0 +1,88 @@
+package com.wellmadesoftware.bme280.chart;
+
+import com.wellmadesoftware.bme280.metrics.LatencyHistogram;
+import com.wellmadesoftware.bme280.metrics.Metrics;
+import org.jfree.chart.ChartUtilities;
+import org.jfree.chart.JFreeChart;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The image formats charts can be published in, chosen with bme280.chart.format.
+ *
+ * SVG is drawn by jfreesvg, an optional dependency. Only {@link SvgCharts} refers to it, so the
+ * other formats work without it on the classpath, and asking for SVG without it fails at startup.
+ */
+public enum ImageFormat {
+
+    JPEG("jpg") {
+        @Override
+        public void write(JFreeChart chart, OutputStream out, int width, int height) throws IOException {
+            // JPEG has no alpha channel
+            BufferedImage image = render(chart, width, height, BufferedImage.TYPE_INT_RGB);
+            long start = System.nanoTime();
+            ChartUtilities.writeBufferedImageAsJPEG(out, image);
+            ENCODES.recordSince(start);
+        }
+    },
+
+    PNG("png") {
+        @Override
+        public void write(JFreeChart chart, OutputStream out, int width, int height) throws IOException {
+            BufferedImage image = render(chart, width, height, BufferedImage.TYPE_INT_ARGB);
+            long start = System.nanoTime();
+            ChartUtilities.writeBufferedImageAsPNG(out, image);
+            ENCODES.recordSince(start);
+        }
+    },
+
+    SVG("svg") {
+        @Override
+        public void write(JFreeChart chart, OutputStream out, int width, int height) throws IOException {
+            SvgCharts.write(chart, out, width, height, RENDERS, ENCODES);
+        }
+    };
+
+    private static final LatencyHistogram RENDERS = Metrics.histogram("bme280_chart_render_seconds",
+            "Time taken to draw a chart");
+    private static final LatencyHistogram ENCODES = Metrics.histogram("bme280_chart_encode_seconds",
+            "Time taken to encode a drawn chart as an image");
+
+    private final String extension;
+
+    ImageFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public abstract void write(JFreeChart chart, OutputStream out, int width, int height) throws IOException;
+
+    private static BufferedImage render(JFreeChart chart, int width, int height, int imageType) {
+        long start = System.nanoTime();
+        BufferedImage image = chart.createBufferedImage(width, height, imageType, null);
+        RENDERS.recordSince(start);
+        return image;
+    }
+
+    /**
+     * The format named by bme280.chart.format, JPEG by default
+     *
+     * @throws IllegalStateException if SVG is asked for and jfreesvg is not on the classpath
+     */
+    public static ImageFormat fromSystemProperties() {
+        ImageFormat format = valueOf(System.getProperty("bme280.chart.format", JPEG.name()).toUpperCase());
+        if ( format == SVG ) {
+            try {
+                SvgCharts.check();
+            } catch (NoClassDefFoundError ex) {
+                throw new IllegalStateException("SVG charts need jfreesvg on the classpath", ex);
+            }
+        }
+        return format;
+    }
+}
@@ -0,0 +1,105 @@
+package com.wellmadesoftware.bme280.chart;
+
+import com.wellmadesoftware.bme280.data.model.HiLowAvg;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.time.TimeSeries;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * A temperature chart of a trailing window that stays in memory between renders.
+ *
+ * Readings are appended through a {@link MinMaxDownsampler} with buckets fixed to the epoch, so the
+ * series never holds more than about a chart width of points, and points older than the window are
+ * evicted by the series' maximum item age. Every change to the points or the marker labels bumps a
+ * version, and the image is only encoded again once the version has moved on.
+ */
+class LiveChart {
+
+    private final String title;
+    private final String name;
+    private final long durationMillis;
+    private final TimeSeries series;
+    private final MinMaxDownsampler downsampler;
+    private final JFreeChart chart;
+    private long version = 1;
+    private EncodedChart encoded;
+    private long publishedVersion = 0;
+
+    LiveChart(ChartGenerator generator, String title, String name, long durationMillis) {
+        this.title = title;
+        this.name = name;
+        this.durationMillis = durationMillis;
+        // Items are FixedMilliseconds, so the age is in milliseconds
+        series = new TimeSeries( "Temperature" );
+        series.setMaximumItemAge(durationMillis);
+        downsampler = new MinMaxDownsampler(series, 0, MinMaxDownsampler.bucketMillis(durationMillis, ChartGenerator.WIDTH));
+        chart = generator.createChart(series, title, new HiLowAvg(title));
+    }
+
+    /**
+     * @return the file name of the chart without an extension
+     */
+    String getName() {
+        return name;
+    }
+
+    long getDurationMillis() {
+        return durationMillis;
+    }
+
+    void add(long timestamp, float temperature) {
+        if ( downsampler.add(timestamp, temperature) ) {
+            version ++;
+        }
+    }
+
+    /**
+     * Drop points older than the window and move the markers to hiLowAvg
+     */
+    void update(long now, HiLowAvg hiLowAvg) {
+        // The series' own eviction counts from its newest point, which stops when measurements do
+        int aged = 0;
+        while ( aged < series.getItemCount() && series.getTimePeriod(aged).getLastMillisecond() < now - durationMillis ) {
+            aged ++;
+        }
+        if ( aged > 0 ) {
+            series.delete(0, aged - 1, false);
+            version ++;
+        }
+        if ( ChartGenerator.updateMarkers((XYPlot) chart.getPlot(), hiLowAvg) ) {
+            version ++;
+        }
+    }
+
+    /**
+     * @return the chart as it stands, encoded again only if it changed since the last call
+     */
+    EncodedChart encode(ImageFormat format) throws IOException {
+        if ( encoded == null || encoded.getVersion() != version || encoded.getFormat() != format ) {
+            downsampler.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(128 * 1024);
+            format.write(chart, out, ChartGenerator.WIDTH, ChartGenerator.HEIGHT);
+            encoded = new EncodedChart(out.toByteArray(), version, format);
+        }
+        return encoded;
+    }
+
+    /**
+     * @return whether the chart changed since it was last marked published
+     */
+    boolean isUnpublished() {
+        return publishedVersion != version;
+    }
+
+    void published(long version) {
+        publishedVersion = version;
+    }
+
+    @Override
+    public String toString() {
+        return title;
+    }
+}
@@ -0,0 +1,129 @@
+package com.wellmadesoftware.bme280.chart;
+
+import com.wellmadesoftware.bme280.data.repository.MeasurementVisitor;
+import org.jfree.data.time.FixedMillisecond;
+import org.jfree.data.time.TimeSeries;
+
+/**
+ * Thins a time ordered stream of one channel down to a chart's worth of points as it arrives.
+ *
+ * Time is cut into equal buckets and only the lowest and highest reading of each bucket are kept,
+ * in the order they were taken, so spikes survive however many readings fall into a pixel. The
+ * bucket still filling is kept in the series too, its points rewritten as its extremes change, so
+ * the series can be fed for as long as a chart lives. Memory use does not depend on the number of
+ * readings. NaN readings are skipped.
+ */
+public class MinMaxDownsampler implements MeasurementVisitor {
+
+    private final TimeSeries series;
+    private final long origin;
+    private final long bucketMillis;
+
+    private long bucket = Long.MIN_VALUE;
+    private long minTimestamp;
+    private float min;
+    private long maxTimestamp;
+    private float max;
+    // Points of the open bucket at the end of the series, and the last timestamp before them
+    private int written = 0;
+    private long lastClosed = Long.MIN_VALUE;
+
+    /**
+     * Buckets of bucketMillis starting at origin
+     */
+    public MinMaxDownsampler(TimeSeries series, long origin, long bucketMillis) {
+        this.series = series;
+        this.origin = origin;
+        this.bucketMillis = Math.max(1, bucketMillis);
+    }
+
+    /**
+     * At most points points over [start, end)
+     */
+    public MinMaxDownsampler(TimeSeries series, long start, long end, int points) {
+        this(series, start, bucketMillis(end - start, points));
+    }
+
+    public static long bucketMillis(long rangeMillis, int points) {
+        long buckets = Math.max(1, points / 2);
+        return Math.max(1, (rangeMillis + buckets - 1) / buckets);
+    }
+
+    /**
+     * Takes the first value of each visit
+     */
+    @Override
+    public boolean visit(long timestamp, float[] values) {
+        add(timestamp, values[0]);
+        return true;
+    }
+
+    /**
+     * Add a reading without notifying the series' listeners; call {@link #finish} after a batch
+     *
+     * @return whether the series changed
+     */
+    public boolean add(long timestamp, float value) {
+        if ( Float.isNaN(value) ) {
+            return false;
+        }
+        long b = Math.floorDiv(timestamp - origin, bucketMillis);
+        if ( b != bucket ) {
+            if ( written > 0 ) {
+                lastClosed = Math.max(minTimestamp, maxTimestamp);
+            }
+            written = 0;
+            bucket = b;
+            minTimestamp = maxTimestamp = timestamp;
+            min = max = value;
+        } else if ( value < min ) {
+            min = value;
+            minTimestamp = timestamp;
+        } else if ( value > max ) {
+            max = value;
+            maxTimestamp = timestamp;
+        } else {
+            return false;
+        }
+        rewrite();
+        return true;
+    }
+
+    /**
+     * Tell the series' listeners about everything added
+     *
+     * @return the series
+     */
+    public TimeSeries finish() {
+        series.fireSeriesChanged();
+        return series;
+    }
+
+    private void rewrite() {
+        // Points arrive in time order, so the open bucket is always the tail of the series
+        if ( written > 0 ) {
+            int count = series.getItemCount();
+            written = Math.min(written, count);
+            if ( written > 0 ) {
+                series.delete(count - written, count - 1, false);
+            }
+            written = 0;
+        }
+        if ( minTimestamp <= maxTimestamp ) {
+            append(minTimestamp, min);
+            append(maxTimestamp, max);
+        } else {
+            append(maxTimestamp, max);
+            append(minTimestamp, min);
+        }
+    }
+
+    private void append(long timestamp, float value) {
+        int count = series.getItemCount();
+        long last = count == 0 ? lastClosed : Math.max(lastClosed, series.getTimePeriod(count - 1).getLastMillisecond());
+        if ( timestamp > last ) {
+            series.add(new FixedMillisecond(timestamp), value, false);
+            written ++;
+        }
+    }
+}
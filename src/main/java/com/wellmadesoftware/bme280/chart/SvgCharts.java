@@ -0,0 +1,39 @@
+package com.wellmadesoftware.bme280.chart;
+
+import com.wellmadesoftware.bme280.metrics.LatencyHistogram;
+import org.jfree.chart.JFreeChart;
+import org.jfree.graphics2d.svg.SVGGraphics2D;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Draws charts as SVG with jfreesvg. Kept apart from {@link ImageFormat} so that jfreesvg, an optional
+ * dependency, is only loaded when SVG is actually used.
+ */
+class SvgCharts {
+
+    private SvgCharts() {
+    }
+
+    /**
+     * Make sure jfreesvg can be used. Without it this class can't be loaded, so the caller gets a
+     * NoClassDefFoundError.
+     */
+    static void check() {
+        new SVGGraphics2D(1, 1).dispose();
+    }
+
+    static void write(JFreeChart chart, OutputStream out, int width, int height, LatencyHistogram renders,
+                      LatencyHistogram encodes) throws IOException {
+        SVGGraphics2D graphics = new SVGGraphics2D(width, height);
+        long start = System.nanoTime();
+        chart.draw(graphics, new Rectangle(width, height));
+        renders.recordSince(start);
+        start = System.nanoTime();
+        out.write(graphics.getSVGDocument().getBytes(StandardCharsets.UTF_8));
+        encodes.recordSince(start);
+    }
+}
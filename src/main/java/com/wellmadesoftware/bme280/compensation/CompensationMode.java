@@ -0,0 +1,27 @@
+package com.wellmadesoftware.bme280.compensation;
+
+/**
+ * The compensation formulas from the BME280 datasheet that the driver can use.
+ */
+public enum CompensationMode {
+
+    /**
+     * Floating point formulas, section 8.1 of the datasheet
+     */
+    FLOAT(new FloatCompensator()),
+
+    /**
+     * 32 and 64 bit fixed point formulas, section 4.2.3 of the datasheet
+     */
+    INTEGER(new IntegerCompensator());
+
+    private final Compensator compensator;
+
+    CompensationMode(Compensator compensator) {
+        this.compensator = compensator;
+    }
+
+    public Compensator getCompensator() {
+        return compensator;
+    }
+}
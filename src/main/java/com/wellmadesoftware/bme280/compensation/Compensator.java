@@ -0,0 +1,32 @@
+package com.wellmadesoftware.bme280.compensation;
+
+import com.wellmadesoftware.bme280.calibration.CalibrationData;
+
+/**
+ * Turns raw ADC readings into physical values using the trimming parameters of a sensor.
+ *
+ * Implementations are stateless; the fine temperature returned by {@link #fineTemperature} is
+ * passed back in explicitly so that samples can be compensated in any order or on any thread.
+ */
+public interface Compensator {
+
+    /**
+     * @return the fine resolution temperature (t_fine) used by the pressure and humidity formulas
+     */
+    int fineTemperature(CalibrationData calibration, int adcT);
+
+    /**
+     * @return the temperature in degrees celcius
+     */
+    float temperature(CalibrationData calibration, int adcT);
+
+    /**
+     * @return the pressure in pascal
+     */
+    float pressure(CalibrationData calibration, int adcP, int tFine);
+
+    /**
+     * @return the relative humidity in percent
+     */
+    float humidity(CalibrationData calibration, int adcH, int tFine);
+}
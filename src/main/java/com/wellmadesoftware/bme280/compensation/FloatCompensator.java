@@ -0,0 +1,56 @@
+package com.wellmadesoftware.bme280.compensation;
+
+import com.wellmadesoftware.bme280.calibration.CalibrationData;
+
+/**
+ * Floating point compensation formulas.
+ */
+public class FloatCompensator implements Compensator {
+
+    @Override
+    public int fineTemperature(CalibrationData calibration, int adcT) {
+        return (int) fineTemperatureF(calibration, adcT);
+    }
+
+    @Override
+    public float temperature(CalibrationData calibration, int adcT) {
+        return fineTemperatureF(calibration, adcT) / 5120.0f;
+    }
+
+    private static float fineTemperatureF(CalibrationData calibration, int adcT) {
+        float UT = adcT;
+        float var1 = (UT / 16384.0f - calibration.dig_T1 / 1024.0f) * (float) calibration.dig_T2;
+        float var2 = ((UT / 131072.0f - calibration.dig_T1 / 8192.0f) * (UT / 131072.0f - calibration.dig_T1 / 8192.0f)) * (float) calibration.dig_T3;
+        return var1 + var2;
+    }
+
+    @Override
+    public float pressure(CalibrationData calibration, int adcP, int tFine) {
+        float var1 = (tFine / 2.0f) - 64000.0f;
+        float var2 = var1 * var1 * (calibration.dig_P6 / 32768.0f);
+        var2 = var2 + var1 * calibration.dig_P5 * 2.0f;
+        var2 = (var2 / 4.0f) + (calibration.dig_P4 * 65536.0f);
+        var1 = (calibration.dig_P3 * var1 * var1 / 524288.0f + calibration.dig_P2 * var1) / 524288.0f;
+        var1 = (1.0f + var1 / 32768.0f) * calibration.dig_P1;
+        if (var1 == 0f)
+            return 0f;
+        float p = 1048576.0f - adcP;
+        p = ((p - var2 / 4096.0f) * 6250.0f) / var1;
+        var1 = calibration.dig_P9 * p * p / 2147483648.0f;
+        var2 = p * calibration.dig_P8 / 32768.0f;
+        return p + (var1 + var2 + calibration.dig_P7) / 16.0f;
+    }
+
+    @Override
+    public float humidity(CalibrationData calibration, int adcH, int tFine) {
+        float h = tFine - 76800.0f;
+        h = (adcH - (calibration.dig_H4 * 64.0f + calibration.dig_H5 / 16384.0f * h)) *
+                (calibration.dig_H2 / 65536.0f * (1.0f + calibration.dig_H6 / 67108864.0f * h * (1.0f + calibration.dig_H3 / 67108864.0f * h)));
+        h = h * (1.0f - calibration.dig_H1 * h / 524288.0f);
+        if (h > 100)
+            h = 100;
+        else if (h < 0)
+            h = 0;
+        return h;
+    }
+}
@@ -0,0 +1,79 @@
+package com.wellmadesoftware.bme280.compensation;
+
+import com.wellmadesoftware.bme280.calibration.CalibrationData;
+
+/**
+ * Fixed point compensation formulas.
+ *
+ * The static methods return the native fixed point results of the datasheet so that batches of
+ * raw samples can be compensated without any floating point work; the {@link Compensator} methods
+ * only scale those results.
+ */
+public class IntegerCompensator implements Compensator {
+
+    public static int compensateFineTemperature(CalibrationData calibration, int adcT) {
+        int var1 = (((adcT >> 3) - (calibration.dig_T1 << 1)) * calibration.dig_T2) >> 11;
+        int var2 = (((((adcT >> 4) - calibration.dig_T1) * ((adcT >> 4) - calibration.dig_T1)) >> 12) * calibration.dig_T3) >> 14;
+        return var1 + var2;
+    }
+
+    /**
+     * @return the temperature in hundredths of a degree celcius
+     */
+    public static int compensateTemperature(int tFine) {
+        return (tFine * 5 + 128) >> 8;
+    }
+
+    /**
+     * @return the pressure in pascal as an unsigned Q24.8 fixed point value
+     */
+    public static long compensatePressure(CalibrationData calibration, int adcP, int tFine) {
+        long var1 = ((long) tFine) - 128000;
+        long var2 = var1 * var1 * calibration.dig_P6;
+        var2 = var2 + ((var1 * calibration.dig_P5) << 17);
+        var2 = var2 + (((long) calibration.dig_P4) << 35);
+        var1 = ((var1 * var1 * calibration.dig_P3) >> 8) + ((var1 * calibration.dig_P2) << 12);
+        var1 = (((1L << 47) + var1) * calibration.dig_P1) >> 33;
+        if (var1 == 0)
+            return 0;
+        long p = 1048576 - adcP;
+        p = (((p << 31) - var2) * 3125) / var1;
+        var1 = (((long) calibration.dig_P9) * (p >> 13) * (p >> 13)) >> 25;
+        var2 = (((long) calibration.dig_P8) * p) >> 19;
+        return ((p + var1 + var2) >> 8) + (((long) calibration.dig_P7) << 4);
+    }
+
+    /**
+     * @return the relative humidity in percent as an unsigned Q22.10 fixed point value
+     */
+    public static int compensateHumidity(CalibrationData calibration, int adcH, int tFine) {
+        int v = tFine - 76800;
+        v = ((((adcH << 14) - (calibration.dig_H4 << 20) - (calibration.dig_H5 * v)) + 16384) >> 15) *
+                (((((((v * calibration.dig_H6) >> 10) * (((v * calibration.dig_H3) >> 11) + 32768)) >> 10) + 2097152) *
+                        calibration.dig_H2 + 8192) >> 14);
+        v = v - (((((v >> 15) * (v >> 15)) >> 7) * calibration.dig_H1) >> 4);
+        v = v < 0 ? 0 : v;
+        v = v > 419430400 ? 419430400 : v;
+        return v >> 12;
+    }
+
+    @Override
+    public int fineTemperature(CalibrationData calibration, int adcT) {
+        return compensateFineTemperature(calibration, adcT);
+    }
+
+    @Override
+    public float temperature(CalibrationData calibration, int adcT) {
+        return compensateTemperature(compensateFineTemperature(calibration, adcT)) / 100.0f;
+    }
+
+    @Override
+    public float pressure(CalibrationData calibration, int adcP, int tFine) {
+        return compensatePressure(calibration, adcP, tFine) / 256.0f;
+    }
+
+    @Override
+    public float humidity(CalibrationData calibration, int adcH, int tFine) {
+        return compensateHumidity(calibration, adcH, tFine) / 1024.0f;
+    }
+}
@@ -0,0 +1,23 @@
+package com.wellmadesoftware.bme280.config;
+
+/**
+ * IIR filter coefficients for the filter field of the config register.
+ */
+public enum Filter {
+
+    OFF(0),
+    X2(1),
+    X4(2),
+    X8(3),
+    X16(4);
+
+    private final int code;
+
+    Filter(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,30 @@
+package com.wellmadesoftware.bme280.config;
+
+/**
+ * Oversampling settings for the osrs_t, osrs_p and osrs_h register fields.
+ */
+public enum Oversampling {
+
+    SKIPPED(0, 0),
+    X1(1, 1),
+    X2(2, 2),
+    X4(3, 4),
+    X8(4, 8),
+    X16(5, 16);
+
+    private final int code;
+    private final int samples;
+
+    Oversampling(int code, int samples) {
+        this.code = code;
+        this.samples = samples;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+}
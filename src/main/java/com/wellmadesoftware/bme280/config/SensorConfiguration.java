@@ -0,0 +1,159 @@
+package com.wellmadesoftware.bme280.config;
+
+/**
+ * Operating mode, oversampling, IIR filter and standby settings applied to the sensor.
+ *
+ * The static factories return the recommended settings from section 3.5 of the datasheet.
+ */
+public class SensorConfiguration {
+
+    private SensorMode mode = SensorMode.FORCED;
+    private Oversampling temperatureOversampling = Oversampling.X8;
+    private Oversampling pressureOversampling = Oversampling.X8;
+    private Oversampling humidityOversampling = Oversampling.X8;
+    private Filter filter = Filter.OFF;
+    private Standby standby = Standby.MS_0_5;
+
+    public SensorConfiguration() {
+
+    }
+
+    public SensorConfiguration(SensorMode mode, Oversampling temperatureOversampling, Oversampling pressureOversampling,
+                               Oversampling humidityOversampling, Filter filter, Standby standby) {
+        this.mode = mode;
+        this.temperatureOversampling = temperatureOversampling;
+        this.pressureOversampling = pressureOversampling;
+        this.humidityOversampling = humidityOversampling;
+        this.filter = filter;
+        this.standby = standby;
+    }
+
+    /**
+     * One forced measurement per read with 1x oversampling and no filter
+     */
+    public static SensorConfiguration weatherMonitoring() {
+        return new SensorConfiguration(SensorMode.FORCED, Oversampling.X1, Oversampling.X1, Oversampling.X1, Filter.OFF, Standby.MS_0_5);
+    }
+
+    /**
+     * One forced measurement per read of temperature and humidity only
+     */
+    public static SensorConfiguration humiditySensing() {
+        return new SensorConfiguration(SensorMode.FORCED, Oversampling.X1, Oversampling.SKIPPED, Oversampling.X1, Filter.OFF, Standby.MS_0_5);
+    }
+
+    /**
+     * Continuous measurements with high pressure oversampling and the strongest filter
+     */
+    public static SensorConfiguration indoorNavigation() {
+        return new SensorConfiguration(SensorMode.NORMAL, Oversampling.X2, Oversampling.X16, Oversampling.X1, Filter.X16, Standby.MS_0_5);
+    }
+
+    /**
+     * Continuous measurements tuned for fast pressure changes, without humidity
+     */
+    public static SensorConfiguration gaming() {
+        return new SensorConfiguration(SensorMode.NORMAL, Oversampling.X1, Oversampling.X4, Oversampling.SKIPPED, Filter.X16, Standby.MS_0_5);
+    }
+
+    /**
+     * Look up a configuration by profile name, e.g. "weather-monitoring" or "INDOOR_NAVIGATION"
+     */
+    public static SensorConfiguration forProfile(String profile) {
+        switch (profile.toLowerCase().replace('_', '-')) {
+            case "default":
+                return new SensorConfiguration();
+            case "weather-monitoring":
+                return weatherMonitoring();
+            case "humidity-sensing":
+                return humiditySensing();
+            case "indoor-navigation":
+                return indoorNavigation();
+            case "gaming":
+                return gaming();
+            default:
+                throw new IllegalArgumentException("Unknown sensor profile : " + profile);
+        }
+    }
+
+    /**
+     * @return the value for the ctrl_hum register
+     */
+    public int controlHumidity() {
+        return humidityOversampling.getCode();
+    }
+
+    /**
+     * @return the value for the ctrl_meas register in the given mode
+     */
+    public int controlMeasurement(SensorMode mode) {
+        return temperatureOversampling.getCode() << 5 | pressureOversampling.getCode() << 2 | mode.getCode();
+    }
+
+    /**
+     * @return the value for the config register
+     */
+    public int config() {
+        return standby.getCode() << 5 | filter.getCode() << 2;
+    }
+
+    /**
+     * @return the maximum time a single measurement takes with these oversampling settings, from section 9.1 of the datasheet
+     */
+    public long maxMeasurementMicros() {
+        long micros = 1250 + 2300 * temperatureOversampling.getSamples();
+        if (pressureOversampling != Oversampling.SKIPPED)
+            micros += 2300 * pressureOversampling.getSamples() + 575;
+        if (humidityOversampling != Oversampling.SKIPPED)
+            micros += 2300 * humidityOversampling.getSamples() + 575;
+        return micros;
+    }
+
+    public SensorMode getMode() {
+        return mode;
+    }
+
+    public void setMode(SensorMode mode) {
+        this.mode = mode;
+    }
+
+    public Oversampling getTemperatureOversampling() {
+        return temperatureOversampling;
+    }
+
+    public void setTemperatureOversampling(Oversampling temperatureOversampling) {
+        this.temperatureOversampling = temperatureOversampling;
+    }
+
+    public Oversampling getPressureOversampling() {
+        return pressureOversampling;
+    }
+
+    public void setPressureOversampling(Oversampling pressureOversampling) {
+        this.pressureOversampling = pressureOversampling;
+    }
+
+    public Oversampling getHumidityOversampling() {
+        return humidityOversampling;
+    }
+
+    public void setHumidityOversampling(Oversampling humidityOversampling) {
+        this.humidityOversampling = humidityOversampling;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    public void setFilter(Filter filter) {
+        this.filter = filter;
+    }
+
+    public Standby getStandby() {
+        return standby;
+    }
+
+    public void setStandby(Standby standby) {
+        this.standby = standby;
+    }
+}
@@ -0,0 +1,32 @@
+package com.wellmadesoftware.bme280.config;
+
+/**
+ * Power modes for the mode field of the ctrl_meas register.
+ */
+public enum SensorMode {
+
+    /**
+     * No measurements are performed
+     */
+    SLEEP(0),
+
+    /**
+     * A single measurement is triggered by each read, then the sensor returns to sleep
+     */
+    FORCED(1),
+
+    /**
+     * The sensor cycles between measurements and standby on its own
+     */
+    NORMAL(3);
+
+    private final int code;
+
+    SensorMode(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,32 @@
+package com.wellmadesoftware.bme280.config;
+
+/**
+ * Inactive duration between two measurements in normal mode, the t_sb field of the config register.
+ */
+public enum Standby {
+
+    MS_0_5(0, 500),
+    MS_10(6, 10000),
+    MS_20(7, 20000),
+    MS_62_5(1, 62500),
+    MS_125(2, 125000),
+    MS_250(3, 250000),
+    MS_500(4, 500000),
+    MS_1000(5, 1000000);
+
+    private final int code;
+    private final long micros;
+
+    Standby(int code, long micros) {
+        this.code = code;
+        this.micros = micros;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public long getMicros() {
+        return micros;
+    }
+}
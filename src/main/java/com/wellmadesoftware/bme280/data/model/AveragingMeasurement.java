@@ -3,46 +3,264 @@ package com.wellmadesoftware.bme280.data.model;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Calendar;
-import java.util.Date;
-import java.util.GregorianCalendar;
-
 /**
  * Created by Steve Goyette on 6/13/2017.
+ *
+ * The mean, minimum and maximum of every channel over a run of measurements. The inherited readings
+ * hold the means and the timestamp is the start of the period covered. Channels that were skipped
+ * (NaN) are left out of the statistics, so each channel keeps its own count of the readings in its
+ * mean next to the count of measurements.
  */
 public class AveragingMeasurement extends Measurement {
 
     private static final Logger logger = LoggerFactory.getLogger(AveragingMeasurement.class);
 
     private int count = 0;
+    private int temperatureCount = 0;
+    private int humidityCount = 0;
+    private int pressureCount = 0;
+    private int cpuTempCount = 0;
+    private int cpuCoreVoltageCount = 0;
+
+    private float minTemperature = Float.NaN;
+    private float maxTemperature = Float.NaN;
+    private float minHumidity = Float.NaN;
+    private float maxHumidity = Float.NaN;
+    private float minPressure = Float.NaN;
+    private float maxPressure = Float.NaN;
+    private float minCpuTemp = Float.NaN;
+    private float maxCpuTemp = Float.NaN;
+    private float minCpuCoreVoltage = Float.NaN;
+    private float maxCpuCoreVoltage = Float.NaN;
+
+    public AveragingMeasurement() {
+
+    }
+
+    public AveragingMeasurement(long timestamp) {
+        setTimestamp(timestamp);
+        setTemperature(Float.NaN);
+        setHumidity(Float.NaN);
+        setPressure(Float.NaN);
+        setCpuTemp(Float.NaN);
+        setCpuCoreVoltage(Float.NaN);
+    }
+
+    /**
+     * Add all channels of a measurement and count it
+     */
+    public void add(Measurement measurement) {
+        addTemperature(measurement.getTemperature());
+        addHumidity(measurement.getHumidity());
+        addPressure(measurement.getPressure());
+        addCpuTemp(measurement.getCpuTemp());
+        addCpuCoreVoltage(measurement.getCpuCoreVoltage());
+        incrementCount();
+    }
+
+    // The mean is updated as mean + (value - mean) / n, which does not grow a sum that swamps the
+    // new value the way (mean * n + value) / (n + 1) does over long periods.
+    private static float mean(float mean, float value, int n) {
+        return n > 0 && !Float.isNaN(mean) ? mean + (value - mean) / (n + 1) : value;
+    }
+
+    // Rows stored before channels were counted separately only have the measurement count
+    private int readings(int channelCount, float mean) {
+        return channelCount > 0 || Float.isNaN(mean) ? channelCount : count;
+    }
+
+    private static float min(float min, float value) {
+        return Float.isNaN(min) || value < min ? value : min;
+    }
+
+    private static float max(float max, float value) {
+        return Float.isNaN(max) || value > max ? value : max;
+    }
 
     public void addTemperature(float temperature) {
-        setTemperature(count>0?((getTemperature() * count) + temperature) / (count + 1) : temperature );
-        /*
-        Calendar cal = GregorianCalendar.getInstance();
-        cal.setTimeInMillis(getTimestamp());
-        logger.debug("Average Temperature for {} set to {}", cal.get(Calendar.HOUR_OF_DAY), getTemperature());
-        */
+        if ( Float.isNaN(temperature) ) {
+            return;
+        }
+        int n = readings(temperatureCount, getTemperature());
+        setTemperature(mean(getTemperature(), temperature, n));
+        temperatureCount = n + 1;
+        minTemperature = min(minTemperature, temperature);
+        maxTemperature = max(maxTemperature, temperature);
     }
 
     public void addHumidity(float humidity) {
-        setHumidity(count>0?((getHumidity() * count) + humidity) / (count + 1) : humidity );
+        if ( Float.isNaN(humidity) ) {
+            return;
+        }
+        int n = readings(humidityCount, getHumidity());
+        setHumidity(mean(getHumidity(), humidity, n));
+        humidityCount = n + 1;
+        minHumidity = min(minHumidity, humidity);
+        maxHumidity = max(maxHumidity, humidity);
     }
 
     public void addPressure(float pressure) {
-        setPressure(count>0?((getPressure() * count) + pressure) / (count + 1) : pressure );
+        if ( Float.isNaN(pressure) ) {
+            return;
+        }
+        int n = readings(pressureCount, getPressure());
+        setPressure(mean(getPressure(), pressure, n));
+        pressureCount = n + 1;
+        minPressure = min(minPressure, pressure);
+        maxPressure = max(maxPressure, pressure);
     }
 
     public void addCpuCoreVoltage(float cpuCoreVoltage) {
-        setCpuCoreVoltage(count>0?((getCpuCoreVoltage() * count) + cpuCoreVoltage) / (count + 1) : cpuCoreVoltage );
+        if ( Float.isNaN(cpuCoreVoltage) ) {
+            return;
+        }
+        int n = readings(cpuCoreVoltageCount, getCpuCoreVoltage());
+        setCpuCoreVoltage(mean(getCpuCoreVoltage(), cpuCoreVoltage, n));
+        cpuCoreVoltageCount = n + 1;
+        minCpuCoreVoltage = min(minCpuCoreVoltage, cpuCoreVoltage);
+        maxCpuCoreVoltage = max(maxCpuCoreVoltage, cpuCoreVoltage);
     }
 
     public void addCpuTemp(float cpuTemp) {
-        setCpuTemp(count>0?((getCpuTemp() * count) + cpuTemp) / (count + 1) : cpuTemp );
+        if ( Float.isNaN(cpuTemp) ) {
+            return;
+        }
+        int n = readings(cpuTempCount, getCpuTemp());
+        setCpuTemp(mean(getCpuTemp(), cpuTemp, n));
+        cpuTempCount = n + 1;
+        minCpuTemp = min(minCpuTemp, cpuTemp);
+        maxCpuTemp = max(maxCpuTemp, cpuTemp);
     }
 
     public void incrementCount() {
         count ++;
     }
 
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public int getTemperatureCount() {
+        return temperatureCount;
+    }
+
+    public void setTemperatureCount(int temperatureCount) {
+        this.temperatureCount = temperatureCount;
+    }
+
+    public int getHumidityCount() {
+        return humidityCount;
+    }
+
+    public void setHumidityCount(int humidityCount) {
+        this.humidityCount = humidityCount;
+    }
+
+    public int getPressureCount() {
+        return pressureCount;
+    }
+
+    public void setPressureCount(int pressureCount) {
+        this.pressureCount = pressureCount;
+    }
+
+    public int getCpuTempCount() {
+        return cpuTempCount;
+    }
+
+    public void setCpuTempCount(int cpuTempCount) {
+        this.cpuTempCount = cpuTempCount;
+    }
+
+    public int getCpuCoreVoltageCount() {
+        return cpuCoreVoltageCount;
+    }
+
+    public void setCpuCoreVoltageCount(int cpuCoreVoltageCount) {
+        this.cpuCoreVoltageCount = cpuCoreVoltageCount;
+    }
+
+    public float getMinTemperature() {
+        return minTemperature;
+    }
+
+    public void setMinTemperature(float minTemperature) {
+        this.minTemperature = minTemperature;
+    }
+
+    public float getMaxTemperature() {
+        return maxTemperature;
+    }
+
+    public void setMaxTemperature(float maxTemperature) {
+        this.maxTemperature = maxTemperature;
+    }
+
+    public float getMinHumidity() {
+        return minHumidity;
+    }
+
+    public void setMinHumidity(float minHumidity) {
+        this.minHumidity = minHumidity;
+    }
+
+    public float getMaxHumidity() {
+        return maxHumidity;
+    }
+
+    public void setMaxHumidity(float maxHumidity) {
+        this.maxHumidity = maxHumidity;
+    }
+
+    public float getMinPressure() {
+        return minPressure;
+    }
+
+    public void setMinPressure(float minPressure) {
+        this.minPressure = minPressure;
+    }
+
+    public float getMaxPressure() {
+        return maxPressure;
+    }
+
+    public void setMaxPressure(float maxPressure) {
+        this.maxPressure = maxPressure;
+    }
+
+    public float getMinCpuTemp() {
+        return minCpuTemp;
+    }
+
+    public void setMinCpuTemp(float minCpuTemp) {
+        this.minCpuTemp = minCpuTemp;
+    }
+
+    public float getMaxCpuTemp() {
+        return maxCpuTemp;
+    }
+
+    public void setMaxCpuTemp(float maxCpuTemp) {
+        this.maxCpuTemp = maxCpuTemp;
+    }
+
+    public float getMinCpuCoreVoltage() {
+        return minCpuCoreVoltage;
+    }
+
+    public void setMinCpuCoreVoltage(float minCpuCoreVoltage) {
+        this.minCpuCoreVoltage = minCpuCoreVoltage;
+    }
+
+    public float getMaxCpuCoreVoltage() {
+        return maxCpuCoreVoltage;
+    }
+
+    public void setMaxCpuCoreVoltage(float maxCpuCoreVoltage) {
+        this.maxCpuCoreVoltage = maxCpuCoreVoltage;
+    }
 }
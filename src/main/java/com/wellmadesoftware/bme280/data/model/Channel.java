@@ -0,0 +1,55 @@
+package com.wellmadesoftware.bme280.data.model;
+
+/**
+ * The readings a {@link Measurement} carries.
+ */
+public enum Channel {
+    TEMPERATURE("Temperature", "C") {
+        @Override
+        public float valueOf(Measurement measurement) {
+            return measurement.getTemperature();
+        }
+    },
+    HUMIDITY("Humidity", "%") {
+        @Override
+        public float valueOf(Measurement measurement) {
+            return measurement.getHumidity();
+        }
+    },
+    PRESSURE("Barometric Pressure", "Pa") {
+        @Override
+        public float valueOf(Measurement measurement) {
+            return measurement.getPressure();
+        }
+    },
+    CPU_TEMPERATURE("CPU Temperature", "C") {
+        @Override
+        public float valueOf(Measurement measurement) {
+            return measurement.getCpuTemp();
+        }
+    },
+    CPU_VOLTAGE("CPU Voltage", "V") {
+        @Override
+        public float valueOf(Measurement measurement) {
+            return measurement.getCpuCoreVoltage();
+        }
+    };
+
+    private final String label;
+    private final String unit;
+
+    Channel(String label, String unit) {
+        this.label = label;
+        this.unit = unit;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public abstract float valueOf(Measurement measurement);
+}
@@ -0,0 +1,90 @@
+package com.wellmadesoftware.bme280.data.model;
+
+import org.dizitart.no2.objects.Id;
+
+import java.util.UUID;
+
+/**
+ * The storage form of a {@link Measurement}.
+ *
+ * Rows are keyed by the timestamp shifted left by {@link #SEQUENCE_BITS}, with the low bits counting
+ * measurements taken in the same millisecond, so keys are unique, increase with time and append to
+ * the end of the id index. The readings are held as fixed point integers: temperature, humidity,
+ * CPU temperature and CPU voltage share one long as four 16 bit values and pressure gets an int.
+ * Field names are one letter because Nitrite stores them with every row.
+ */
+public class CompactMeasurement {
+
+    public static final int SEQUENCE_BITS = 8;
+
+    // Skipped or unavailable readings
+    private static final short MISSING = Short.MIN_VALUE;
+    private static final int MISSING_PRESSURE = Integer.MIN_VALUE;
+
+    @Id
+    private long k;
+    private long v;
+    private int p;
+
+    public CompactMeasurement() {
+
+    }
+
+    public CompactMeasurement(long key, Measurement measurement) {
+        this.k = key;
+        this.v = (pack(measurement.getTemperature(), 100) & 0xFFFFL) << 48
+                | (pack(measurement.getHumidity(), 100) & 0xFFFFL) << 32
+                | (pack(measurement.getCpuTemp(), 100) & 0xFFFFL) << 16
+                | (pack(measurement.getCpuCoreVoltage(), 10000) & 0xFFFFL);
+        this.p = Float.isNaN(measurement.getPressure()) ? MISSING_PRESSURE : Math.round(measurement.getPressure() * 100);
+    }
+
+    public static long key(long timestamp, int sequence) {
+        return timestamp << SEQUENCE_BITS | sequence;
+    }
+
+    public static long timestamp(long key) {
+        return key >> SEQUENCE_BITS;
+    }
+
+    /**
+     * Measurements created from compact rows get an id that carries the key, see {@link #key(UUID)}
+     */
+    public static UUID id(long key) {
+        return new UUID(0, key);
+    }
+
+    /**
+     * @return the key behind an id made by {@link #id(long)}, or -1 for any other id
+     */
+    public static long key(UUID id) {
+        return id.getMostSignificantBits() == 0 ? id.getLeastSignificantBits() : -1;
+    }
+
+    public long getKey() {
+        return k;
+    }
+
+    public Measurement toMeasurement() {
+        Measurement measurement = new Measurement();
+        measurement.setId(id(k));
+        measurement.setTimestamp(timestamp(k));
+        measurement.setTemperature(unpack((short) (v >> 48), 100));
+        measurement.setHumidity(unpack((short) (v >> 32), 100));
+        measurement.setCpuTemp(unpack((short) (v >> 16), 100));
+        measurement.setCpuCoreVoltage(unpack((short) v, 10000));
+        measurement.setPressure(p == MISSING_PRESSURE ? Float.NaN : p / 100.0f);
+        return measurement;
+    }
+
+    private static short pack(float value, int scale) {
+        if ( Float.isNaN(value) ) {
+            return MISSING;
+        }
+        return (short) Math.max(MISSING + 1, Math.min(Short.MAX_VALUE, Math.round(value * scale)));
+    }
+
+    private static float unpack(short value, int scale) {
+        return value == MISSING ? Float.NaN : value / (float) scale;
+    }
+}
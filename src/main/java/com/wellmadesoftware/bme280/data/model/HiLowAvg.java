@@ -0,0 +1,27 @@
+package com.wellmadesoftware.bme280.data.model;
+
+/**
+ * High, low and average temperature over a chart window, published as JSON next to the charts.
+ */
+public class HiLowAvg {
+    public String title;
+    public float hi = -100000.0f;
+    public float low = 100000.0f;
+    public float avg = 0.0f;
+    public int count;
+
+    public HiLowAvg(String title) {
+        this.title = title;
+    }
+
+    public void addValue(float value) {
+        if ( value > hi ) {
+            hi = value;
+        }
+        if ( value < low ) {
+            low = value;
+        }
+        avg = ( ( avg * count ) + value ) / (count + 1);
+        count ++;
+    }
+}
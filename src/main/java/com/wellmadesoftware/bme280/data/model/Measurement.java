@@ -13,7 +13,8 @@ import java.util.UUID;
 
 // provides index information for ObjectRepository
 @Indices({
-        @Index(value = "id", type = IndexType.Unique)
+        @Index(value = "id", type = IndexType.Unique),
+        @Index(value = "timestamp", type = IndexType.NonUnique)
 })
 public class Measurement {
 
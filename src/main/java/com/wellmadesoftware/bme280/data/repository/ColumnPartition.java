@@ -0,0 +1,194 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.model.Channel;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * One day of measurements held as fixed width column files: timestamp.col with the row count in its
+ * first eight bytes followed by one long per row, and one file of floats per {@link Channel}.
+ *
+ * The files are memory mapped with room to spare and the mapping doubles when it fills up. A row is
+ * written to every column before the count is raised, so a reader of the count never sees a
+ * half written row. Rows are kept in timestamp order.
+ *
+ * The files are never cut back to the rows in use, since a file can't be safely truncated while
+ * mapped and Java offers no way to unmap; the count in the header says where the rows end, and the
+ * spare room is at most the rows already held. Appended rows are forced to disk at least every
+ * FORCE_ROWS rows or FORCE_INTERVAL_MILLIS, channels first so the count on disk never covers
+ * readings that are not.
+ */
+class ColumnPartition {
+
+    private static final int HEADER = 8;
+    private static final int INITIAL_CAPACITY = 1440;
+    private static final Channel[] CHANNELS = Channel.values();
+    private static final int FORCE_ROWS = 64;
+    private static final long FORCE_INTERVAL_MILLIS = 10000;
+
+    private final long day;
+    private final FileChannel timestampFile;
+    private final FileChannel[] channelFiles = new FileChannel[CHANNELS.length];
+    private MappedByteBuffer timestamps;
+    private final MappedByteBuffer[] values = new MappedByteBuffer[CHANNELS.length];
+    private int count;
+    private int capacity;
+    private int unforced = 0;
+    private long lastForce = System.currentTimeMillis();
+
+    ColumnPartition(File directory, long day) throws IOException {
+        this.day = day;
+        if ( !directory.isDirectory() && !directory.mkdirs() ) {
+            throw new IOException("Unable to create " + directory);
+        }
+        timestampFile = new RandomAccessFile(new File(directory, "timestamp.col"), "rw").getChannel();
+        for ( Channel channel : CHANNELS ) {
+            channelFiles[channel.ordinal()] = new RandomAccessFile(new File(directory, fileName(channel)), "rw").getChannel();
+        }
+        if ( timestampFile.size() >= HEADER ) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            timestampFile.read(header, 0);
+            count = (int) header.getLong(0);
+        }
+        map(Math.max(INITIAL_CAPACITY, count));
+    }
+
+    static String fileName(Channel channel) {
+        return channel.name().toLowerCase() + ".col";
+    }
+
+    private void map(int rows) throws IOException {
+        capacity = rows;
+        timestamps = timestampFile.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) rows * 8);
+        for ( int c = 0; c < CHANNELS.length; c++ ) {
+            values[c] = channelFiles[c].map(FileChannel.MapMode.READ_WRITE, 0, (long) rows * 4);
+        }
+    }
+
+    long getDay() {
+        return day;
+    }
+
+    int size() {
+        return count;
+    }
+
+    long timestamp(int row) {
+        return timestamps.getLong(HEADER + row * 8);
+    }
+
+    float value(Channel channel, int row) {
+        return values[channel.ordinal()].getFloat(row * 4);
+    }
+
+    Measurement read(int row) {
+        Measurement measurement = new Measurement();
+        measurement.setId(ColumnarMeasurementRepository.id(timestamp(row)));
+        measurement.setTimestamp(timestamp(row));
+        measurement.setTemperature(value(Channel.TEMPERATURE, row));
+        measurement.setHumidity(value(Channel.HUMIDITY, row));
+        measurement.setPressure(value(Channel.PRESSURE, row));
+        measurement.setCpuTemp(value(Channel.CPU_TEMPERATURE, row));
+        measurement.setCpuCoreVoltage(value(Channel.CPU_VOLTAGE, row));
+        return measurement;
+    }
+
+    /**
+     * @return the first row with a timestamp at or after the given one, or size() if there is none
+     */
+    int lowerBound(long timestamp) {
+        int lo = 0;
+        int hi = count;
+        while ( lo < hi ) {
+            int mid = (lo + hi) >>> 1;
+            if ( timestamp(mid) < timestamp ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    void append(Measurement measurement) throws IOException {
+        if ( count == capacity ) {
+            map(capacity * 2);
+        }
+        write(count, measurement);
+        timestamps.putLong(HEADER + count * 8, measurement.getTimestamp());
+        count ++;
+        timestamps.putLong(0, count);
+        unforced ++;
+        long now = System.currentTimeMillis();
+        if ( unforced >= FORCE_ROWS || now - lastForce >= FORCE_INTERVAL_MILLIS ) {
+            force();
+            lastForce = now;
+        }
+    }
+
+    /**
+     * Write the mapped pages out, the channels before the timestamps and count
+     */
+    void force() {
+        for ( MappedByteBuffer column : values ) {
+            column.force();
+        }
+        timestamps.force();
+        unforced = 0;
+    }
+
+    /**
+     * Overwrite the readings of a row, keeping its timestamp
+     */
+    void write(int row, Measurement measurement) {
+        for ( Channel channel : CHANNELS ) {
+            values[channel.ordinal()].putFloat(row * 4, channel.valueOf(measurement));
+        }
+    }
+
+    /**
+     * Delete rows [from, from + n) by moving the rows after them down
+     */
+    void remove(int from, int n) {
+        shift(timestamps, HEADER + from * 8, HEADER + (from + n) * 8, HEADER + count * 8);
+        for ( MappedByteBuffer column : values ) {
+            shift(column, from * 4, (from + n) * 4, count * 4);
+        }
+        count -= n;
+        timestamps.putLong(0, count);
+        force();
+    }
+
+    private static void shift(ByteBuffer column, int to, int from, int end) {
+        // The source and target overlap, so the rows are staged in a heap array. A day of rows is small.
+        byte[] rows = new byte[end - from];
+        ByteBuffer source = column.duplicate();
+        source.position(from);
+        source.get(rows);
+        ByteBuffer target = column.duplicate();
+        target.position(to);
+        target.put(rows);
+    }
+
+    /**
+     * Write the mapped pages out and close the files. The mappings stay valid until collected, so
+     * the partition must not be used afterwards.
+     */
+    void close() throws IOException {
+        force();
+        timestamps = null;
+        for ( int c = 0; c < CHANNELS.length; c++ ) {
+            values[c] = null;
+        }
+        timestampFile.close();
+        for ( FileChannel file : channelFiles ) {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.exception.DBException;
+import com.wellmadesoftware.bme280.data.model.Channel;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Stores measurements in memory mapped column files, one directory of {@link ColumnPartition} files
+ * per UTC day, named by its date.
+ *
+ * Range queries pick the days in range from the sorted set of partitions, binary search the
+ * timestamp column of the first and last of them and read the rows in between straight from the
+ * mapped files. {@link #stream} reads the timestamp column and the channels asked for and nothing else.
+ *
+ * The store is append only in timestamp order: a measurement older than the newest one of its day is
+ * rejected. Measurement ids are new UUID(0, timestamp). A bounded number of partitions are kept
+ * mapped, the least recently used are closed.
+ */
+public class ColumnarMeasurementRepository implements MeasurementRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarMeasurementRepository.class);
+
+    private static final long DAY = 24 * 3600 * 1000L;
+    private static final int OPEN_PARTITIONS = 16;
+    private static final int PAGE = 4096;
+
+    private final File directory;
+    private final NavigableSet<Long> days = new TreeSet<>();
+    private final Map<Long, ColumnPartition> open = new LinkedHashMap<Long, ColumnPartition>(OPEN_PARTITIONS, 0.75f, true);
+    private boolean closed = false;
+
+    public ColumnarMeasurementRepository() {
+        this(String.format("%s/measurements.columns", MeasurementRepositories.DB_PATH));
+    }
+
+    public ColumnarMeasurementRepository(String directoryPath) {
+        directory = new File(directoryPath);
+        directory.mkdirs();
+        File[] partitions = directory.listFiles(File::isDirectory);
+        if ( partitions != null ) {
+            for ( File partition : partitions ) {
+                try {
+                    days.add(LocalDate.parse(partition.getName()).toEpochDay());
+                } catch (DateTimeParseException ex) {
+                    logger.warn("Ignoring {} in {}", partition.getName(), directory);
+                }
+            }
+        }
+    }
+
+    static UUID id(long timestamp) {
+        return new UUID(0, timestamp);
+    }
+
+    private static long day(long timestamp) {
+        return Math.floorDiv(timestamp, DAY);
+    }
+
+    private File partitionDirectory(long day) {
+        return new File(directory, LocalDate.ofEpochDay(day).toString());
+    }
+
+    private ColumnPartition partition(long day) throws IOException {
+        ColumnPartition partition = open.get(day);
+        if ( partition == null ) {
+            partition = new ColumnPartition(partitionDirectory(day), day);
+            open.put(day, partition);
+            days.add(day);
+            if ( open.size() > OPEN_PARTITIONS ) {
+                Iterator<ColumnPartition> eldest = open.values().iterator();
+                ColumnPartition evicted = eldest.next();
+                eldest.remove();
+                evicted.close();
+            }
+        }
+        return partition;
+    }
+
+    private void checkOpen() throws DBException {
+        if ( closed ) {
+            throw new DBException("Repository is closed");
+        }
+    }
+
+    @Override
+    public synchronized Measurement create(Measurement measurement) throws DBException {
+        checkOpen();
+        try {
+            ColumnPartition partition = partition(day(measurement.getTimestamp()));
+            int size = partition.size();
+            if ( size > 0 && partition.timestamp(size - 1) > measurement.getTimestamp() ) {
+                throw new DBException("Measurement at " + measurement.getTimestamp() + " is older than the last one stored");
+            }
+            long start = System.nanoTime();
+            partition.append(measurement);
+            RepositoryMetrics.INSERTS.recordSince(start);
+        } catch (IOException ex) {
+            throw new DBException("Failed to write measurement", ex);
+        }
+        measurement.setId(id(measurement.getTimestamp()));
+        return measurement;
+    }
+
+    @Override
+    public synchronized List<Measurement> createAll(Collection<Measurement> measurements) throws DBException {
+        List<Measurement> batch = new ArrayList<>(measurements);
+        for ( Measurement measurement : batch ) {
+            create(measurement);
+        }
+        return batch;
+    }
+
+    /**
+     * @return the partition holding a measurement with the given id, or null
+     */
+    private ColumnPartition partitionOf(UUID id) throws DBException {
+        if ( id == null || id.getMostSignificantBits() != 0 ) {
+            return null;
+        }
+        long timestamp = id.getLeastSignificantBits();
+        if ( !days.contains(day(timestamp)) ) {
+            return null;
+        }
+        try {
+            ColumnPartition partition = partition(day(timestamp));
+            int row = partition.lowerBound(timestamp);
+            return row < partition.size() && partition.timestamp(row) == timestamp ? partition : null;
+        } catch (IOException ex) {
+            throw new DBException("Failed to read partition", ex);
+        }
+    }
+
+    @Override
+    public synchronized Measurement read(UUID id) throws DBException {
+        checkOpen();
+        ColumnPartition partition = partitionOf(id);
+        return partition == null ? null : partition.read(partition.lowerBound(id.getLeastSignificantBits()));
+    }
+
+    @Override
+    public synchronized Measurement update(Measurement measurement) throws DBException {
+        checkOpen();
+        validate(measurement);
+        ColumnPartition partition = partitionOf(measurement.getId());
+        if ( partition == null ) {
+            throw new DBException("No measurement with id " + measurement.getId());
+        }
+        partition.write(partition.lowerBound(measurement.getId().getLeastSignificantBits()), measurement);
+        partition.force();
+        return measurement;
+    }
+
+    @Override
+    public synchronized void delete(Measurement measurement) throws DBException {
+        checkOpen();
+        validate(measurement);
+        ColumnPartition partition = partitionOf(measurement.getId());
+        if ( partition != null ) {
+            partition.remove(partition.lowerBound(measurement.getId().getLeastSignificantBits()), 1);
+        }
+    }
+
+    private static void validate(Measurement measurement) throws DBException {
+        if ( measurement == null || measurement.getId() == null ) {
+            throw new DBException("Invalid parameter.  Measurement must not be null and must have a valid id");
+        }
+    }
+
+    @Override
+    public synchronized List<Measurement> list(long start, long end) {
+        List<Measurement> results = new ArrayList<>();
+        if ( closed || start >= end ) {
+            return results;
+        }
+        long started = System.nanoTime();
+        for ( long day : days.subSet(day(start), true, day(end - 1), true) ) {
+            try {
+                ColumnPartition partition = partition(day);
+                for ( int row = partition.lowerBound(start), last = partition.lowerBound(end); row < last; row++ ) {
+                    results.add(partition.read(row));
+                }
+            } catch (IOException ex) {
+                logger.error("Failed to read partition {} : {}", LocalDate.ofEpochDay(day), ex.getMessage());
+            }
+        }
+        RepositoryMetrics.LISTS.recordSince(started);
+        return results;
+    }
+
+    /**
+     * Reads only the timestamp column and the columns of the query's channels. With a step, rows
+     * the step skips are passed over by binary search rather than read.
+     *
+     * Rows are copied out {@link #PAGE} at a time with the repository locked and visited after it
+     * is released, so a slow visitor never holds up inserts.
+     */
+    @Override
+    public void stream(MeasurementQuery query, MeasurementVisitor visitor) {
+        MeasurementQuery.Projection projection = query.project(visitor);
+        if ( query.getStart() >= query.getEnd() ) {
+            return;
+        }
+        Channel[] channels = projection.channels();
+        float[] values = projection.values();
+        Page page = new Page(query.getStart(), channels.length);
+        while ( !projection.isDone() ) {
+            synchronized (this) {
+                if ( closed ) {
+                    return;
+                }
+                fill(page, query.getEnd(), channels, projection);
+            }
+            for ( int i = 0; i < page.rows; i++ ) {
+                for ( int c = 0; c < channels.length; c++ ) {
+                    values[c] = page.values[c][i];
+                }
+                if ( !projection.emit(page.timestamps[i]) ) {
+                    return;
+                }
+            }
+            if ( page.rows < PAGE ) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rows copied out of the partitions, and where the next page starts: the rows at or after from,
+     * less the first skip of them, which have the timestamp from and were in an earlier page
+     */
+    private static class Page {
+        final long[] timestamps = new long[PAGE];
+        final float[][] values;
+        int rows;
+        long from;
+        int skip = 0;
+        long next = Long.MIN_VALUE;
+
+        Page(long from, int channels) {
+            this.from = from;
+            this.values = new float[channels][PAGE];
+        }
+    }
+
+    private void fill(Page page, long end, Channel[] channels, MeasurementQuery.Projection projection) {
+        page.rows = 0;
+        for ( long day : days.subSet(day(page.from), true, day(end - 1), true) ) {
+            try {
+                ColumnPartition partition = partition(day);
+                int row = partition.lowerBound(page.from);
+                if ( day == day(page.from) ) {
+                    row = Math.min(row + page.skip, partition.size());
+                }
+                row = Math.max(row, partition.lowerBound(page.next));
+                int last = partition.lowerBound(end);
+                while ( row < last && page.rows < PAGE ) {
+                    long timestamp = partition.timestamp(row);
+                    page.timestamps[page.rows] = timestamp;
+                    for ( int c = 0; c < channels.length; c++ ) {
+                        page.values[c][page.rows] = partition.value(channels[c], row);
+                    }
+                    page.rows ++;
+                    page.skip = timestamp == page.from ? page.skip + 1 : 1;
+                    page.from = timestamp;
+                    page.next = projection.after(timestamp);
+                    row = page.next > timestamp + 1 ? Math.max(row + 1, partition.lowerBound(page.next)) : row + 1;
+                }
+                if ( page.rows == PAGE ) {
+                    return;
+                }
+            } catch (IOException ex) {
+                logger.error("Failed to read partition {} : {}", LocalDate.ofEpochDay(day), ex.getMessage());
+                return;
+            }
+        }
+    }
+
+    @Override
+    public synchronized int deleteRange(long start, long end, int limit) throws DBException {
+        checkOpen();
+        int deleted = 0;
+        if ( start >= end ) {
+            return 0;
+        }
+        for ( long day : new ArrayList<>(days.subSet(day(start), true, day(end - 1), true)) ) {
+            if ( deleted == limit ) {
+                break;
+            }
+            try {
+                ColumnPartition partition = partition(day);
+                int first = partition.lowerBound(start);
+                int n = Math.min(partition.lowerBound(end) - first, limit - deleted);
+                if ( n == partition.size() ) {
+                    // The whole day goes, files and all
+                    open.remove(day).close();
+                    days.remove(day);
+                    deletePartition(day);
+                } else if ( n > 0 ) {
+                    partition.remove(first, n);
+                }
+                deleted += n;
+            } catch (IOException ex) {
+                throw new DBException("Failed to delete from partition " + LocalDate.ofEpochDay(day), ex);
+            }
+        }
+        return deleted;
+    }
+
+    private void deletePartition(long day) throws IOException {
+        File partition = partitionDirectory(day);
+        File[] files = partition.listFiles();
+        if ( files != null ) {
+            for ( File file : files ) {
+                if ( !file.delete() ) {
+                    throw new IOException("Unable to delete " + file);
+                }
+            }
+        }
+        if ( !partition.delete() ) {
+            throw new IOException("Unable to delete " + partition);
+        }
+    }
+
+    /**
+     * Write out and unmap the mapped partitions; their files keep their spare room, see {@link ColumnPartition}
+     */
+    @Override
+    public synchronized void compact() {
+        for ( ColumnPartition partition : open.values() ) {
+            try {
+                partition.close();
+            } catch (IOException ex) {
+                logger.error("Failed to compact partition {} : {}", LocalDate.ofEpochDay(partition.getDay()), ex.getMessage());
+            }
+        }
+        open.clear();
+    }
+
+    @Override
+    public synchronized void close() {
+        if ( !closed ) {
+            compact();
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.exception.DBException;
+import com.wellmadesoftware.bme280.data.model.CompactMeasurement;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import org.dizitart.no2.Nitrite;
+import org.dizitart.no2.objects.ObjectRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.dizitart.no2.objects.filters.ObjectFilters.*;
+
+/**
+ * Stores measurements as {@link CompactMeasurement} rows keyed by time.
+ *
+ * Measurements handed out by this repository have ids that encode their key, including the copies
+ * returned by create. Measurements must be created in time order: up to 256 can share a
+ * millisecond, and one older than the last stored is rejected.
+ */
+public class CompactMeasurementRepository implements MeasurementRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompactMeasurementRepository.class);
+
+    private static final String KEY = "k";
+
+    private Nitrite db;
+    private ObjectRepository<CompactMeasurement> repository;
+    private long lastKey = -1;
+
+    public CompactMeasurementRepository()  {
+        this(String.format("%s/measurements-compact.db", MeasurementRepositories.DB_PATH));
+    }
+
+    public CompactMeasurementRepository(String filePath)  {
+
+        db = Nitrite.builder()
+                .compressed()
+                .filePath(filePath)
+                .openOrCreate();
+
+        repository = db.getRepository(CompactMeasurement.class);
+
+        CompactMeasurement last = repository.find(new LastKeyFilter(KEY)).firstOrDefault();
+        if ( last != null ) {
+            lastKey = last.getKey();
+        }
+    }
+
+    /**
+     * @return the next key for a measurement: its timestamp, with the sequence after the last key if
+     * that has the same timestamp
+     */
+    private synchronized long nextKey(Measurement measurement) throws DBException {
+        long timestamp = measurement.getTimestamp();
+        long key = CompactMeasurement.key(timestamp, 0);
+        if ( lastKey >= 0 && CompactMeasurement.timestamp(lastKey) == timestamp ) {
+            key = lastKey + 1;
+            if ( CompactMeasurement.timestamp(key) != timestamp ) {
+                throw new DBException("More than " + (1 << CompactMeasurement.SEQUENCE_BITS) + " measurements at " + timestamp);
+            }
+        } else if ( key < lastKey ) {
+            throw new DBException("Measurement at " + timestamp + " is older than the last one stored");
+        }
+        lastKey = key;
+        return key;
+    }
+
+    /**
+     * @return a copy of the measurement with the id of its row
+     */
+    private static Measurement withId(Measurement measurement, long key) {
+        Measurement created = new Measurement(measurement);
+        created.setId(CompactMeasurement.id(key));
+        return created;
+    }
+
+    @Override
+    public Measurement create(Measurement measurement) throws DBException {
+        long key = nextKey(measurement);
+        long start = System.nanoTime();
+        repository.insert(new CompactMeasurement(key, measurement));
+        RepositoryMetrics.INSERTS.recordSince(start);
+
+        commit();
+        return withId(measurement, key);
+    }
+
+    /**
+     * Measurements older than the last one stored are logged and left out
+     */
+    @Override
+    public List<Measurement> createAll(Collection<Measurement> measurements) throws DBException {
+        List<Measurement> created = new ArrayList<>(measurements.size());
+        List<CompactMeasurement> rows = new ArrayList<>(measurements.size());
+        for ( Measurement measurement : measurements ) {
+            long key;
+            try {
+                key = nextKey(measurement);
+            } catch (DBException ex) {
+                logger.warn("Skipping measurement : {}", ex.getMessage());
+                continue;
+            }
+            rows.add(new CompactMeasurement(key, measurement));
+            created.add(withId(measurement, key));
+        }
+        if ( !rows.isEmpty() ) {
+            long start = System.nanoTime();
+            repository.insert(rows.toArray(new CompactMeasurement[rows.size()]));
+            RepositoryMetrics.INSERTS.recordSince(start);
+            commit();
+        }
+        return created;
+    }
+
+    @Override
+    public Measurement read(UUID id) throws DBException {
+        CompactMeasurement row = repository.find(eq(KEY, CompactMeasurement.key(id))).firstOrDefault();
+        return row == null ? null : row.toMeasurement();
+    }
+
+    @Override
+    public Measurement update(Measurement measurement) throws DBException {
+        long key = key(measurement);
+        if ( repository.update(eq(KEY, key), new CompactMeasurement(key, measurement)).getAffectedCount() == 0 ) {
+            throw new DBException("No measurement with id " + measurement.getId());
+        }
+
+        commit();
+        return measurement;
+    }
+
+    @Override
+    public void delete(Measurement measurement) throws DBException {
+        repository.remove(eq(KEY, key(measurement)));
+
+        commit();
+    }
+
+    private static long key(Measurement measurement) throws DBException {
+        if ( measurement == null || measurement.getId() == null ) {
+            throw new DBException("Invalid parameter.  Measurement must not be null and must have a valid id");
+        }
+        long key = CompactMeasurement.key(measurement.getId());
+        if ( key < 0 ) {
+            throw new DBException("Measurement id " + measurement.getId() + " was not issued by this repository");
+        }
+        return key;
+    }
+
+    /**
+     * @return the first key at a timestamp, clamped so open ranges such as Long.MAX_VALUE do not
+     * overflow the shift
+     */
+    private static long rangeKey(long timestamp) {
+        if ( timestamp > Long.MAX_VALUE >> CompactMeasurement.SEQUENCE_BITS ) {
+            return Long.MAX_VALUE;
+        }
+        if ( timestamp < Long.MIN_VALUE >> CompactMeasurement.SEQUENCE_BITS ) {
+            return Long.MIN_VALUE;
+        }
+        return CompactMeasurement.key(timestamp, 0);
+    }
+
+    @Override
+    public List<Measurement> list(long start, long end) {
+        long started = System.nanoTime();
+        List<Measurement> results = new ArrayList<>();
+        for ( CompactMeasurement row : repository.find(new TimestampRangeFilter(KEY,
+                rangeKey(start), rangeKey(end))) ) {
+            results.add(row.toMeasurement());
+        }
+        RepositoryMetrics.LISTS.recordSince(started);
+        return results;
+    }
+
+    @Override
+    public void stream(MeasurementQuery query, MeasurementVisitor visitor) {
+        query.project(visitor).read((from, to, limit) -> repository.find(new TimestampRangeFilter(KEY,
+                rangeKey(from), rangeKey(to), limit)), CompactMeasurement::toMeasurement);
+    }
+
+    @Override
+    public int deleteRange(long start, long end, int limit) throws DBException {
+        int deleted = repository.remove(new TimestampRangeFilter(KEY,
+                rangeKey(start), rangeKey(end), limit)).getAffectedCount();
+
+        commit();
+        return deleted;
+    }
+
+    private void commit() {
+        long start = System.nanoTime();
+        db.commit();
+        RepositoryMetrics.COMMITS.recordSince(start);
+    }
+
+    @Override
+    public void compact() {
+        db.compact();
+    }
+
+    @Override
+    public void close() {
+        if ( !db.isClosed() ) {
+            db.commit();
+            db.close();
+        }
+    }
+}
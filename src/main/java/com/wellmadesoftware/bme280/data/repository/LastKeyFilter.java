@@ -0,0 +1,45 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import org.dizitart.no2.Document;
+import org.dizitart.no2.NitriteId;
+import org.dizitart.no2.internals.NitriteMapper;
+import org.dizitart.no2.internals.NitriteService;
+import org.dizitart.no2.objects.ObjectFilter;
+import org.dizitart.no2.store.NitriteMap;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Matches the document with the highest value of an indexed long field.
+ *
+ * The lesser-equal index lookup walks the index from the top down, so its first id is the one
+ * wanted and no documents are read along the way. This avoids a sort, which reads every document.
+ */
+class LastKeyFilter implements ObjectFilter {
+
+    private final String field;
+    private NitriteService nitriteService;
+
+    LastKeyFilter(String field) {
+        this.field = field;
+    }
+
+    @Override
+    public Set<NitriteId> apply(NitriteMap<NitriteId, Document> documentMap) {
+        for ( NitriteId id : nitriteService.findLesserEqualWithIndex(field, Long.MAX_VALUE) ) {
+            return Collections.singleton(id);
+        }
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void setNitriteService(NitriteService nitriteService) {
+        this.nitriteService = nitriteService;
+    }
+
+    @Override
+    public void setNitriteMapper(NitriteMapper nitriteMapper) {
+
+    }
+}
@@ -0,0 +1,131 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.exception.DBException;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import org.dizitart.no2.Nitrite;
+import org.dizitart.no2.objects.ObjectRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Copies a measurements.db into the compact (the default) or columnar format and reports the bytes
+ * per row of both.
+ *
+ * Usage: MeasurementMigration &lt;measurements.db&gt; &lt;target&gt; [compact|columnar]
+ *
+ * The source is never opened: Nitrite builds any missing index when a repository is first opened,
+ * so the migration works on a temporary copy next to the target and deletes it afterwards. Rows
+ * are read from the copy's timestamp index a page at a time, in timestamp order, so the target
+ * gets sequential keys and only one page is held in memory.
+ */
+public class MeasurementMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(MeasurementMigration.class);
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String TIMESTAMP = "timestamp";
+
+    public static void main(String[] args) throws DBException, IOException {
+        String format = args.length == 3 ? args[2] : "compact";
+        if ( args.length < 2 || args.length > 3 || !(format.equals("compact") || format.equals("columnar")) ) {
+            logger.error("Usage: MeasurementMigration <measurements.db> <target> [compact|columnar]");
+            System.exit(1);
+        }
+        File source = new File(args[0]);
+        File target = new File(args[1]);
+        if ( !source.isFile() ) {
+            logger.error("No database at {}", source);
+            System.exit(1);
+        }
+
+        Path working = Files.createTempFile(target.getAbsoluteFile().getParentFile().toPath(), "measurements-migration", ".db");
+        long count;
+        try {
+            Files.copy(source.toPath(), working, StandardCopyOption.REPLACE_EXISTING);
+            count = copy(working.toFile(), format.equals("compact")
+                    ? new CompactMeasurementRepository(target.getPath())
+                    : new ColumnarMeasurementRepository(target.getPath()));
+        } finally {
+            Files.deleteIfExists(working);
+        }
+
+        logger.info("Copied {} measurements", count);
+        report(source, count);
+        report(target, count);
+    }
+
+    private static long copy(File source, MeasurementRepository copy) throws DBException {
+        long count = 0;
+        Nitrite db = Nitrite.builder()
+                .compressed()
+                .filePath(source.getPath())
+                .openOrCreate();
+        try {
+            ObjectRepository<Measurement> measurements = db.getRepository(Measurement.class);
+            long start = Long.MIN_VALUE;
+            while ( true ) {
+                List<Measurement> page = page(measurements, start, Long.MAX_VALUE, BATCH_SIZE);
+                if ( page.size() < BATCH_SIZE ) {
+                    count += copy.createAll(page).size();
+                    break;
+                }
+                // The page may end part way through the rows of its last timestamp, which are read again with the next
+                long last = page.get(page.size() - 1).getTimestamp();
+                List<Measurement> batch = new ArrayList<>(BATCH_SIZE);
+                for ( Measurement measurement : page ) {
+                    if ( measurement.getTimestamp() < last ) {
+                        batch.add(measurement);
+                    }
+                }
+                if ( batch.isEmpty() ) {
+                    // A whole page shares one timestamp, so take all of that timestamp at once
+                    batch = page(measurements, last, last + 1, Integer.MAX_VALUE);
+                    start = last + 1;
+                } else {
+                    start = last;
+                }
+                count += copy.createAll(batch).size();
+                logger.debug("Copied {} measurements", count);
+            }
+        } finally {
+            copy.close();
+            db.close();
+        }
+        return count;
+    }
+
+    private static List<Measurement> page(ObjectRepository<Measurement> measurements, long start, long end, int limit) {
+        List<Measurement> page = new ArrayList<>(Math.min(limit, BATCH_SIZE));
+        for ( Measurement measurement : measurements.find(new TimestampRangeFilter(TIMESTAMP, start, end, limit)) ) {
+            page.add(measurement);
+        }
+        page.sort(Comparator.comparingLong(Measurement::getTimestamp));
+        return page;
+    }
+
+    private static void report(File file, long count) {
+        long bytes = size(file);
+        logger.info("{} : {} bytes, {} bytes/row", file.getName(), bytes,
+                String.format("%.1f", count == 0 ? 0.0 : bytes / (double) count));
+    }
+    private static long size(File file) {
+        File[] children = file.listFiles();
+        if ( children == null ) {
+            return file.length();
+        }
+        long bytes = 0;
+        for ( File child : children ) {
+            bytes += size(child);
+        }
+        return bytes;
+    }
+}
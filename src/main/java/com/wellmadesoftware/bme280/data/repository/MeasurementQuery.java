@@ -0,0 +1,188 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.model.Channel;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+
+import java.util.function.Function;
+
+/**
+ * A range of measurements to stream, with the channels to read and optionally a step and a limit.
+ *
+ * With a step, only the first measurement in each step long interval (counted from start) is
+ * visited, which thins a long range out to a fixed number of points. The limit caps the number of
+ * measurements visited.
+ */
+public class MeasurementQuery {
+
+    private static final long WINDOW = 24 * 3600 * 1000L;
+
+    private final long start;
+    private final long end;
+    private Channel[] channels = Channel.values();
+    private long step = 0;
+    private long limit = Long.MAX_VALUE;
+
+    public MeasurementQuery(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public static MeasurementQuery range(long start, long end) {
+        return new MeasurementQuery(start, end);
+    }
+
+    public MeasurementQuery channels(Channel... channels) {
+        this.channels = channels.clone();
+        return this;
+    }
+
+    public MeasurementQuery step(long millis) {
+        this.step = millis;
+        return this;
+    }
+
+    public MeasurementQuery limit(long measurements) {
+        this.limit = measurements;
+        return this;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public Channel[] getChannels() {
+        return channels.clone();
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    Projection project(MeasurementVisitor visitor) {
+        return new Projection(visitor);
+    }
+
+    /**
+     * Reads the rows of an indexed store taken at or after from and before to, oldest first
+     */
+    interface RangeReader<T> {
+        Iterable<T> read(long from, long to, int limit);
+    }
+
+    /**
+     * Applies the step, the limit and the channel projection on the way to a visitor
+     */
+    class Projection {
+
+        private final MeasurementVisitor visitor;
+        private final float[] values = new float[channels.length];
+        private long next = Long.MIN_VALUE;
+        private long visited = 0;
+        private boolean done = limit <= 0;
+
+        private Projection(MeasurementVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        Channel[] channels() {
+            return channels;
+        }
+
+        boolean isDone() {
+            return done;
+        }
+
+        /**
+         * @return the earliest timestamp the step lets through next
+         */
+        long next() {
+            return next;
+        }
+
+        /**
+         * @return the earliest timestamp the step lets through once one at the given timestamp is visited
+         */
+        long after(long timestamp) {
+            return step > 0 ? start + (Math.floorDiv(timestamp - start, step) + 1) * step : Long.MIN_VALUE;
+        }
+
+        /**
+         * @return the array to fill with the channels of a measurement before {@link #emit}
+         */
+        float[] values() {
+            return values;
+        }
+
+        /**
+         * Visit the values already filled in, if the step lets the timestamp through
+         *
+         * @return false once the stream is over
+         */
+        boolean emit(long timestamp) {
+            if ( done ) {
+                return false;
+            }
+            if ( timestamp < next ) {
+                return true;
+            }
+            next = after(timestamp);
+            visited ++;
+            done = !visitor.visit(timestamp, values) || visited >= limit;
+            return !done;
+        }
+
+        /**
+         * Visit values that another projection of the same query has already let through, so this
+         * one can carry on after it
+         */
+        boolean resume(long timestamp, float[] values) {
+            System.arraycopy(values, 0, this.values, 0, values.length);
+            return emit(timestamp);
+        }
+
+        boolean offer(Measurement measurement) {
+            if ( measurement.getTimestamp() < next ) {
+                return !done;
+            }
+            for ( int c = 0; c < channels.length; c++ ) {
+                values[c] = channels[c].valueOf(measurement);
+            }
+            return emit(measurement.getTimestamp());
+        }
+
+        /**
+         * Feed the projection from an indexed store a day at a time, so no more than a day of row ids
+         * is held at once. With a step, each read asks for the single first row at or after the next
+         * timestamp the step lets through.
+         */
+        <T> void read(RangeReader<T> reader, Function<T, Measurement> converter) {
+            long from = start;
+            while ( !done && from < end ) {
+                from = Math.max(from, next);
+                long to = step > 0 ? end : Math.min(end, from + WINDOW);
+                int rows = step > 0 ? 1 : (int) Math.min(Integer.MAX_VALUE, limit - visited);
+                boolean found = false;
+                for ( T row : reader.read(from, to, rows) ) {
+                    found = true;
+                    if ( !offer(converter.apply(row)) ) {
+                        return;
+                    }
+                }
+                if ( step > 0 && !found ) {
+                    return;
+                }
+                if ( step == 0 ) {
+                    from = to;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+/**
+ * Creates the measurement store selected on the command line.
+ *
+ * The bme280.db.format system property picks one of
+ * <ul>
+ *     <li>measurement (the default) - {@link MeasurementRepositoryImpl}, measurements.db</li>
+ *     <li>compact - {@link CompactMeasurementRepository}, measurements-compact.db</li>
+ *     <li>columnar - {@link ColumnarMeasurementRepository}, measurements.columns</li>
+ * </ul>
+ * Existing measurements.db files are converted with {@link MeasurementMigration}.
+ */
+public class MeasurementRepositories {
+
+    /**
+     * The directory every store keeps its files in, bme280.db.path
+     */
+    public static final String DB_PATH = System.getProperty("bme280.db.path", "/home/sgoyette/data");
+
+    public static MeasurementRepository fromSystemProperties() {
+        String format = System.getProperty("bme280.db.format", "measurement");
+        if (format.equals("measurement")) {
+            return new MeasurementRepositoryImpl();
+        } else if (format.equals("compact")) {
+            return new CompactMeasurementRepository();
+        } else if (format.equals("columnar")) {
+            return new ColumnarMeasurementRepository();
+        } else {
+            throw new IllegalArgumentException("Unknown database format : " + format);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.wellmadesoftware.bme280.data.repository;
 import com.wellmadesoftware.bme280.data.exception.DBException;
 import com.wellmadesoftware.bme280.data.model.Measurement;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -13,11 +14,34 @@ public interface MeasurementRepository {
 
 
     Measurement create(Measurement measurement) throws DBException;
+    List<Measurement> createAll(Collection<Measurement> measurements) throws DBException;
     Measurement read(UUID id) throws DBException;
     Measurement update(Measurement measurement) throws DBException;
     void delete(Measurement measurement) throws DBException;
 
+    /**
+     * @return the measurements taken at or after start and before end, ordered by timestamp
+     */
     List<Measurement> list(long start, long end);
 
+    /**
+     * Visit the measurements of a query in timestamp order, one at a time, without holding the whole
+     * range in memory
+     */
+    void stream(MeasurementQuery query, MeasurementVisitor visitor);
+
+    /**
+     * Delete the oldest measurements taken at or after start and before end, at most limit of them
+     *
+     * @return the number deleted, less than limit once the range is empty
+     */
+    int deleteRange(long start, long end, int limit) throws DBException;
+
+    /**
+     * Reclaim the space of deleted measurements in the underlying file
+     */
+    void compact();
+
+    void close();
 
 }
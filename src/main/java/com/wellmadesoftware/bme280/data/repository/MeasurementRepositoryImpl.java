@@ -6,6 +6,8 @@ import org.dizitart.no2.Nitrite;
 import org.dizitart.no2.objects.Cursor;
 import org.dizitart.no2.objects.ObjectRepository;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -16,16 +18,18 @@ import static org.dizitart.no2.objects.filters.ObjectFilters.*;
  */
 public class MeasurementRepositoryImpl implements MeasurementRepository {
 
-    private static final String DB_PATH = "/home/sgoyette/data";
-
     private Nitrite db;
     private ObjectRepository<Measurement> repository;
 
     public MeasurementRepositoryImpl()  {
+        this(String.format("%s/measurements.db", MeasurementRepositories.DB_PATH));
+    }
+
+    public MeasurementRepositoryImpl(String filePath)  {
 
         db = Nitrite.builder()
                 .compressed()
-                .filePath(String.format("%s/measurements.db", DB_PATH))
+                .filePath(filePath)
                 .openOrCreate();
 
         repository = db.getRepository(Measurement.class);
@@ -33,12 +37,26 @@ public class MeasurementRepositoryImpl implements MeasurementRepository {
 
     @Override
     public Measurement create(Measurement measurement) throws DBException {
+        long start = System.nanoTime();
         repository.insert(measurement);
+        RepositoryMetrics.INSERTS.recordSince(start);
 
-        db.commit();
+        commit();
         return measurement;
     }
 
+    @Override
+    public List<Measurement> createAll(Collection<Measurement> measurements) throws DBException {
+        List<Measurement> batch = new ArrayList<>(measurements);
+        if ( !batch.isEmpty() ) {
+            long start = System.nanoTime();
+            repository.insert(batch.toArray(new Measurement[batch.size()]));
+            RepositoryMetrics.INSERTS.recordSince(start);
+            commit();
+        }
+        return batch;
+    }
+
     @Override
     public Measurement read(UUID id) throws DBException {
         Cursor<Measurement> cursor = repository.find(eq("id", id));
@@ -47,11 +65,24 @@ public class MeasurementRepositoryImpl implements MeasurementRepository {
 
     @Override
     public Measurement update(Measurement measurement) throws DBException {
+        validate(measurement);
+        if ( repository.update(eq("id", measurement.getId()), measurement).getAffectedCount() == 0 ) {
+            throw new DBException("No measurement with id " + measurement.getId());
+        }
+
+        commit();
         return measurement;
     }
 
     @Override
     public void delete(Measurement measurement) throws DBException {
+        validate(measurement);
+        repository.remove(eq("id", measurement.getId()));
+
+        commit();
+    }
+
+    private static void validate(Measurement measurement) throws DBException {
         if ( measurement == null || measurement.getId() == null ) {
             throw new DBException("Invalid parameter.  Measurement must not be null and must have a valid id");
         }
@@ -59,14 +90,45 @@ public class MeasurementRepositoryImpl implements MeasurementRepository {
 
     @Override
     public List<Measurement> list(long start, long end) {
-
-        Cursor<Measurement> cursor = repository.find(and(
-                gte("timestamp", start),
-                lt("timestamp", end)
-        ));
+        long started = System.nanoTime();
+        Cursor<Measurement> cursor = repository.find(new TimestampRangeFilter(start, end));
 
         List<Measurement> results = cursor.toList();
 
+        RepositoryMetrics.LISTS.recordSince(started);
         return results;
     }
+
+    @Override
+    public void stream(MeasurementQuery query, MeasurementVisitor visitor) {
+        query.project(visitor).read((from, to, limit) -> repository.find(new TimestampRangeFilter("timestamp", from, to, limit)),
+                measurement -> measurement);
+    }
+
+    @Override
+    public int deleteRange(long start, long end, int limit) throws DBException {
+        int deleted = repository.remove(new TimestampRangeFilter("timestamp", start, end, limit)).getAffectedCount();
+
+        commit();
+        return deleted;
+    }
+
+    private void commit() {
+        long start = System.nanoTime();
+        db.commit();
+        RepositoryMetrics.COMMITS.recordSince(start);
+    }
+
+    @Override
+    public void compact() {
+        db.compact();
+    }
+
+    @Override
+    public void close() {
+        if ( !db.isClosed() ) {
+            db.commit();
+            db.close();
+        }
+    }
 }
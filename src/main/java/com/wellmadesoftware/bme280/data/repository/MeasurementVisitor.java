@@ -0,0 +1,14 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+/**
+ * Receives the measurements of a {@link MeasurementRepository#stream} one at a time.
+ */
+public interface MeasurementVisitor {
+
+    /**
+     * @param values the readings of the query's channels, in the order they were given. The array is
+     *               reused for the next measurement.
+     * @return false to end the stream early
+     */
+    boolean visit(long timestamp, float[] values);
+}
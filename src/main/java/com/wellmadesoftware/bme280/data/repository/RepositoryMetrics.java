@@ -0,0 +1,17 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.metrics.LatencyHistogram;
+import com.wellmadesoftware.bme280.metrics.Metrics;
+
+/**
+ * The latency histograms shared by the measurement stores, whichever bme280.db.format is in use
+ */
+class RepositoryMetrics {
+
+    static final LatencyHistogram INSERTS = Metrics.histogram("bme280_db_insert_seconds",
+            "Time taken to insert measurements into the store, before committing");
+    static final LatencyHistogram COMMITS = Metrics.histogram("bme280_db_commit_seconds",
+            "Time taken to commit the store to disk");
+    static final LatencyHistogram LISTS = Metrics.histogram("bme280_db_list_seconds",
+            "Time taken to list a range of measurements");
+}
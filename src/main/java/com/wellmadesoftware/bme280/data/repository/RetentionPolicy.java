@@ -0,0 +1,70 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long raw measurements and each tier of rollups are kept. Everything is kept forever unless
+ * told otherwise.
+ */
+public class RetentionPolicy {
+
+    public static final long FOREVER = Long.MAX_VALUE;
+
+    private long rawMillis = FOREVER;
+    private final Map<RollupTier, Long> rollupMillis = new EnumMap<>(RollupTier.class);
+
+    /**
+     * Read bme280.retention.raw.days, bme280.retention.minute.days, bme280.retention.hour.days and
+     * bme280.retention.day.days. For example raw=30 with the rollups unset keeps a month of raw
+     * measurements and every rollup.
+     */
+    public static RetentionPolicy fromSystemProperties() {
+        RetentionPolicy policy = new RetentionPolicy();
+        policy.setRaw(days("bme280.retention.raw.days"));
+        for ( RollupTier tier : RollupTier.values() ) {
+            policy.setRollup(tier, days("bme280.retention." + tier.name().toLowerCase() + ".days"));
+        }
+        return policy;
+    }
+
+    private static long days(String property) {
+        Integer days = Integer.getInteger(property);
+        return days == null || days <= 0 ? FOREVER : TimeUnit.DAYS.toMillis(days);
+    }
+
+    public long getRaw() {
+        return rawMillis;
+    }
+
+    public RetentionPolicy setRaw(long millis) {
+        this.rawMillis = millis;
+        return this;
+    }
+
+    public long getRollup(RollupTier tier) {
+        Long millis = rollupMillis.get(tier);
+        return millis == null ? FOREVER : millis;
+    }
+
+    public RetentionPolicy setRollup(RollupTier tier, long millis) {
+        rollupMillis.put(tier, millis);
+        return this;
+    }
+
+    /**
+     * @return true if nothing ever expires
+     */
+    public boolean keepsEverything() {
+        if ( rawMillis != FOREVER ) {
+            return false;
+        }
+        for ( RollupTier tier : RollupTier.values() ) {
+            if ( getRollup(tier) != FOREVER ) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
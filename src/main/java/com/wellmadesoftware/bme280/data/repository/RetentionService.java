@@ -0,0 +1,152 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.exception.DBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes measurements and rollups that have outlived their {@link RetentionPolicy} on a background
+ * thread, then compacts the files.
+ *
+ * Expired ranges are deleted batchSize rows at a time, each batch in its own commit and with a short
+ * pause in between, so inserts are never held up for long. Compaction moves the remaining chunks to
+ * the front of the file, rewriting most of it, and locks the store while it runs. It therefore only
+ * happens once compactRows rows have been deleted since the last one and at least
+ * compactIntervalMillis after it, which with raw retention and the defaults is about once a week.
+ * Inserts made meanwhile wait for it unless bme280.db.batch.size puts a
+ * {@link WriteBehindMeasurementRepository} in front of the store. Nitrite only offers a full
+ * compaction, but MVStore's background writer already rewrites sparse chunks a little at a time,
+ * so the full pass mostly just gives the freed space back to the file system.
+ *
+ * The thread is never interrupted: MVStore reads and writes through a FileChannel, which closes
+ * itself when the thread using it is interrupted. {@link #stop(long)} asks a pass to finish its
+ * current batch and skip compaction instead.
+ */
+public class RetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionService.class);
+
+    private static final long BATCH_PAUSE_MILLIS = 50;
+
+    private final RollupMeasurementRepository repository;
+    private final RetentionPolicy policy;
+    private final int batchSize;
+    private final long compactRows;
+    private final long compactIntervalMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile boolean stopping;
+    // Only touched by passes, which never overlap
+    private long deletedSinceCompact = 0;
+    private long lastCompact = Long.MIN_VALUE;
+
+    public RetentionService(RollupMeasurementRepository repository, RetentionPolicy policy, int batchSize) {
+        this(repository, policy, batchSize, 10000, TimeUnit.DAYS.toMillis(1));
+    }
+
+    public RetentionService(RollupMeasurementRepository repository, RetentionPolicy policy, int batchSize,
+                            long compactRows, long compactIntervalMillis) {
+        this.repository = repository;
+        this.policy = policy;
+        this.batchSize = batchSize;
+        this.compactRows = compactRows;
+        this.compactIntervalMillis = compactIntervalMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "measurement-retention");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Expire data now and then every intervalMillis
+     */
+    public void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                expire(System.currentTimeMillis());
+            } catch (DBException | RuntimeException ex) {
+                logger.error("Failed to expire measurements : {}", ex.getMessage());
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop, waiting up to timeoutMillis for a pass in progress to finish its current batch or
+     * compaction
+     *
+     * @return true if the pass finished in time
+     */
+    public boolean stop(long timeoutMillis) {
+        stopping = true;
+        scheduler.shutdown();
+        try {
+            if ( scheduler.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS) ) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.warn("Retention pass still running after {} ms", timeoutMillis);
+        return false;
+    }
+
+    /**
+     * Delete everything that has expired as of now, and compact if enough has been deleted since
+     * the last compaction
+     *
+     * @return the number of measurements and rollups deleted
+     */
+    public long expire(long now) throws DBException {
+        long deleted = 0;
+        if ( policy.getRaw() != RetentionPolicy.FOREVER ) {
+            long cutoff = now - policy.getRaw();
+            deleted += deleteInBatches("raw", () -> repository.deleteRange(Long.MIN_VALUE, cutoff, batchSize));
+        }
+        for ( RollupTier tier : RollupTier.values() ) {
+            if ( policy.getRollup(tier) != RetentionPolicy.FOREVER ) {
+                long cutoff = now - policy.getRollup(tier);
+                deleted += deleteInBatches(tier.name().toLowerCase(), () -> repository.deleteRange(tier, Long.MIN_VALUE, cutoff, batchSize));
+            }
+        }
+        deletedSinceCompact += deleted;
+        if ( deletedSinceCompact >= compactRows && (lastCompact == Long.MIN_VALUE || now - lastCompact >= compactIntervalMillis)
+                && !stopping ) {
+            long started = System.currentTimeMillis();
+            repository.compact();
+            logger.info("Compacted the measurement stores after deleting {} rows in {} ms", deletedSinceCompact,
+                    System.currentTimeMillis() - started);
+            deletedSinceCompact = 0;
+            lastCompact = now;
+        }
+        return deleted;
+    }
+
+    private interface Batch {
+        int delete() throws DBException;
+    }
+
+    private long deleteInBatches(String name, Batch batch) throws DBException {
+        long deleted = 0;
+        int count;
+        do {
+            count = batch.delete();
+            deleted += count;
+            try {
+                Thread.sleep(BATCH_PAUSE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        } while ( count == batchSize && !stopping );
+        if ( deleted > 0 ) {
+            logger.info("Deleted {} expired {} rows", deleted, name);
+        }
+        return deleted;
+    }
+}
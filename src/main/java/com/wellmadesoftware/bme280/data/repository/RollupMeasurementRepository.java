@@ -0,0 +1,297 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.exception.DBException;
+import com.wellmadesoftware.bme280.data.model.AveragingMeasurement;
+import com.wellmadesoftware.bme280.data.model.Channel;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import org.dizitart.no2.Document;
+import org.dizitart.no2.IndexOptions;
+import org.dizitart.no2.IndexType;
+import org.dizitart.no2.Nitrite;
+import org.dizitart.no2.NitriteCollection;
+import org.dizitart.no2.UpdateOptions;
+import org.dizitart.no2.internals.NitriteMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.dizitart.no2.filters.Filters.eq;
+
+/**
+ * Keeps minute, hour and day rollups of the measurements written to another repository.
+ *
+ * Each tier is a collection of {@link AveragingMeasurement} rows in rollups.db, one per period.
+ * Measurements are added to the open row of every tier as they are created, and a row is written
+ * out when its period ends. Range queries that would return more than {@link RollupTier#MAX_ROWS}
+ * raw measurements are answered from the finest tier that fits instead, so a month reads about 720
+ * hourly rows. Those rows start at the beginning of their period, which may be before start.
+ *
+ * Open rows are only held in memory, so {@link #catchUp()} rebuilds anything lost in a crash from
+ * the raw measurements, and fills the tiers from existing history on first use.
+ */
+public class RollupMeasurementRepository implements MeasurementRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollupMeasurementRepository.class);
+
+    private static final long BACKFILL_MILLIS = RollupTier.DAY.getPeriodMillis() * Integer.getInteger("bme280.rollup.backfill.days", 366);
+    private static final long CATCH_UP_CHUNK_MILLIS = RollupTier.DAY.getPeriodMillis() * 7;
+    private static final String TIMESTAMP = "timestamp";
+    private static final Channel[] CHANNELS = { Channel.TEMPERATURE, Channel.HUMIDITY, Channel.PRESSURE,
+            Channel.CPU_TEMPERATURE, Channel.CPU_VOLTAGE };
+
+    private final MeasurementRepository delegate;
+    private final Nitrite db;
+    private final NitriteMapper mapper;
+    private final Map<RollupTier, NitriteCollection> collections = new EnumMap<>(RollupTier.class);
+    private final Map<RollupTier, AveragingMeasurement> open = new EnumMap<>(RollupTier.class);
+    private final List<RollupListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Told about every row written out as its period ends, as measurements come in. Called with the
+     * repository locked, so it must not block.
+     */
+    public interface RollupListener {
+        void rolledUp(RollupTier tier, AveragingMeasurement row);
+    }
+
+    public RollupMeasurementRepository(MeasurementRepository delegate) {
+        this(delegate, String.format("%s/rollups.db", MeasurementRepositories.DB_PATH));
+    }
+
+    public RollupMeasurementRepository(MeasurementRepository delegate, String filePath) {
+        this.delegate = delegate;
+
+        db = Nitrite.builder()
+                .compressed()
+                .filePath(filePath)
+                .openOrCreate();
+        mapper = db.getContext().getNitriteMapper();
+
+        for ( RollupTier tier : RollupTier.values() ) {
+            NitriteCollection collection = db.getCollection(tier.name().toLowerCase());
+            if ( !collection.hasIndex(TIMESTAMP) ) {
+                collection.createIndex(TIMESTAMP, IndexOptions.indexOptions(IndexType.Unique));
+            }
+            collections.put(tier, collection);
+        }
+    }
+
+    public void addListener(RollupListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Roll up the raw measurements that have no rollups yet: those since the start of the day of the
+     * last minute row, or the last bme280.rollup.backfill.days days (366) for an empty rollups.db.
+     */
+    public synchronized void catchUp() {
+        long now = System.currentTimeMillis();
+        Document last = collections.get(RollupTier.MINUTE).find(new LastKeyFilter(TIMESTAMP)).firstOrDefault();
+        long from = RollupTier.DAY.periodStart(last == null ? now - BACKFILL_MILLIS : (Long) last.get(TIMESTAMP));
+
+        // Every row from the start of that day on is rebuilt from scratch
+        open.clear();
+        long[] count = { 0 };
+        Measurement measurement = new Measurement();
+        for ( long start = from; start <= now; start += CATCH_UP_CHUNK_MILLIS ) {
+            delegate.stream(MeasurementQuery.range(start, start + CATCH_UP_CHUNK_MILLIS).channels(CHANNELS), (timestamp, values) -> {
+                measurement.setTimestamp(timestamp);
+                measurement.setTemperature(values[0]);
+                measurement.setHumidity(values[1]);
+                measurement.setPressure(values[2]);
+                measurement.setCpuTemp(values[3]);
+                measurement.setCpuCoreVoltage(values[4]);
+                ingest(measurement, false);
+                count[0] ++;
+                return true;
+            });
+            db.commit();
+        }
+        logger.info("Rolled up {} measurements since {}", count[0], from);
+    }
+
+    /**
+     * Add a measurement to the open row of every tier. Live measurements may reopen a row that was
+     * already written out and commit whenever a row is, while catch-up rebuilds rows and leaves
+     * committing to the caller.
+     */
+    private synchronized void ingest(Measurement measurement, boolean live) {
+        boolean rolled = false;
+        for ( RollupTier tier : RollupTier.values() ) {
+            long start = tier.periodStart(measurement.getTimestamp());
+            AveragingMeasurement row = open.get(tier);
+            if ( row == null || row.getTimestamp() != start ) {
+                if ( row != null ) {
+                    save(tier, row);
+                    rolled = true;
+                    if ( live ) {
+                        for ( RollupListener listener : listeners ) {
+                            listener.rolledUp(tier, row);
+                        }
+                    }
+                }
+                row = live ? load(tier, start) : null;
+                if ( row == null ) {
+                    row = new AveragingMeasurement(start);
+                }
+                open.put(tier, row);
+            }
+            row.add(measurement);
+        }
+        if ( rolled && live ) {
+            db.commit();
+        }
+    }
+
+    private void save(RollupTier tier, AveragingMeasurement row) {
+        collections.get(tier).update(eq(TIMESTAMP, row.getTimestamp()), mapper.asDocument(row),
+                UpdateOptions.updateOptions(true));
+    }
+
+    private AveragingMeasurement load(RollupTier tier, long start) {
+        Document document = collections.get(tier).find(eq(TIMESTAMP, start)).firstOrDefault();
+        return document == null ? null : mapper.asObject(document, AveragingMeasurement.class);
+    }
+
+    /**
+     * @return the rows of a tier whose periods overlap [start, end), ordered by timestamp
+     */
+    public synchronized List<AveragingMeasurement> list(RollupTier tier, long start, long end) {
+        List<AveragingMeasurement> results = new ArrayList<>();
+        AveragingMeasurement current = open.get(tier);
+        boolean merged = current == null || current.getTimestamp() < tier.periodStart(start) || current.getTimestamp() >= end;
+        for ( Document document : collections.get(tier).find(new TimestampRangeFilter(tier.periodStart(start), end)) ) {
+            AveragingMeasurement row = mapper.asObject(document, AveragingMeasurement.class);
+            if ( !merged && row.getTimestamp() == current.getTimestamp() ) {
+                // The open row is newer than what was last written out
+                row = current;
+                merged = true;
+            }
+            results.add(row);
+        }
+        if ( !merged ) {
+            results.add(current);
+            results.sort(Comparator.comparingLong(Measurement::getTimestamp));
+        }
+        return results;
+    }
+
+    @Override
+    public Measurement create(Measurement measurement) throws DBException {
+        Measurement created = delegate.create(measurement);
+        ingest(created, true);
+        return created;
+    }
+
+    @Override
+    public List<Measurement> createAll(Collection<Measurement> measurements) throws DBException {
+        List<Measurement> created = delegate.createAll(measurements);
+        for ( Measurement measurement : created ) {
+            ingest(measurement, true);
+        }
+        return created;
+    }
+
+    @Override
+    public Measurement read(UUID id) throws DBException {
+        return delegate.read(id);
+    }
+
+    @Override
+    public Measurement update(Measurement measurement) throws DBException {
+        return delegate.update(measurement);
+    }
+
+    @Override
+    public void delete(Measurement measurement) throws DBException {
+        delegate.delete(measurement);
+    }
+
+    /**
+     * Raw measurements for short ranges, or the rows of {@link RollupTier#forRange} for longer ones
+     */
+    @Override
+    public List<Measurement> list(long start, long end) {
+        RollupTier tier = RollupTier.forRange(start, end);
+        if ( tier == RollupTier.MINUTE ) {
+            return delegate.list(start, end);
+        }
+        return new ArrayList<>(list(tier, start, end));
+    }
+
+    /**
+     * Raw measurements for short ranges, or the rows of {@link RollupTier#forRange} for longer ones,
+     * which are few enough to read at once
+     */
+    @Override
+    public void stream(MeasurementQuery query, MeasurementVisitor visitor) {
+        RollupTier tier = RollupTier.forRange(query.getStart(), query.getEnd());
+        if ( tier == RollupTier.MINUTE ) {
+            delegate.stream(query, visitor);
+            return;
+        }
+        MeasurementQuery.Projection projection = query.project(visitor);
+        for ( AveragingMeasurement row : list(tier, query.getStart(), query.getEnd()) ) {
+            if ( !projection.offer(row) ) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Delete the raw measurements in a range. Rollups that already include them are kept.
+     */
+    @Override
+    public int deleteRange(long start, long end, int limit) throws DBException {
+        return delegate.deleteRange(start, end, limit);
+    }
+
+    /**
+     * Delete the oldest rows of a tier that start at or after start and before end, at most limit of them
+     *
+     * @return the number deleted, less than limit once the range is empty
+     */
+    public synchronized int deleteRange(RollupTier tier, long start, long end, int limit) {
+        AveragingMeasurement current = open.get(tier);
+        if ( current != null && current.getTimestamp() < end ) {
+            // Never drop the row still being filled
+            end = current.getTimestamp();
+        }
+        int deleted = collections.get(tier).remove(new TimestampRangeFilter(TIMESTAMP, start, end, limit)).getAffectedCount();
+        db.commit();
+        return deleted;
+    }
+
+    /**
+     * Compact both the raw store and rollups.db
+     */
+    @Override
+    public void compact() {
+        delegate.compact();
+        synchronized (this) {
+            db.compact();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if ( !db.isClosed() ) {
+                for ( Map.Entry<RollupTier, AveragingMeasurement> entry : open.entrySet() ) {
+                    save(entry.getKey(), entry.getValue());
+                }
+                db.commit();
+                db.close();
+            }
+        }
+        delegate.close();
+    }
+}
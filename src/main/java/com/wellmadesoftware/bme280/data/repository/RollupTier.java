@@ -0,0 +1,47 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import java.util.TimeZone;
+
+/**
+ * The periods measurements are rolled up into. Periods are aligned to local time, so day rows run
+ * from midnight to midnight.
+ */
+public enum RollupTier {
+    MINUTE(60000L),
+    HOUR(60000L * 60),
+    DAY(60000L * 60 * 24);
+
+    /**
+     * The most rows a range query should return before a coarser tier is used
+     */
+    public static final int MAX_ROWS = 1500;
+
+    private final long periodMillis;
+
+    RollupTier(long periodMillis) {
+        this.periodMillis = periodMillis;
+    }
+
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    /**
+     * @return the start of the period holding the given time
+     */
+    public long periodStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp + TimeZone.getDefault().getOffset(timestamp), periodMillis);
+    }
+
+    /**
+     * @return the finest tier that covers the range in no more than {@link #MAX_ROWS} rows
+     */
+    public static RollupTier forRange(long start, long end) {
+        for ( RollupTier tier : values() ) {
+            if ( (end - start) / tier.periodMillis <= MAX_ROWS ) {
+                return tier;
+            }
+        }
+        return DAY;
+    }
+}
@@ -0,0 +1,115 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import org.dizitart.no2.Document;
+import org.dizitart.no2.Index;
+import org.dizitart.no2.IndexType;
+import org.dizitart.no2.NitriteId;
+import org.dizitart.no2.internals.NitriteMapper;
+import org.dizitart.no2.internals.NitriteService;
+import org.dizitart.no2.objects.ObjectFilter;
+import org.dizitart.no2.store.NitriteMap;
+import org.dizitart.no2.util.IndexUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matches documents whose timestamp lies in [start, end), in ascending timestamp order. The
+ * timestamp is the given long field, which should carry an index. A limit keeps only the oldest
+ * documents, for deleting a range in batches.
+ *
+ * Nitrite evaluates and(gte, lt) as two independent index lookups, the second of which covers all
+ * of history before end, and even a single gte lookup collects every id up to the newest document.
+ * This filter opens the field's index map and walks its keys from start, stopping at end, so only
+ * the index entries inside the window are read.
+ */
+class TimestampRangeFilter implements ObjectFilter {
+
+    private final String field;
+    private final long start;
+    private final long end;
+    private final int limit;
+    private NitriteService nitriteService;
+
+    TimestampRangeFilter(long start, long end) {
+        this("timestamp", start, end);
+    }
+
+    TimestampRangeFilter(String field, long start, long end) {
+        this(field, start, end, Integer.MAX_VALUE);
+    }
+
+    TimestampRangeFilter(String field, long start, long end, int limit) {
+        this.field = field;
+        this.start = start;
+        this.end = end;
+        this.limit = limit;
+    }
+
+    @Override
+    public Set<NitriteId> apply(NitriteMap<NitriteId, Document> documentMap) {
+        Set<NitriteId> result = new LinkedHashSet<>();
+        NitriteMap<Comparable<?>, Collection<NitriteId>> index = indexMap(documentMap);
+        if ( index != null ) {
+            // Index keys are ordered, so ids come out in ascending timestamp order
+            Comparable<?> key = index.ceilingKey(start);
+            while ( key != null && ((Number) key).longValue() < end && result.size() < limit ) {
+                for ( NitriteId id : index.get(key) ) {
+                    if ( result.size() < limit ) {
+                        result.add(id);
+                    }
+                }
+                key = index.higherKey(key);
+            }
+        } else {
+            List<Document> matches = new ArrayList<>();
+            for ( Document document : documentMap.values() ) {
+                long timestamp = timestamp(document);
+                if ( timestamp >= start && timestamp < end ) {
+                    matches.add(document);
+                }
+            }
+            matches.sort((a, b) -> Long.compare(timestamp(a), timestamp(b)));
+            for ( Document document : matches.subList(0, Math.min(limit, matches.size())) ) {
+                result.add(document.getId());
+            }
+        }
+        return result;
+    }
+
+    private NitriteMap<Comparable<?>, Collection<NitriteId>> indexMap(NitriteMap<NitriteId, Document> documentMap) {
+        if ( !nitriteService.hasIndex(field) || nitriteService.isIndexing(field) ) {
+            return null;
+        }
+        for ( IndexType type : new IndexType[] {IndexType.Unique, IndexType.NonUnique} ) {
+            String name = IndexUtils.internalName(new Index(type, field, documentMap.getName()));
+            if ( documentMap.getStore().hasMap(name) ) {
+                return documentMap.getStore().openMap(name);
+            }
+        }
+        return null;
+    }
+
+    private long timestamp(Document document) {
+        Object value = document.get(field);
+        return value instanceof Number ? ((Number) value).longValue() : Long.MIN_VALUE;
+    }
+
+    @Override
+    public void setNitriteService(NitriteService nitriteService) {
+        this.nitriteService = nitriteService;
+    }
+
+    @Override
+    public void setNitriteMapper(NitriteMapper nitriteMapper) {
+
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(%s >= %d && %s < %d)", field, start, field, end);
+    }
+}
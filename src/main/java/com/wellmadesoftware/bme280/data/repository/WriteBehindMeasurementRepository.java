@@ -0,0 +1,250 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.exception.DBException;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers inserts in memory and hands them to another repository in batches, so that one commit
+ * covers many measurements.
+ *
+ * A batch is written once batchSize measurements are pending, once the oldest pending measurement
+ * is flushInterval milliseconds old, or on close. The flush interval is therefore the window of
+ * measurements that can be lost on a power cut. Reads see buffered measurements as well.
+ *
+ * A batch that fails to write is put back to be retried with the next one. If the store stays down
+ * the buffer is kept to maxPending measurements by dropping the oldest, which are logged.
+ */
+public class WriteBehindMeasurementRepository implements MeasurementRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindMeasurementRepository.class);
+
+    private final MeasurementRepository delegate;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final int maxPending;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object flushLock = new Object();
+    private List<Measurement> pending = new ArrayList<>();
+    // The batch being written by flush, until the store has it or it is put back in pending
+    private List<Measurement> inFlight = new ArrayList<>();
+    private long oldestPending = 0;
+
+    public WriteBehindMeasurementRepository(MeasurementRepository delegate, int batchSize, long flushIntervalMillis) {
+        this(delegate, batchSize, flushIntervalMillis, batchSize * 16);
+    }
+
+    public WriteBehindMeasurementRepository(MeasurementRepository delegate, int batchSize, long flushIntervalMillis, int maxPending) {
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxPending = Math.max(batchSize, maxPending);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "measurement-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, flushIntervalMillis / 4);
+        scheduler.scheduleWithFixedDelay(this::flushIfDue, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Measurement create(Measurement measurement) throws DBException {
+        boolean full;
+        synchronized (this) {
+            if ( pending.isEmpty() ) {
+                oldestPending = System.currentTimeMillis();
+            }
+            pending.add(measurement);
+            full = pending.size() >= batchSize;
+        }
+        if ( full ) {
+            flush();
+        }
+        return measurement;
+    }
+
+    @Override
+    public List<Measurement> createAll(Collection<Measurement> measurements) throws DBException {
+        flush();
+        return delegate.createAll(measurements);
+    }
+
+    /**
+     * Write all pending measurements to the underlying repository in one batch
+     */
+    public void flush() throws DBException {
+        synchronized (flushLock) {
+            List<Measurement> batch;
+            synchronized (this) {
+                if ( pending.isEmpty() ) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>(batchSize);
+                inFlight = batch;
+            }
+            try {
+                delegate.createAll(batch);
+            } catch (DBException | RuntimeException ex) {
+                // Put the batch back in front of anything buffered since so nothing is lost or reordered
+                synchronized (this) {
+                    batch.addAll(pending);
+                    pending = batch;
+                    inFlight = new ArrayList<>();
+                    dropOldest();
+                }
+                throw ex;
+            }
+            synchronized (this) {
+                inFlight = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * Keep the buffer to maxPending measurements while the store is failing, losing the oldest first
+     */
+    private void dropOldest() {
+        int excess = pending.size() - maxPending;
+        if ( excess <= 0 ) {
+            return;
+        }
+        List<Measurement> dropped = pending.subList(0, excess);
+        logger.error("Dropped {} buffered measurements taken from {} to {}", excess,
+                dropped.get(0).getTimestamp(), dropped.get(excess - 1).getTimestamp());
+        dropped.clear();
+    }
+
+    private void flushIfDue() {
+        synchronized (this) {
+            if ( pending.isEmpty() || System.currentTimeMillis() - oldestPending < flushIntervalMillis ) {
+                return;
+            }
+        }
+        try {
+            flush();
+        } catch (DBException | RuntimeException ex) {
+            logger.error("Failed to write buffered measurements : {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public Measurement read(UUID id) throws DBException {
+        synchronized (this) {
+            for ( List<Measurement> measurements : Arrays.asList(inFlight, pending) ) {
+                for ( Measurement measurement : measurements ) {
+                    if ( measurement.getId().equals(id) ) {
+                        return measurement;
+                    }
+                }
+            }
+        }
+        return delegate.read(id);
+    }
+
+    @Override
+    public Measurement update(Measurement measurement) throws DBException {
+        flush();
+        return delegate.update(measurement);
+    }
+
+    @Override
+    public void delete(Measurement measurement) throws DBException {
+        flush();
+        delegate.delete(measurement);
+    }
+
+    @Override
+    public List<Measurement> list(long start, long end) {
+        // Holding the flush lock keeps a batch from moving out of the buffer while the store is queried
+        synchronized (flushLock) {
+            List<Measurement> results = new ArrayList<>(delegate.list(start, end));
+            boolean buffered = false;
+            synchronized (this) {
+                for ( Measurement measurement : pending ) {
+                    if ( measurement.getTimestamp() >= start && measurement.getTimestamp() < end ) {
+                        results.add(measurement);
+                        buffered = true;
+                    }
+                }
+            }
+            if ( buffered ) {
+                results.sort(Comparator.comparingLong(Measurement::getTimestamp));
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Streams the stored measurements and then the buffered ones, which are newer.
+     *
+     * The buffer is copied before the store is read, and no lock is held while the store streams, so
+     * a slow visitor never holds up a flush. A batch flushed in the meantime may be seen by the store
+     * as well as in the copy, so buffered measurements no newer than the last one the store gave are
+     * left out.
+     */
+    @Override
+    public void stream(MeasurementQuery query, MeasurementVisitor visitor) {
+        MeasurementQuery.Projection projection = query.project(visitor);
+        List<Measurement> buffered = new ArrayList<>();
+        synchronized (this) {
+            for ( List<Measurement> measurements : Arrays.asList(inFlight, pending) ) {
+                for ( Measurement measurement : measurements ) {
+                    if ( measurement.getTimestamp() >= query.getStart() && measurement.getTimestamp() < query.getEnd() ) {
+                        buffered.add(measurement);
+                    }
+                }
+            }
+        }
+        long[] stored = { Long.MIN_VALUE };
+        // The store applies the step and limit itself; the projection picks up where it left off
+        delegate.stream(query, (timestamp, values) -> {
+            stored[0] = timestamp;
+            return projection.resume(timestamp, values);
+        });
+        if ( projection.isDone() ) {
+            return;
+        }
+        buffered.sort(Comparator.comparingLong(Measurement::getTimestamp));
+        for ( Measurement measurement : buffered ) {
+            if ( measurement.getTimestamp() > stored[0] && !projection.offer(measurement) ) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int deleteRange(long start, long end, int limit) throws DBException {
+        flush();
+        return delegate.deleteRange(start, end, limit);
+    }
+
+    @Override
+    public void compact() {
+        delegate.compact();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            flush();
+        } catch (DBException | RuntimeException ex) {
+            logger.error("Failed to write buffered measurements on close : {}", ex.getMessage());
+        }
+        delegate.close();
+    }
+}
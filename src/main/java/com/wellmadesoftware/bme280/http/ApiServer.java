@@ -0,0 +1,473 @@
+package com.wellmadesoftware.bme280.http;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.wellmadesoftware.bme280.chart.ChartGenerator;
+import com.wellmadesoftware.bme280.chart.EncodedChart;
+import com.wellmadesoftware.bme280.data.model.AveragingMeasurement;
+import com.wellmadesoftware.bme280.data.model.Channel;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import com.wellmadesoftware.bme280.data.repository.MeasurementQuery;
+import com.wellmadesoftware.bme280.data.repository.MeasurementRepository;
+import com.wellmadesoftware.bme280.data.repository.RollupTier;
+import com.wellmadesoftware.bme280.metrics.Metrics;
+import com.wellmadesoftware.bme280.pipeline.BackpressurePolicy;
+import com.wellmadesoftware.bme280.stats.SlidingWindowStatistics;
+import com.wellmadesoftware.bme280.trace.I2CTrace;
+import com.wellmadesoftware.bme280.trace.I2CTraceDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Serves measurements, statistics and charts over HTTP with the JDK's built in server.
+ *
+ * <pre>
+ * GET /api/latest                 the last measurement taken, as JSON
+ * GET /api/stats                  the hi/low/avg windows of the charts, as JSON
+ * GET /api/range?start=&amp;end=&amp;channels=&amp;step=&amp;limit=&amp;format=json|csv
+ *                                 measurements streamed from the repository; times are epoch
+ *                                 milliseconds, end defaults to now and start to an hour before end
+ * GET /charts/&lt;name&gt;.&lt;ext&gt;          hourly, last24hours or lastweek, encoded on demand
+ * GET /api/events                 a server-sent event stream of each measurement as it is taken and
+ *                                 each rollup row as its period ends, see {@link EventBroadcaster}
+ * GET /metrics                    the histograms and counters of {@link Metrics}, in the Prometheus text format
+ * GET /debug/i2c?format=binary|text
+ *                                 the {@link I2CTrace}, as a dump for {@link I2CTraceDecoder} or decoded;
+ *                                 it only records while bme280.debug is on
+ * </pre>
+ *
+ * Every response carries an ETag and a matching If-None-Match gets a 304. Requests are handled by a
+ * fixed pool of threads with a bounded queue; when both are full the server's own thread handles
+ * the request, which stops it accepting more until it is done.
+ */
+public class ApiServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiServer.class);
+
+    private static final long HOUR = 3600000;
+
+    private final MeasurementRepository repository;
+    private final SlidingWindowStatistics statistics;
+    private final ChartGenerator charts;
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+    // Chart versions start over with the process, so ETags carry the start time as well
+    private final String instance = Long.toHexString(System.currentTimeMillis());
+
+    private final EventBroadcaster events;
+
+    private volatile Latest latest;
+
+    public ApiServer(int port, int threads, int queueCapacity, MeasurementRepository repository,
+                     SlidingWindowStatistics statistics, ChartGenerator charts) throws IOException {
+        this(port, threads, queueCapacity, new EventBroadcaster(2, 16, 256, BackpressurePolicy.COALESCE, 10000),
+                repository, statistics, charts);
+    }
+
+    private ApiServer(int port, int threads, int queueCapacity, EventBroadcaster events, MeasurementRepository repository,
+                      SlidingWindowStatistics statistics, ChartGenerator charts) throws IOException {
+        this.repository = repository;
+        this.statistics = statistics;
+        this.charts = charts;
+        this.events = events;
+
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "http-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/api/latest", exchange -> handle(exchange, this::latest));
+        server.createContext("/api/stats", exchange -> handle(exchange, this::stats));
+        server.createContext("/api/range", exchange -> handle(exchange, this::range));
+        server.createContext("/charts/", exchange -> handle(exchange, this::chart));
+        server.createContext("/metrics", exchange -> handle(exchange, ApiServer::metrics));
+        server.createContext("/debug/i2c", exchange -> handle(exchange, ApiServer::trace));
+        // Left open for the broadcaster's writers, so not closed by handle
+        server.createContext("/api/events", this::subscribe);
+    }
+
+    /**
+     * A server on bme280.http.port with bme280.http.threads threads (2) and a queue of
+     * bme280.http.queue requests (16), or null if no port is set. Event streams are written by
+     * bme280.http.events.threads threads (2), to at most bme280.http.events.max subscribers (256)
+     * with bme280.http.events.buffer events each (16), and bme280.http.events.policy (COALESCE or
+     * DROP) says what becomes of a subscriber that falls behind. A subscriber that stops reading
+     * altogether is dropped after bme280.http.events.write.timeout.ms (10000).
+     */
+    public static ApiServer fromSystemProperties(MeasurementRepository repository, SlidingWindowStatistics statistics,
+                                                 ChartGenerator charts) throws IOException {
+        Integer port = Integer.getInteger("bme280.http.port");
+        if ( port == null ) {
+            return null;
+        }
+        EventBroadcaster events = new EventBroadcaster(Integer.getInteger("bme280.http.events.threads", 2),
+                Integer.getInteger("bme280.http.events.buffer", 16), Integer.getInteger("bme280.http.events.max", 256),
+                BackpressurePolicy.valueOf(System.getProperty("bme280.http.events.policy", "COALESCE").toUpperCase()),
+                Long.getLong("bme280.http.events.write.timeout.ms", 10000));
+        return new ApiServer(port, Integer.getInteger("bme280.http.threads", 2), Integer.getInteger("bme280.http.queue", 16),
+                events, repository, statistics, charts);
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Serving on port {}", server.getAddress().getPort());
+    }
+
+    public void stop() {
+        events.close();
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Make a measurement the one served as latest and push it to the event streams
+     */
+    public void publish(Measurement measurement) {
+        byte[] json = Json.measurement(measurement);
+        latest = new Latest(measurement.getTimestamp(), json);
+        events.broadcast("measurement", json);
+    }
+
+    /**
+     * Push a rollup row to the event streams
+     */
+    public void publish(RollupTier tier, AveragingMeasurement row) {
+        events.broadcast("rollup", Json.rollup(tier, row));
+    }
+
+    public int getSubscriberCount() {
+        return events.getSubscriberCount();
+    }
+
+    private void subscribe(HttpExchange exchange) {
+        try {
+            if ( !"GET".equals(exchange.getRequestMethod()) ) {
+                sendError(exchange, 405, "Only GET is supported");
+                exchange.close();
+            } else if ( !events.subscribe(exchange) ) {
+                sendError(exchange, 503, "Too many subscribers");
+                exchange.close();
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Failed to subscribe {} : {}", exchange.getRemoteAddress(), ex.getMessage());
+            exchange.close();
+        }
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * The last measurement's time and its JSON, swapped in together so the two always match
+     */
+    private static class Latest {
+        final long timestamp;
+        final byte[] json;
+
+        Latest(long timestamp, byte[] json) {
+            this.timestamp = timestamp;
+            this.json = json;
+        }
+    }
+
+    private static class BadRequestException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        try {
+            if ( !"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod()) ) {
+                sendError(exchange, 405, "Only GET is supported");
+            } else {
+                handler.handle(exchange);
+            }
+        } catch (BadRequestException | NumberFormatException ex) {
+            sendError(exchange, 400, ex.getMessage());
+        } catch (IOException | RuntimeException ex) {
+            // Most often the client went away
+            logger.warn("Failed to serve {} : {}", exchange.getRequestURI(), ex.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void latest(HttpExchange exchange) throws IOException {
+        Latest newest = latest;
+        if ( newest == null ) {
+            sendError(exchange, 404, "No measurement taken yet");
+            return;
+        }
+        // Measurements are never rewritten, so the time identifies the content
+        String etag = "\"" + Long.toHexString(newest.timestamp) + "\"";
+        if ( notModified(exchange, etag) ) {
+            return;
+        }
+        send(exchange, "application/json", etag, newest.json);
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(512);
+        ChartGenerator.writeStatistics(statistics.getAll(Channel.TEMPERATURE, System.currentTimeMillis()), body);
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        String etag = "\"" + Long.toHexString(crc.getValue()) + "\"";
+        if ( notModified(exchange, etag) ) {
+            return;
+        }
+        send(exchange, "application/json", etag, bytes);
+    }
+
+    private static void metrics(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(8 * 1024);
+        Writer out = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+        Metrics.writePrometheus(out);
+        out.flush();
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        String etag = "\"" + Long.toHexString(crc.getValue()) + "\"";
+        if ( notModified(exchange, etag) ) {
+            return;
+        }
+        send(exchange, "text/plain; version=0.0.4; charset=utf-8", etag, bytes);
+    }
+
+    private static void trace(HttpExchange exchange) throws IOException {
+        String format = parameters(exchange).getOrDefault("format", "binary");
+        I2CTrace trace = I2CTrace.get();
+        // The trace only changes when something is recorded
+        String etag = "\"" + format + "-" + Long.toHexString(trace.getRecorded()) + "\"";
+        if ( notModified(exchange, etag) ) {
+            return;
+        }
+        if ( format.equals("text") ) {
+            send(exchange, "text/plain; charset=utf-8", etag, trace.decode(trace.getCapacity()).getBytes(StandardCharsets.UTF_8));
+        } else if ( format.equals("binary") ) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+            trace.dump(body);
+            send(exchange, "application/octet-stream", etag, body.toByteArray());
+        } else {
+            sendError(exchange, 400, "Unknown format " + format);
+        }
+    }
+
+    private void range(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parameters(exchange);
+        long end = parameters.containsKey("end") ? Long.parseLong(parameters.get("end")) : System.currentTimeMillis();
+        long start = parameters.containsKey("start") ? Long.parseLong(parameters.get("start")) : end - HOUR;
+        MeasurementQuery query = MeasurementQuery.range(start, end);
+        if ( parameters.containsKey("channels") ) {
+            String[] names = parameters.get("channels").split(",");
+            Channel[] channels = new Channel[names.length];
+            for ( int i = 0; i < names.length; i++ ) {
+                try {
+                    channels[i] = Channel.valueOf(names[i].trim().toUpperCase());
+                } catch (IllegalArgumentException ex) {
+                    throw new BadRequestException("Unknown channel " + names[i]);
+                }
+            }
+            query.channels(channels);
+        }
+        if ( parameters.containsKey("step") ) {
+            query.step(Long.parseLong(parameters.get("step")));
+        }
+        if ( parameters.containsKey("limit") ) {
+            query.limit(Long.parseLong(parameters.get("limit")));
+        }
+        String format = parameters.getOrDefault("format", "json");
+        if ( !format.equals("json") && !format.equals("csv") ) {
+            throw new BadRequestException("Unknown format " + format);
+        }
+
+        // The result only changes when a measurement is added, so the newest one stands in for its content
+        Latest newest = latest;
+        String etag = String.format("W/\"%s-%d-%d-%s-%d-%d-%s-%x\"", instance, start, end, parameters.get("channels"),
+                query.getStep(), query.getLimit(), format, newest == null ? 0 : newest.timestamp);
+        if ( notModified(exchange, etag) ) {
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", format.equals("csv") ? "text/csv" : "application/json");
+        exchange.getResponseHeaders().set("ETag", etag);
+        if ( "HEAD".equals(exchange.getRequestMethod()) ) {
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        // Streamed with chunked encoding, as the length is not known up front
+        exchange.sendResponseHeaders(200, 0);
+        Channel[] channels = query.getChannels();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 16 * 1024)) {
+            if ( format.equals("csv") ) {
+                writeCsv(out, query, channels);
+            } else {
+                writeJson(out, query, channels);
+            }
+        }
+    }
+
+    private void writeCsv(Writer out, MeasurementQuery query, Channel[] channels) throws IOException {
+        out.write("timestamp");
+        for ( Channel channel : channels ) {
+            out.write(',');
+            out.write(channel.name().toLowerCase());
+        }
+        out.write('\n');
+        IOException[] failure = { null };
+        repository.stream(query, (timestamp, values) -> {
+            try {
+                out.write(Long.toString(timestamp));
+                for ( float value : values ) {
+                    out.write(',');
+                    if ( !Float.isNaN(value) ) {
+                        out.write(Float.toString(value));
+                    }
+                }
+                out.write('\n');
+                return true;
+            } catch (IOException ex) {
+                failure[0] = ex;
+                return false;
+            }
+        });
+        if ( failure[0] != null ) {
+            throw failure[0];
+        }
+    }
+
+    private void writeJson(Writer out, MeasurementQuery query, Channel[] channels) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        String[] names = new String[channels.length];
+        for ( int c = 0; c < channels.length; c++ ) {
+            names[c] = channels[c].name().toLowerCase();
+        }
+        writer.beginArray();
+        IOException[] failure = { null };
+        repository.stream(query, (timestamp, values) -> {
+            try {
+                writer.beginObject();
+                writer.name("timestamp").value(timestamp);
+                for ( int c = 0; c < values.length; c++ ) {
+                    Json.value(writer.name(names[c]), values[c]);
+                }
+                writer.endObject();
+                return true;
+            } catch (IOException ex) {
+                failure[0] = ex;
+                return false;
+            }
+        });
+        if ( failure[0] != null ) {
+            throw failure[0];
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    private void chart(HttpExchange exchange) throws IOException {
+        String file = exchange.getRequestURI().getPath().substring("/charts/".length());
+        int dot = file.lastIndexOf('.');
+        String name = dot < 0 ? file : file.substring(0, dot);
+        EncodedChart chart = charts.encodeChart(name, statistics);
+        if ( chart == null || (dot >= 0 && !file.substring(dot + 1).equals(chart.getFormat().getExtension())) ) {
+            sendError(exchange, 404, "No chart " + file);
+            return;
+        }
+        String etag = "\"" + instance + "-" + name + "-" + chart.getVersion() + "\"";
+        if ( notModified(exchange, etag) ) {
+            return;
+        }
+        send(exchange, contentType(chart), etag, chart.getBytes());
+    }
+
+    private static String contentType(EncodedChart chart) {
+        switch ( chart.getFormat() ) {
+            case PNG:
+                return "image/png";
+            case SVG:
+                return "image/svg+xml";
+            default:
+                return "image/jpeg";
+        }
+    }
+
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if ( query != null ) {
+            for ( String pair : query.split("&") ) {
+                int equals = pair.indexOf('=');
+                if ( equals > 0 ) {
+                    parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static boolean notModified(HttpExchange exchange, String etag) throws IOException {
+        String match = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if ( match == null || !(match.equals("*") || match.contains(etag)) ) {
+            return false;
+        }
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.sendResponseHeaders(304, -1);
+        return true;
+    }
+
+    private static void send(HttpExchange exchange, String contentType, String etag, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("ETag", etag);
+        if ( "HEAD".equals(exchange.getRequestMethod()) ) {
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (IOException ex) {
+            logger.warn("Failed to send error {} : {}", status, ex.getMessage());
+        }
+    }
+}
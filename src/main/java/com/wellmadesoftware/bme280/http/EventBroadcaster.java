@@ -0,0 +1,280 @@
+package com.wellmadesoftware.bme280.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.wellmadesoftware.bme280.pipeline.BackpressurePolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes events to any number of server-sent event streams.
+ *
+ * An event is encoded once and its bytes are queued for every subscriber, each in a bounded queue of
+ * its own, so broadcasting never waits on a client. A small pool of writer threads drains the queues
+ * of subscribers that have something pending. A subscriber whose queue is full is dropped under
+ * {@link BackpressurePolicy#DROP}, or has its oldest event discarded under
+ * {@link BackpressurePolicy#COALESCE}. A comment is sent every so often so dead connections are
+ * noticed and proxies keep the stream open.
+ *
+ * Only the writer threads touch a subscriber's connection, closing it included, and only one at a
+ * time. The server's sockets have no write timeout, so a timer thread interrupts any write that has
+ * taken longer than writeTimeoutMillis; the connection is an interruptible channel, which the
+ * interrupt closes, so a client that stops reading holds a writer for that long at most.
+ */
+class EventBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventBroadcaster.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final byte[] KEEP_ALIVE = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final BackpressurePolicy policy;
+    private final long writeTimeoutNanos;
+    private final ExecutorService writers;
+    private final ScheduledExecutorService timer;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Set<Subscriber> writing = ConcurrentHashMap.newKeySet();
+    private long sequence = 0;
+
+    EventBroadcaster(int writerThreads, int bufferSize, int maxSubscribers, BackpressurePolicy policy, long writeTimeoutMillis) {
+        if ( policy == BackpressurePolicy.BLOCK ) {
+            throw new IllegalArgumentException("Broadcasting must not block on a subscriber");
+        }
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.policy = policy;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        AtomicInteger count = new AtomicInteger();
+        writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "http-events-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-events-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(() -> send(KEEP_ALIVE), KEEP_ALIVE_SECONDS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        long check = Math.max(50, writeTimeoutMillis / 4);
+        timer.scheduleWithFixedDelay(this::checkWrites, check, check, TimeUnit.MILLISECONDS);
+    }
+
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Start streaming to a client
+     *
+     * @return false if there are too many subscribers already
+     */
+    boolean subscribe(HttpExchange exchange) throws IOException {
+        if ( subscribers.size() >= maxSubscribers ) {
+            return false;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        Subscriber subscriber = new Subscriber(exchange);
+        subscribers.add(subscriber);
+        // Headers and anything buffered by the server go out now, rather than with the first event
+        subscriber.offer(KEEP_ALIVE);
+        return true;
+    }
+
+    /**
+     * Queue an event of the given type for every subscriber
+     */
+    void broadcast(String type, byte[] data) {
+        if ( subscribers.isEmpty() ) {
+            return;
+        }
+        StringBuilder event = new StringBuilder(data.length + 48);
+        synchronized (this) {
+            event.append("id: ").append(++ sequence).append('\n');
+        }
+        event.append("event: ").append(type).append('\n');
+        event.append("data: ").append(new String(data, StandardCharsets.UTF_8)).append("\n\n");
+        send(event.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void send(byte[] event) {
+        for ( Subscriber subscriber : subscribers ) {
+            subscriber.offer(event);
+        }
+    }
+
+    private void checkWrites() {
+        long now = System.nanoTime();
+        for ( Subscriber subscriber : writing ) {
+            subscriber.checkWrite(now);
+        }
+    }
+
+    /**
+     * Close every stream, giving the writers a second to do so before they are interrupted
+     */
+    void close() {
+        timer.shutdownNow();
+        for ( Subscriber subscriber : subscribers ) {
+            subscriber.close();
+        }
+        writers.shutdown();
+        try {
+            if ( !writers.awaitTermination(1, TimeUnit.SECONDS) ) {
+                writers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class Subscriber implements Runnable {
+        private final HttpExchange exchange;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed = false;
+        private volatile boolean finished = false;
+        // The thread inside a write to this subscriber and when it began, guarded by this
+        private Thread writer;
+        private long writingSince;
+
+        Subscriber(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        void offer(byte[] event) {
+            if ( closed ) {
+                return;
+            }
+            while ( !queue.offer(event) ) {
+                if ( policy == BackpressurePolicy.DROP ) {
+                    logger.info("Dropping slow event subscriber {}", exchange.getRemoteAddress());
+                    close();
+                    return;
+                }
+                queue.poll();
+            }
+            schedule();
+        }
+
+        /**
+         * Stop queueing events and leave closing the connection to a writer thread, so the caller
+         * never waits on the client
+         */
+        void close() {
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+            schedule();
+        }
+
+        private void schedule() {
+            if ( scheduled.compareAndSet(false, true) ) {
+                try {
+                    writers.execute(this);
+                } catch (RejectedExecutionException ex) {
+                    // Shutting down
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        /**
+         * Write out everything queued, or close the connection once closed, then give the thread back
+         */
+        @Override
+        public void run() {
+            try {
+                if ( !closed ) {
+                    write();
+                }
+                if ( closed && !finished ) {
+                    finished = true;
+                    // Closing writes the final chunk, so it is timed like any other write
+                    begin();
+                    try {
+                        exchange.close();
+                    } finally {
+                        end();
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // Catch an event or a close that came after the checks above but before the flag was cleared
+            if ( closed ? !finished : !queue.isEmpty() ) {
+                schedule();
+            }
+        }
+
+        private void write() {
+            OutputStream out = exchange.getResponseBody();
+            begin();
+            try {
+                byte[] event;
+                while ( !closed && (event = queue.poll()) != null ) {
+                    out.write(event);
+                }
+                out.flush();
+            } catch (IOException ex) {
+                // The client went away, or stopped reading for longer than the write timeout
+                closed = true;
+                subscribers.remove(this);
+                queue.clear();
+            } finally {
+                end();
+            }
+        }
+
+        private void begin() {
+            synchronized (this) {
+                writer = Thread.currentThread();
+                writingSince = System.nanoTime();
+            }
+            writing.add(this);
+        }
+
+        private void end() {
+            writing.remove(this);
+            synchronized (this) {
+                writer = null;
+            }
+            // Interrupted just as the write finished; the pool thread must not keep the flag
+            if ( Thread.interrupted() ) {
+                closed = true;
+                subscribers.remove(this);
+                queue.clear();
+            }
+        }
+
+        void checkWrite(long now) {
+            synchronized (this) {
+                if ( writer != null && now - writingSince > writeTimeoutNanos ) {
+                    logger.info("Dropping event subscriber {} that stopped reading", exchange.getRemoteAddress());
+                    closed = true;
+                    writer.interrupt();
+                    writer = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.wellmadesoftware.bme280.http;
+
+import com.google.gson.stream.JsonWriter;
+import com.wellmadesoftware.bme280.data.model.AveragingMeasurement;
+import com.wellmadesoftware.bme280.data.model.Channel;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import com.wellmadesoftware.bme280.data.repository.RollupTier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The JSON bodies of the API, written with Gson's streaming writer. Channels are named by their
+ * lower case enum names, and missing readings are null.
+ */
+class Json {
+
+    static JsonWriter writer(OutputStream out) {
+        return new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write a reading, or null for one that failed or was skipped (NaN), which JSON cannot hold
+     */
+    static void value(JsonWriter writer, float value) throws IOException {
+        if ( Float.isNaN(value) ) {
+            writer.nullValue();
+        } else {
+            // Boxed, so it prints as a float rather than a widened double
+            writer.value((Float) value);
+        }
+    }
+
+    /**
+     * @return {timestamp, temperature, humidity, pressure, cpu_temperature, cpu_voltage}
+     */
+    static byte[] measurement(Measurement measurement) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            JsonWriter writer = writer(out);
+            writer.beginObject();
+            writeFields(writer, measurement);
+            writer.endObject();
+            writer.flush();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the means of a rollup row as in {@link #measurement}, with its tier and count
+     */
+    static byte[] rollup(RollupTier tier, AveragingMeasurement row) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            JsonWriter writer = writer(out);
+            writer.beginObject();
+            writer.name("tier").value(tier.name().toLowerCase());
+            writeFields(writer, row);
+            writer.name("count").value(row.getCount());
+            writer.endObject();
+            writer.flush();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeFields(JsonWriter writer, Measurement measurement) throws IOException {
+        writer.name("timestamp").value(measurement.getTimestamp());
+        for ( Channel channel : Channel.values() ) {
+            value(writer.name(channel.name().toLowerCase()), channel.valueOf(measurement));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.wellmadesoftware.bme280.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count that only goes up, such as events dropped or deadlines missed.
+ *
+ * Counters are made by {@link Metrics#counter}, which also publishes them.
+ */
+public class Counter implements CounterMBean {
+
+    private final String name;
+    private final String help;
+    private final AtomicLong count = new AtomicLong();
+
+    Counter(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment(long delta) {
+        count.addAndGet(delta);
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Write the counter in the Prometheus text format
+     */
+    void writePrometheus(Writer out) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " counter\n");
+        out.write(name + " " + count.get() + "\n");
+    }
+}
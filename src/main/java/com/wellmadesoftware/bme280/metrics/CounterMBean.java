@@ -0,0 +1,9 @@
+package com.wellmadesoftware.bme280.metrics;
+
+/**
+ * The JMX view of a {@link Counter}.
+ */
+public interface CounterMBean {
+
+    long getCount();
+}
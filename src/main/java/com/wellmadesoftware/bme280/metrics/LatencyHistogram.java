@@ -0,0 +1,123 @@
+package com.wellmadesoftware.bme280.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in nanoseconds into power of two buckets: bucket b holds durations of at least
+ * 2^(b-1) and less than 2^b nanoseconds, and bucket 0 holds zero. Recording is a few atomic
+ * increments and allocates nothing, so it can sit on the sampling path.
+ *
+ * Histograms are made by {@link Metrics#histogram}, which also publishes them.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+    private static final int BUCKETS = 64;
+    // The buckets written out for Prometheus, from 1 microsecond up to about 68 seconds
+    private static final int FIRST_EXPORTED = 10;
+    private static final int LAST_EXPORTED = 36;
+
+    private final String name;
+    private final String help;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record the time since a start taken from System.nanoTime()
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+        if ( nanos < 0 ) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long current;
+        while ( nanos > (current = max.get()) && !max.compareAndSet(current, nanos) ) {
+            // Lost to another thread, look again
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / 1000.0 / n;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return max.get() / 1000.0;
+    }
+
+    @Override
+    public double getMedianMicros() {
+        return percentileNanos(0.5) / 1000.0;
+    }
+
+    @Override
+    public double get99thPercentileMicros() {
+        return percentileNanos(0.99) / 1000.0;
+    }
+
+    private long percentileNanos(double quantile) {
+        long n = count.get();
+        if ( n == 0 ) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * n);
+        long seen = 0;
+        for ( int b = 0; b < BUCKETS; b++ ) {
+            seen += buckets.get(b);
+            if ( seen >= rank ) {
+                return Math.min(upperBound(b), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * Write the histogram in the Prometheus text format, in seconds
+     */
+    void writePrometheus(Writer out) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " histogram\n");
+        long cumulative = 0;
+        for ( int b = 0; b < BUCKETS; b++ ) {
+            cumulative += buckets.get(b);
+            if ( b >= FIRST_EXPORTED && b <= LAST_EXPORTED ) {
+                out.write(name + "_bucket{le=\"" + upperBound(b) / 1e9 + "\"} " + cumulative + "\n");
+            }
+        }
+        // Read last, so the count is never less than the buckets written before it
+        long total = count.get();
+        out.write(name + "_bucket{le=\"+Inf\"} " + Math.max(total, cumulative) + "\n");
+        out.write(name + "_sum " + sum.get() / 1e9 + "\n");
+        out.write(name + "_count " + Math.max(total, cumulative) + "\n");
+    }
+}
@@ -0,0 +1,17 @@
+package com.wellmadesoftware.bme280.metrics;
+
+/**
+ * The JMX view of a {@link LatencyHistogram}. Percentiles are the upper bounds of their buckets.
+ */
+public interface LatencyHistogramMBean {
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getMaxMicros();
+
+    double getMedianMicros();
+
+    double get99thPercentileMicros();
+}
@@ -0,0 +1,123 @@
+package com.wellmadesoftware.bme280.metrics;
+
+import com.wellmadesoftware.bme280.utils.AtomicFiles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency histograms and counters of the process, by name.
+ *
+ * Each is registered as an MBean named com.wellmadesoftware.bme280:type=Latency,name=&lt;name&gt;
+ * or com.wellmadesoftware.bme280:type=Counter,name=&lt;name&gt;
+ * and can be written out in the Prometheus text format, served as /metrics by the API or written to
+ * the file named by bme280.metrics.file for node_exporter's textfile collector, rewritten every
+ * bme280.metrics.file.interval.ms.
+ */
+public class Metrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+
+    private static final String DOMAIN = "com.wellmadesoftware.bme280";
+
+    private static final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private static final Map<String, Counter> counters = new LinkedHashMap<>();
+
+    /**
+     * @return the histogram with the given Prometheus name, made and registered on first use
+     */
+    public static synchronized LatencyHistogram histogram(String name, String help) {
+        LatencyHistogram histogram = histograms.get(name);
+        if ( histogram == null ) {
+            histogram = new LatencyHistogram(name, help);
+            histograms.put(name, histogram);
+            register(histogram, "Latency", name);
+        }
+        return histogram;
+    }
+
+    /**
+     * @return the counter with the given Prometheus name, made and registered on first use
+     */
+    public static synchronized Counter counter(String name, String help) {
+        Counter counter = counters.get(name);
+        if ( counter == null ) {
+            counter = new Counter(name, help);
+            counters.put(name, counter);
+            register(counter, "Counter", name);
+        }
+        return counter;
+    }
+
+    private static void register(Object mbean, String type, String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean,
+                    new ObjectName(DOMAIN + ":type=" + type + ",name=" + name));
+        } catch (JMException ex) {
+            logger.error("Failed to register {} with JMX : {}", name, ex.getMessage());
+        }
+    }
+
+    private static synchronized List<LatencyHistogram> allHistograms() {
+        return new ArrayList<>(histograms.values());
+    }
+
+    private static synchronized List<Counter> allCounters() {
+        return new ArrayList<>(counters.values());
+    }
+
+    public static void writePrometheus(Writer out) throws IOException {
+        for ( LatencyHistogram histogram : allHistograms() ) {
+            histogram.writePrometheus(out);
+        }
+        for ( Counter counter : allCounters() ) {
+            counter.writePrometheus(out);
+        }
+    }
+
+    public static void writePrometheus(File file) throws IOException {
+        AtomicFiles.write(file, out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writePrometheus(writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Rewrite the file every periodMillis on a thread of its own, so the atomic rename and its sync
+     * happen on a fixed schedule rather than with every measurement
+     *
+     * @return the writer, to be shut down on exit
+     */
+    public static ScheduledExecutorService writePrometheusEvery(File file, long periodMillis) {
+        ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-file");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(() -> {
+            try {
+                writePrometheus(file);
+            } catch (IOException | RuntimeException ex) {
+                logger.error("Failed to write {} : {}", file, ex.getMessage());
+            }
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+        return writer;
+    }
+}
@@ -0,0 +1,22 @@
+package com.wellmadesoftware.bme280.pipeline;
+
+/**
+ * What a {@link Stage} does with an item offered while its queue is full.
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * Discard the new item and keep what is queued
+     */
+    DROP,
+
+    /**
+     * Discard the oldest queued item to make room, so the stage always works on the latest
+     */
+    COALESCE,
+
+    /**
+     * Wait for room, holding up the producer
+     */
+    BLOCK
+}
@@ -0,0 +1,163 @@
+package com.wellmadesoftware.bme280.pipeline;
+
+import com.wellmadesoftware.bme280.metrics.Counter;
+import com.wellmadesoftware.bme280.metrics.LatencyHistogram;
+import com.wellmadesoftware.bme280.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a task on absolute deadlines that are whole multiples of the period since the epoch, so a one
+ * minute period fires on the minute on every node, whatever the task costs.
+ *
+ * The deadline is passed to the task to timestamp its sample with. How late each tick actually
+ * started is recorded as jitter. A tick whose deadline passed while the previous one was still
+ * running is skipped and counted as missed rather than run late, so the cadence never drifts. Both
+ * are exported as bme280_sample_jitter_seconds and bme280_sample_missed_ticks_total.
+ */
+public class SamplingScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(SamplingScheduler.class);
+
+    private static final LatencyHistogram JITTER = Metrics.histogram("bme280_sample_jitter_seconds",
+            "How late sampling ticks started after their deadline");
+    private static final Counter MISSED_TICKS = Metrics.counter("bme280_sample_missed_ticks_total",
+            "Sampling ticks skipped because the previous tick overran");
+
+    public interface Task {
+        void run(long deadline) throws Exception;
+    }
+
+    private final long periodMillis;
+    private volatile boolean stopped = false;
+    private volatile Thread runner;
+
+    private volatile long ticks = 0;
+    private volatile long missedTicks = 0;
+    // Only the running thread writes these
+    private volatile long wakeUps = 0;
+    private volatile long lastJitterMicros = 0;
+    private volatile long maxJitterMicros = 0;
+    private volatile long totalJitterMicros = 0;
+
+    public SamplingScheduler(long periodMillis) {
+        if ( periodMillis <= 0 ) {
+            throw new IllegalArgumentException("Sampling period must be positive, not " + periodMillis);
+        }
+        this.periodMillis = periodMillis;
+    }
+
+    /**
+     * A scheduler with the period in bme280.sample.period.ms, or the given default
+     */
+    public static SamplingScheduler fromSystemProperties(long periodMillis) {
+        return new SamplingScheduler(Long.getLong("bme280.sample.period.ms", periodMillis));
+    }
+
+    /**
+     * @return the first deadline after now
+     */
+    long nextDeadline(long now) {
+        return (Math.floorDiv(now, periodMillis) + 1) * periodMillis;
+    }
+
+    /**
+     * Run the task on every deadline from the next one on, on the calling thread, until stopped or
+     * interrupted. A task that throws is logged and the schedule carries on.
+     */
+    public void run(Task task) {
+        runner = Thread.currentThread();
+        long deadline = nextDeadline(System.currentTimeMillis());
+        while ( !stopped && !Thread.currentThread().isInterrupted() ) {
+            if ( !awaitDeadline(deadline) ) {
+                break;
+            }
+            try {
+                task.run(deadline);
+            } catch (Exception ex) {
+                logger.error("Sampling task failed : {}", ex.getMessage());
+            }
+            ticks ++;
+
+            long now = System.currentTimeMillis();
+            long next = deadline + periodMillis;
+            if ( now >= next ) {
+                long skipped = (now - next) / periodMillis + 1;
+                missedTicks += skipped;
+                MISSED_TICKS.increment(skipped);
+                next += skipped * periodMillis;
+                logger.warn("Sampling fell behind, skipped {} ticks", skipped);
+            } else if ( next - now > periodMillis ) {
+                // The clock was set back; start over from the next deadline
+                next = nextDeadline(now);
+            }
+            deadline = next;
+        }
+        runner = null;
+    }
+
+    /**
+     * Park until the deadline and record how late the wake up was
+     *
+     * @return false if stopped or interrupted while waiting
+     */
+    private boolean awaitDeadline(long deadline) {
+        // Wait on the monotonic clock, anchored to the wall clock the deadline is measured in
+        long anchorMillis = System.currentTimeMillis();
+        long anchorNanos = System.nanoTime();
+        long deadlineNanos = anchorNanos + TimeUnit.MILLISECONDS.toNanos(deadline - anchorMillis);
+        long remaining;
+        while ( (remaining = deadlineNanos - System.nanoTime()) > 0 ) {
+            LockSupport.parkNanos(remaining);
+            if ( stopped || Thread.currentThread().isInterrupted() ) {
+                return false;
+            }
+        }
+        JITTER.record(-remaining);
+        long jitter = TimeUnit.NANOSECONDS.toMicros(-remaining);
+        lastJitterMicros = jitter;
+        maxJitterMicros = Math.max(maxJitterMicros, jitter);
+        totalJitterMicros += jitter;
+        wakeUps ++;
+        return true;
+    }
+
+    /**
+     * Stop after the tick in progress, if any
+     */
+    public void stop() {
+        stopped = true;
+        Thread thread = runner;
+        if ( thread != null ) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getMissedTicks() {
+        return missedTicks;
+    }
+
+    public long getLastJitterMicros() {
+        return lastJitterMicros;
+    }
+
+    public long getMaxJitterMicros() {
+        return maxJitterMicros;
+    }
+
+    public long getMeanJitterMicros() {
+        long count = wakeUps;
+        return count == 0 ? 0 : totalJitterMicros / count;
+    }
+}
@@ -0,0 +1,165 @@
+package com.wellmadesoftware.bme280.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One step of the measurement pipeline: a bounded queue drained by its own thread, which hands each
+ * item to a handler.
+ *
+ * A producer never waits on the handler unless the stage was built with
+ * {@link BackpressurePolicy#BLOCK}; otherwise a full queue drops or coalesces items and counts them.
+ * A handler that throws is logged and the stage carries on with the next item.
+ *
+ * The capacity and policy of a stage can be set with bme280.pipeline.&lt;name&gt;.capacity and
+ * bme280.pipeline.&lt;name&gt;.policy.
+ */
+public class Stage<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(Stage.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    public interface Handler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    private final String name;
+    private final BackpressurePolicy policy;
+    private final Handler<T> handler;
+    private final BlockingQueue<T> queue;
+    private final ExecutorService executor;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong handled = new AtomicLong();
+    private volatile boolean closed = false;
+
+    public Stage(String name, int capacity, BackpressurePolicy policy, Handler<T> handler) {
+        this.name = name;
+        this.policy = policy;
+        this.handler = handler;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::drain);
+    }
+
+    /**
+     * A stage sized and governed by bme280.pipeline.&lt;name&gt;.capacity and .policy, falling back to
+     * the given defaults
+     */
+    public static <T> Stage<T> fromSystemProperties(String name, int capacity, BackpressurePolicy policy, Handler<T> handler) {
+        String prefix = "bme280.pipeline." + name;
+        return new Stage<>(name,
+                Integer.getInteger(prefix + ".capacity", capacity),
+                BackpressurePolicy.valueOf(System.getProperty(prefix + ".policy", policy.name()).toUpperCase()),
+                handler);
+    }
+
+    /**
+     * Queue an item for the handler, applying the backpressure policy if the queue is full
+     *
+     * @return false if the item, or an older one in its place, was discarded
+     */
+    public boolean offer(T item) {
+        if ( closed ) {
+            logger.warn("Stage {} is closed, discarding an item", name);
+            return false;
+        }
+        if ( queue.offer(item) ) {
+            return true;
+        }
+        switch ( policy ) {
+            case BLOCK:
+                try {
+                    queue.put(item);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return discarded();
+                }
+            case COALESCE:
+                while ( !queue.offer(item) ) {
+                    if ( queue.poll() != null ) {
+                        discarded();
+                    }
+                }
+                return false;
+            default:
+                return discarded();
+        }
+    }
+
+    private boolean discarded() {
+        long count = dropped.incrementAndGet();
+        if ( count == 1 || count % 100 == 0 ) {
+            logger.warn("Stage {} is falling behind, {} items discarded so far", name, count);
+        }
+        return false;
+    }
+
+    private void drain() {
+        while ( !closed || !queue.isEmpty() ) {
+            T item;
+            try {
+                item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Closing; anything still queued is handled before the thread ends
+                item = queue.poll();
+                if ( item == null ) {
+                    return;
+                }
+            }
+            if ( item == null ) {
+                continue;
+            }
+            try {
+                handler.handle(item);
+            } catch (Exception ex) {
+                logger.error("Stage {} failed to handle an item : {}", name, ex.getMessage());
+            }
+            handled.incrementAndGet();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getHandled() {
+        return handled.get();
+    }
+
+    /**
+     * Stop taking items and wait up to timeoutMillis for the queued ones to be handled
+     */
+    public void close(long timeoutMillis) {
+        closed = true;
+        executor.shutdown();
+        try {
+            if ( !executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS) ) {
+                logger.warn("Stage {} closed with {} items unhandled", name, queue.size());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.wellmadesoftware.bme280.stats;
+
+/**
+ * A double ended queue of primitive longs in a ring that doubles when full.
+ */
+class LongDeque {
+
+    private long[] elements = new long[16];
+    private int head = 0;
+    private int size = 0;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long peekFirst() {
+        return elements[head];
+    }
+
+    long peekLast() {
+        return elements[(head + size - 1) & (elements.length - 1)];
+    }
+
+    void addLast(long value) {
+        if ( size == elements.length ) {
+            long[] grown = new long[elements.length * 2];
+            for ( int i = 0; i < size; i++ ) {
+                grown[i] = elements[(head + i) & (elements.length - 1)];
+            }
+            elements = grown;
+            head = 0;
+        }
+        elements[(head + size) & (elements.length - 1)] = value;
+        size ++;
+    }
+
+    long pollFirst() {
+        long value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size --;
+        return value;
+    }
+
+    long pollLast() {
+        size --;
+        return elements[(head + size) & (elements.length - 1)];
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,257 @@
+package com.wellmadesoftware.bme280.stats;
+
+import com.wellmadesoftware.bme280.data.model.Channel;
+import com.wellmadesoftware.bme280.data.model.HiLowAvg;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import com.wellmadesoftware.bme280.data.repository.MeasurementQuery;
+import com.wellmadesoftware.bme280.data.repository.MeasurementRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * High, low and average of a set of channels over a set of trailing time windows, kept up to date
+ * one measurement at a time.
+ *
+ * Every window has a monotonic deque of candidate minima and one of maxima per channel, and a
+ * compensated (Neumaier) sum for the mean, so adding a measurement or expiring an old one costs
+ * amortised O(1) and reading the statistics costs O(1). The samples themselves are held once, in a
+ * ring shared by all windows and sized by the longest. Measurements are expected in time order.
+ * NaN readings are left out.
+ */
+public class SlidingWindowStatistics {
+
+    private final Channel[] channels;
+    private final Map<String, Window> windows = new LinkedHashMap<>();
+
+    // Samples by sequence number; the ring holds [oldest, next)
+    private long[] times = new long[64];
+    private float[][] values;
+    private long oldest = 0;
+    private long next = 0;
+
+    public SlidingWindowStatistics(Channel... channels) {
+        this.channels = channels.clone();
+        this.values = new float[channels.length][times.length];
+    }
+
+    /**
+     * Track the last durationMillis of measurements under the given title. Windows should be added
+     * before any measurements.
+     */
+    public synchronized SlidingWindowStatistics addWindow(String title, long durationMillis) {
+        windows.put(title, new Window(title, durationMillis));
+        return this;
+    }
+
+    /**
+     * Fill the windows from stored measurements, once at startup
+     */
+    public synchronized void seed(MeasurementRepository repository, long now) {
+        long longest = 0;
+        for ( Window window : windows.values() ) {
+            longest = Math.max(longest, window.durationMillis);
+        }
+        repository.stream(MeasurementQuery.range(now - longest, now).channels(channels), (timestamp, values) -> {
+            add(timestamp, values);
+            return true;
+        });
+        expire(now);
+    }
+
+    public synchronized void add(Measurement measurement) {
+        int slot = reserve(measurement.getTimestamp());
+        for ( int c = 0; c < channels.length; c++ ) {
+            values[c][slot] = channels[c].valueOf(measurement);
+        }
+        admit(measurement.getTimestamp());
+    }
+
+    /**
+     * Add the readings of the tracked channels, in the order they were given
+     */
+    private void add(long timestamp, float[] readings) {
+        int slot = reserve(timestamp);
+        for ( int c = 0; c < channels.length; c++ ) {
+            values[c][slot] = readings[c];
+        }
+        admit(timestamp);
+    }
+
+    private int reserve(long timestamp) {
+        if ( next - oldest == times.length ) {
+            grow();
+        }
+        int slot = slot(next);
+        times[slot] = timestamp;
+        return slot;
+    }
+
+    private void admit(long timestamp) {
+        for ( Window window : windows.values() ) {
+            window.admit(next);
+        }
+        next ++;
+        expire(timestamp);
+    }
+
+    /**
+     * @return the statistics of one channel over the window with the given title, as of now
+     */
+    public synchronized HiLowAvg get(String title, Channel channel, long now) {
+        expire(now);
+        Window window = windows.get(title);
+        if ( window == null ) {
+            throw new IllegalArgumentException("No window " + title);
+        }
+        return window.snapshot(channelIndex(channel));
+    }
+
+    /**
+     * @return the statistics of one channel over every window, in the order they were added
+     */
+    public synchronized List<HiLowAvg> getAll(Channel channel, long now) {
+        expire(now);
+        int c = channelIndex(channel);
+        List<HiLowAvg> results = new ArrayList<>(windows.size());
+        for ( Window window : windows.values() ) {
+            results.add(window.snapshot(c));
+        }
+        return results;
+    }
+
+    private int channelIndex(Channel channel) {
+        for ( int c = 0; c < channels.length; c++ ) {
+            if ( channels[c] == channel ) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Channel " + channel + " is not tracked");
+    }
+
+    private void expire(long now) {
+        long first = next;
+        for ( Window window : windows.values() ) {
+            window.expire(now);
+            first = Math.min(first, window.first);
+        }
+        oldest = first;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence & (times.length - 1));
+    }
+
+    private float value(int c, long sequence) {
+        return values[c][slot(sequence)];
+    }
+
+    private void grow() {
+        int mask = times.length - 1;
+        long[] grownTimes = new long[times.length * 2];
+        float[][] grownValues = new float[channels.length][grownTimes.length];
+        for ( long sequence = oldest; sequence < next; sequence++ ) {
+            int from = (int) (sequence & mask);
+            int to = (int) (sequence & (grownTimes.length - 1));
+            grownTimes[to] = times[from];
+            for ( int c = 0; c < channels.length; c++ ) {
+                grownValues[c][to] = values[c][from];
+            }
+        }
+        times = grownTimes;
+        values = grownValues;
+    }
+
+    private class Window {
+        private final String title;
+        private final long durationMillis;
+        private long first = next;
+
+        private final double[] sums = new double[channels.length];
+        private final double[] compensations = new double[channels.length];
+        private final int[] counts = new int[channels.length];
+        // Sequence numbers of samples that can still become the minimum (maximum), oldest first, with
+        // increasing (decreasing) values
+        private final LongDeque[] minima = new LongDeque[channels.length];
+        private final LongDeque[] maxima = new LongDeque[channels.length];
+
+        Window(String title, long durationMillis) {
+            this.title = title;
+            this.durationMillis = durationMillis;
+            for ( int c = 0; c < channels.length; c++ ) {
+                minima[c] = new LongDeque();
+                maxima[c] = new LongDeque();
+            }
+        }
+
+        void admit(long sequence) {
+            for ( int c = 0; c < channels.length; c++ ) {
+                float value = value(c, sequence);
+                if ( Float.isNaN(value) ) {
+                    continue;
+                }
+                accumulate(c, value);
+                counts[c] ++;
+                while ( !minima[c].isEmpty() && value(c, minima[c].peekLast()) >= value ) {
+                    minima[c].pollLast();
+                }
+                minima[c].addLast(sequence);
+                while ( !maxima[c].isEmpty() && value(c, maxima[c].peekLast()) <= value ) {
+                    maxima[c].pollLast();
+                }
+                maxima[c].addLast(sequence);
+            }
+        }
+
+        void expire(long now) {
+            long cutoff = now - durationMillis;
+            while ( first < next && times[slot(first)] < cutoff ) {
+                for ( int c = 0; c < channels.length; c++ ) {
+                    float value = value(c, first);
+                    if ( Float.isNaN(value) ) {
+                        continue;
+                    }
+                    accumulate(c, -value);
+                    counts[c] --;
+                    if ( minima[c].peekFirst() == first ) {
+                        minima[c].pollFirst();
+                    }
+                    if ( maxima[c].peekFirst() == first ) {
+                        maxima[c].pollFirst();
+                    }
+                }
+                first ++;
+            }
+            if ( first == next ) {
+                // Start an empty window from a clean sum rather than the residue of everything expired
+                Arrays.fill(sums, 0);
+                Arrays.fill(compensations, 0);
+            }
+        }
+
+        private void accumulate(int c, double value) {
+            double sum = sums[c];
+            double total = sum + value;
+            if ( Math.abs(sum) >= Math.abs(value) ) {
+                compensations[c] += (sum - total) + value;
+            } else {
+                compensations[c] += (value - total) + sum;
+            }
+            sums[c] = total;
+        }
+
+        HiLowAvg snapshot(int c) {
+            HiLowAvg hiLowAvg = new HiLowAvg(title);
+            if ( counts[c] > 0 ) {
+                hiLowAvg.hi = value(c, maxima[c].peekFirst());
+                hiLowAvg.low = value(c, minima[c].peekFirst());
+                hiLowAvg.avg = (float) ((sums[c] + compensations[c]) / counts[c]);
+                hiLowAvg.count = counts[c];
+            }
+            return hiLowAvg;
+        }
+    }
+}
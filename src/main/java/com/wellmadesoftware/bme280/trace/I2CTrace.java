@@ -0,0 +1,216 @@
+package com.wellmadesoftware.bme280.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A flight recorder of I2C transactions: a fixed ring of binary records (wall clock time, latency,
+ * kind, address, register, error flag and up to {@link #MAX_DATA} bytes of data) that recording
+ * overwrites oldest first.
+ *
+ * Recording takes a sequence number from a counter and fills that slot with ordered stores, so any
+ * number of threads can record without locks or allocation. The slot's stamp is cleared before the
+ * record is written and set to the sequence number after, and a reader only keeps a record whose
+ * stamp was the same before and after reading it.
+ *
+ * The process wide trace holds bme280.trace.capacity records (4096) and is registered with JMX as
+ * com.wellmadesoftware.bme280:type=I2CTrace. {@link #dump} writes what it holds in the format read
+ * by {@link I2CTraceDecoder}.
+ */
+public class I2CTrace implements I2CTraceMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(I2CTrace.class);
+
+    public enum Kind {
+        READ,
+        BLOCK,
+        WRITE,
+        // The raw temperature, pressure and humidity of one sample, packed as by BME280.readRawSample
+        SAMPLE
+    }
+
+    public static final int MAX_DATA = 32;
+
+    static final int MAGIC = 0x49324354; // I2CT
+    static final int VERSION = 1;
+
+    // time, latency, header and the data, eight bytes to a long
+    private static final int LONGS = 3 + MAX_DATA / 8;
+    private static final Kind[] KINDS = Kind.values();
+
+    private final int mask;
+    private final AtomicLongArray records;
+    private final AtomicLongArray stamps;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public I2CTrace(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        mask = slots - 1;
+        records = new AtomicLongArray(slots * LONGS);
+        stamps = new AtomicLongArray(slots);
+    }
+
+    private static I2CTrace create(int capacity) {
+        I2CTrace trace = new I2CTrace(capacity);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(trace,
+                    new ObjectName("com.wellmadesoftware.bme280:type=I2CTrace"));
+        } catch (JMException ex) {
+            logger.error("Failed to register the I2C trace with JMX : {}", ex.getMessage());
+        }
+        return trace;
+    }
+
+    // Made on first use, so decoding a dump offline makes no trace
+    private static class Global {
+        static final I2CTrace INSTANCE = create(Integer.getInteger("bme280.trace.capacity", 4096));
+    }
+
+    /**
+     * @return the process wide trace
+     */
+    public static I2CTrace get() {
+        return Global.INSTANCE;
+    }
+
+    public void read(int address, int register, int value, long latencyNanos) {
+        record(Kind.READ, address, register, false, latencyNanos, 1, value & 0xFF);
+    }
+
+    public void write(int address, int register, int value, long latencyNanos) {
+        record(Kind.WRITE, address, register, false, latencyNanos, 1, value & 0xFF);
+    }
+
+    public void sample(int address, long rawSample) {
+        record(Kind.SAMPLE, address, 0, false, 0, 8, rawSample);
+    }
+
+    /**
+     * A transaction that threw or came back short, with no data
+     */
+    public void failed(Kind kind, int address, int register, long latencyNanos) {
+        record(kind, address, register, true, latencyNanos, 0, 0);
+    }
+
+    public void block(int address, int register, byte[] buffer, int offset, int size, long latencyNanos) {
+        int length = Math.min(size, MAX_DATA);
+        long seq = begin(Kind.BLOCK, address, register, false, latencyNanos, length);
+        int base = base(seq);
+        for ( int i = 0; i < length; i += 8 ) {
+            long data = 0;
+            for ( int b = 0; b < 8 && i + b < length; b++ ) {
+                data |= (buffer[offset + i + b] & 0xFFL) << (8 * b);
+            }
+            records.lazySet(base + 3 + i / 8, data);
+        }
+        end(seq);
+    }
+
+    private void record(Kind kind, int address, int register, boolean error, long latencyNanos, int length, long data) {
+        long seq = begin(kind, address, register, error, latencyNanos, length);
+        records.lazySet(base(seq) + 3, data);
+        end(seq);
+    }
+
+    private int base(long seq) {
+        return ((int) seq & mask) * LONGS;
+    }
+
+    private long begin(Kind kind, int address, int register, boolean error, long latencyNanos, int length) {
+        long seq = sequence.getAndIncrement();
+        stamps.lazySet((int) seq & mask, 0);
+        int base = base(seq);
+        records.lazySet(base, System.currentTimeMillis());
+        records.lazySet(base + 1, latencyNanos);
+        records.lazySet(base + 2, (long) kind.ordinal() << 40 | (error ? 1L << 32 : 0) | (address & 0xFFL) << 24
+                | (register & 0xFFL) << 16 | length);
+        return seq;
+    }
+
+    private void end(long seq) {
+        stamps.lazySet((int) seq & mask, seq + 1);
+    }
+
+    @Override
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    @Override
+    public long getRecorded() {
+        return sequence.get();
+    }
+
+    /**
+     * Write the records held, oldest first, skipping any that were overwritten while being read
+     */
+    public void dump(OutputStream out) throws IOException {
+        dump(out, getCapacity());
+    }
+
+    private void dump(OutputStream out, int count) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        long last = sequence.get();
+        long[] record = new long[LONGS];
+        for ( long seq = Math.max(0, last - Math.min(count, getCapacity())); seq < last; seq++ ) {
+            int slot = (int) seq & mask;
+            if ( stamps.get(slot) != seq + 1 ) {
+                continue;
+            }
+            for ( int i = 0; i < LONGS; i++ ) {
+                record[i] = records.get(base(seq) + i);
+            }
+            if ( stamps.get(slot) != seq + 1 ) {
+                continue;
+            }
+            int length = (int) record[2] & 0xFFFF;
+            data.writeLong(record[0]);
+            data.writeLong(record[1]);
+            data.writeLong(record[2]);
+            for ( int i = 0; i < length; i++ ) {
+                data.writeByte((int) (record[3 + i / 8] >>> (8 * (i % 8))));
+            }
+        }
+        data.flush();
+    }
+
+    @Override
+    public void dump(String path) throws IOException {
+        try (OutputStream out = new FileOutputStream(new File(path))) {
+            dump(out);
+        }
+    }
+
+    @Override
+    public String decode(int count) throws IOException {
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        dump(dump, count);
+        StringWriter text = new StringWriter();
+        I2CTraceDecoder.decode(new ByteArrayInputStream(dump.toByteArray()), text);
+        return text.toString();
+    }
+
+    static Kind kind(long header) {
+        int ordinal = (int) (header >>> 40) & 0xFF;
+        return ordinal < KINDS.length ? KINDS[ordinal] : null;
+    }
+}
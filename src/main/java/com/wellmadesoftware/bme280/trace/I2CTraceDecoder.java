@@ -0,0 +1,104 @@
+package com.wellmadesoftware.bme280.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Turns an {@link I2CTrace} dump back into the lines bme280.debug used to print, each prefixed with
+ * the time of the transaction and how long it took.
+ *
+ * <pre>
+ * java -cp bme280.jar com.wellmadesoftware.bme280.trace.I2CTraceDecoder i2c.trace
+ * </pre>
+ *
+ * reads the dump files named, or standard input, and writes to standard output.
+ */
+public class I2CTraceDecoder {
+
+    public static void decode(InputStream in, Writer out) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if ( data.readInt() != I2CTrace.MAGIC ) {
+            throw new IOException("Not an I2C trace");
+        }
+        int version = data.readInt();
+        if ( version != I2CTrace.VERSION ) {
+            throw new IOException("Unsupported I2C trace version " + version);
+        }
+        PrintWriter lines = new PrintWriter(out);
+        byte[] bytes = new byte[I2CTrace.MAX_DATA];
+        while ( true ) {
+            long time;
+            try {
+                time = data.readLong();
+            } catch (EOFException ex) {
+                break;
+            }
+            long latency = data.readLong();
+            long header = data.readLong();
+            int length = (int) header & 0xFFFF;
+            data.readFully(bytes, 0, length);
+            lines.println(Instant.ofEpochMilli(time) + " " + latency / 1000 + "us " + describe(header, bytes, length));
+        }
+        lines.flush();
+    }
+
+    private static String describe(long header, byte[] bytes, int length) {
+        I2CTrace.Kind kind = I2CTrace.kind(header);
+        boolean failed = (header & 1L << 32) != 0;
+        int address = (int) (header >>> 24) & 0xFF;
+        int register = (int) (header >>> 16) & 0xFF;
+        String device = "I2C: Device " + address + " (0x" + Integer.toHexString(address) + ")";
+        String reg = "reg " + register + " (0x" + Integer.toHexString(register) + ")";
+        if ( kind == null ) {
+            return "Unknown record " + Long.toHexString(header);
+        }
+        if ( failed ) {
+            return device + " failed " + kind.name().toLowerCase() + " of " + reg;
+        }
+        switch ( kind ) {
+            case READ:
+                int value = bytes[0] & 0xFF;
+                return device + " returned " + value + " (0x" + Integer.toHexString(value) + ") from " + reg;
+            case WRITE:
+                int written = bytes[0] & 0xFF;
+                return device + " wrote " + written + " (0x" + Integer.toHexString(written) + ") to " + reg;
+            case BLOCK:
+                StringBuilder hex = new StringBuilder();
+                for ( int i = 0; i < length; i++ ) {
+                    hex.append(i == 0 ? "" : " ").append(String.format("%02X", bytes[i] & 0xFF));
+                }
+                return device + " returned [" + hex + "] from " + reg;
+            case SAMPLE:
+                long sample = 0;
+                for ( int i = 0; i < 8; i++ ) {
+                    sample |= (bytes[i] & 0xFFL) << (8 * i);
+                }
+                return "DBG: Raw Temp: " + (sample >>> 36) + ", Raw Pressure: " + ((sample >>> 16) & 0xFFFFF)
+                        + ", Raw Humidity: " + (sample & 0xFFFF);
+            default:
+                return "Unknown record " + Long.toHexString(header);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        if ( args.length == 0 ) {
+            decode(System.in, out);
+        }
+        for ( String path : args ) {
+            try (InputStream in = new FileInputStream(path)) {
+                decode(in, out);
+            }
+        }
+        out.flush();
+    }
+}
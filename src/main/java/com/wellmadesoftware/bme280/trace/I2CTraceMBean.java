@@ -0,0 +1,23 @@
+package com.wellmadesoftware.bme280.trace;
+
+import java.io.IOException;
+
+/**
+ * The JMX view of the {@link I2CTrace}
+ */
+public interface I2CTraceMBean {
+
+    int getCapacity();
+
+    long getRecorded();
+
+    /**
+     * Write the records held to a file, for {@link I2CTraceDecoder}
+     */
+    void dump(String path) throws IOException;
+
+    /**
+     * @return the last count records held, decoded
+     */
+    String decode(int count) throws IOException;
+}
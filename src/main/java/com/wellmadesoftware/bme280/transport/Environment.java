@@ -0,0 +1,69 @@
+package com.wellmadesoftware.bme280.transport;
+
+/**
+ * The conditions a simulated sensor measures, as a function of wall clock time.
+ */
+public interface Environment {
+
+    /**
+     * @return the temperature in degrees celcius
+     */
+    float temperature(long timeMillis);
+
+    /**
+     * @return the pressure in pascal
+     */
+    float pressure(long timeMillis);
+
+    /**
+     * @return the relative humidity in percent
+     */
+    float humidity(long timeMillis);
+
+    static Environment constant(float temperature, float pressure, float humidity) {
+        return new Environment() {
+            @Override
+            public float temperature(long timeMillis) {
+                return temperature;
+            }
+
+            @Override
+            public float pressure(long timeMillis) {
+                return pressure;
+            }
+
+            @Override
+            public float humidity(long timeMillis) {
+                return humidity;
+            }
+        };
+    }
+
+    /**
+     * A day/night cycle: temperature peaks mid-afternoon and humidity moves the opposite way,
+     * while pressure drifts slowly over a few days.
+     */
+    static Environment daily(float meanTemperature, float temperatureSwing, float meanPressure, float meanHumidity) {
+        final double day = 24 * 3600 * 1000.0;
+        return new Environment() {
+            private double phase(long timeMillis) {
+                return 2 * Math.PI * ((timeMillis - 15 * 3600 * 1000L) % (long) day) / day;
+            }
+
+            @Override
+            public float temperature(long timeMillis) {
+                return (float) (meanTemperature + temperatureSwing * Math.cos(phase(timeMillis)));
+            }
+
+            @Override
+            public float pressure(long timeMillis) {
+                return (float) (meanPressure + 800 * Math.sin(2 * Math.PI * timeMillis / (day * 5)));
+            }
+
+            @Override
+            public float humidity(long timeMillis) {
+                return (float) Math.max(0, Math.min(100, meanHumidity - 15 * Math.cos(phase(timeMillis))));
+            }
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package com.wellmadesoftware.bme280.transport;
+
+import java.io.IOException;
+
+/**
+ * Register level access to a single device on an I2C bus.
+ *
+ * Every method call is one bus transaction.
+ */
+public interface I2CTransport {
+
+    /**
+     * @return the 7 bit address of the device
+     */
+    int getAddress();
+
+    /**
+     * Read a single register
+     */
+    int read(int register) throws IOException;
+
+    /**
+     * Read size consecutive registers starting at register into the buffer
+     *
+     * @return the number of bytes read
+     */
+    int read(int register, byte[] buffer, int offset, int size) throws IOException;
+
+    /**
+     * Write a single register
+     */
+    void write(int register, byte value) throws IOException;
+}
@@ -0,0 +1,44 @@
+package com.wellmadesoftware.bme280.transport;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
+import com.pi4j.io.i2c.I2CFactory;
+
+import java.io.IOException;
+
+/**
+ * Transport backed by a real I2C bus through pi4j.
+ */
+public class Pi4jTransport implements I2CTransport {
+
+    private final I2CDevice device;
+
+    public Pi4jTransport(I2CDevice device) {
+        this.device = device;
+    }
+
+    public static Pi4jTransport open(int busNumber, int address) throws I2CFactory.UnsupportedBusNumberException, IOException {
+        I2CBus bus = I2CFactory.getInstance(busNumber);
+        return new Pi4jTransport(bus.getDevice(address));
+    }
+
+    @Override
+    public int getAddress() {
+        return device.getAddress();
+    }
+
+    @Override
+    public int read(int register) throws IOException {
+        return device.read(register);
+    }
+
+    @Override
+    public int read(int register, byte[] buffer, int offset, int size) throws IOException {
+        return device.read(register, buffer, offset, size);
+    }
+
+    @Override
+    public void write(int register, byte value) throws IOException {
+        device.write(register, value);
+    }
+}
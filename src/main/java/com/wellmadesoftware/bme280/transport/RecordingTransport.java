@@ -0,0 +1,65 @@
+package com.wellmadesoftware.bme280.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+import static com.wellmadesoftware.bme280.BME280.*;
+
+/**
+ * Passes every transaction through to another transport and writes the block reads to a register
+ * dump that {@link ReplayTransport} can play back later.
+ *
+ * Each read of the data registers ends the current frame. Closing the transport closes the dump.
+ */
+public class RecordingTransport implements I2CTransport, Closeable {
+
+    private final I2CTransport delegate;
+    private final Writer out;
+    private final StringBuilder frame = new StringBuilder();
+
+    public RecordingTransport(I2CTransport delegate, Writer out) {
+        this.delegate = delegate;
+        this.out = out;
+    }
+
+    @Override
+    public int getAddress() {
+        return delegate.getAddress();
+    }
+
+    @Override
+    public int read(int register) throws IOException {
+        return delegate.read(register);
+    }
+
+    @Override
+    public synchronized int read(int register, byte[] buffer, int offset, int size) throws IOException {
+        int read = delegate.read(register, buffer, offset, size);
+        if (frame.length() > 0)
+            frame.append(' ');
+        frame.append(String.format("%02X:", register));
+        for (int i = 0; i < read; i++)
+            frame.append(String.format("%02X", buffer[offset + i] & 0xFF));
+        if (register == BME280_REGISTER_PRESSURE_DATA) {
+            out.write(frame.append('\n').toString());
+            out.flush();
+            frame.setLength(0);
+        }
+        return read;
+    }
+
+    @Override
+    public void write(int register, byte value) throws IOException {
+        delegate.write(register, value);
+    }
+
+    /**
+     * Close the dump, dropping any frame not yet ended by a read of the data registers
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        frame.setLength(0);
+        out.close();
+    }
+}
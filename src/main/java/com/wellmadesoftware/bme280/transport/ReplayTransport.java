@@ -0,0 +1,100 @@
+package com.wellmadesoftware.bme280.transport;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.wellmadesoftware.bme280.BME280.*;
+
+/**
+ * Plays back register dumps written by {@link RecordingTransport}.
+ *
+ * A dump is a text file with one frame per line. A frame is a list of whitespace separated
+ * blocks, each written as the starting register and the bytes read from it in hex, for example
+ * {@code F7:523A007E8B006B5E}. The first frame is applied when the transport is created so that
+ * the chip ID and calibration banks can be read; every further read of the data registers applies
+ * the next frame before answering. Writes are accepted and ignored, and the status register always
+ * reports that no conversion is running.
+ */
+public class ReplayTransport implements I2CTransport {
+
+    private final byte[] registers = new byte[256];
+    private final int address;
+    private final List<String> frames;
+    private final boolean loop;
+
+    private int nextFrame = 1;
+    private boolean firstSample = true;
+
+    public ReplayTransport(int address, List<String> frames, boolean loop) throws IOException {
+        if (frames.isEmpty())
+            throw new IOException("Register dump contains no frames");
+        this.address = address;
+        this.frames = frames;
+        this.loop = loop;
+        apply(frames.get(0));
+    }
+
+    public static ReplayTransport load(File file, boolean loop) throws IOException {
+        List<String> frames = new ArrayList<>();
+        for (String line : FileUtils.readLines(file, "UTF-8")) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#"))
+                frames.add(line);
+        }
+        return new ReplayTransport(BME280_I2CADDR, frames, loop);
+    }
+
+    private void apply(String frame) throws IOException {
+        for (String block : frame.split("\\s+")) {
+            int colon = block.indexOf(':');
+            if (colon < 0 || (block.length() - colon - 1) % 2 != 0)
+                throw new IOException("Malformed register block : " + block);
+            int register = Integer.parseInt(block.substring(0, colon), 16);
+            for (int i = colon + 1, r = register; i < block.length(); i += 2, r++)
+                registers[r & 0xFF] = (byte) Integer.parseInt(block.substring(i, i + 2), 16);
+        }
+    }
+
+    private void advance() throws IOException {
+        if (firstSample) {
+            firstSample = false;
+            return;
+        }
+        if (nextFrame >= frames.size()) {
+            if (!loop || frames.size() < 2)
+                throw new IOException("End of register dump reached");
+            nextFrame = 1;
+        }
+        apply(frames.get(nextFrame++));
+    }
+
+    @Override
+    public int getAddress() {
+        return address;
+    }
+
+    @Override
+    public synchronized int read(int register) throws IOException {
+        if (register == BME280_REGISTER_STATUS)
+            return 0;
+        return registers[register & 0xFF] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(int register, byte[] buffer, int offset, int size) throws IOException {
+        if (register == BME280_REGISTER_PRESSURE_DATA)
+            advance();
+        for (int i = 0; i < size; i++)
+            buffer[offset + i] = registers[(register + i) & 0xFF];
+        return size;
+    }
+
+    @Override
+    public void write(int register, byte value) throws IOException {
+
+    }
+}
@@ -0,0 +1,242 @@
+package com.wellmadesoftware.bme280.transport;
+
+import com.wellmadesoftware.bme280.calibration.CalibrationData;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.wellmadesoftware.bme280.BME280.*;
+import static com.wellmadesoftware.bme280.compensation.IntegerCompensator.*;
+
+/**
+ * A register level simulation of a BME280 for running the driver without hardware.
+ *
+ * The simulated sensor has its own trimming parameters and measures an {@link Environment}. Raw ADC
+ * values are found by inverting the fixed point compensation formulas, so the driver decodes and
+ * compensates exactly as it would against a real part. Forced and normal mode conversions take the
+ * datasheet maximum measurement time and report it through the measuring bit of the status register,
+ * and every transaction can be given a fixed latency to mimic a slow or busy bus.
+ */
+public class SimulatedBME280Transport implements I2CTransport {
+
+    /**
+     * The example trimming parameters from section 8.1 of the datasheet, plus typical humidity values
+     */
+    public static final CalibrationData DATASHEET_CALIBRATION = new CalibrationData(
+            27504, 26435, -1000,
+            36477, -10685, 3024, 2855, 140, -7, 15500, -14600, 6000,
+            75, 362, 0, 313, 50, 30);
+
+    private static final int CHIP_ID = 0x60;
+    private static final int SOFT_RESET = 0xB6;
+    private static final int STATUS_MEASURING = 0x08;
+    private static final long[] STANDBY_MICROS = {500, 62500, 125000, 250000, 500000, 1000000, 10000, 20000};
+
+    private final byte[] registers = new byte[256];
+    private final int address;
+    private final CalibrationData calibration;
+    private final Environment environment;
+    private final long latencyNanos;
+
+    private boolean converting = false;
+    private long conversionEnd = 0;
+    private long nextNormalConversion = 0;
+    private long transactions = 0;
+
+    public SimulatedBME280Transport() {
+        this(BME280_I2CADDR, DATASHEET_CALIBRATION, Environment.daily(21.0f, 3.0f, 101325.0f, 45.0f), 0);
+    }
+
+    public SimulatedBME280Transport(int address, CalibrationData calibration, Environment environment, long latencyMicros) {
+        this.address = address;
+        this.calibration = calibration;
+        this.environment = environment;
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        reset();
+    }
+
+    private void reset() {
+        Arrays.fill(registers, (byte) 0);
+        registers[BME280_REGISTER_CHIPID] = (byte) CHIP_ID;
+        byte[] bank1 = new byte[CalibrationData.BANK1_LENGTH];
+        byte[] bank2 = new byte[CalibrationData.BANK2_LENGTH];
+        calibration.encode(bank1, bank2);
+        System.arraycopy(bank1, 0, registers, CalibrationData.BANK1_REGISTER, bank1.length);
+        System.arraycopy(bank2, 0, registers, CalibrationData.BANK2_REGISTER, bank2.length);
+        // Skipped measurements read back as 0x80000 (0x8000 for humidity)
+        registers[BME280_REGISTER_PRESSURE_DATA] = (byte) 0x80;
+        registers[BME280_REGISTER_TEMP_DATA] = (byte) 0x80;
+        registers[BME280_REGISTER_HUMIDITY_DATA] = (byte) 0x80;
+        converting = false;
+    }
+
+    /**
+     * @return the number of bus transactions the driver has made
+     */
+    public synchronized long getTransactions() {
+        return transactions;
+    }
+
+    @Override
+    public int getAddress() {
+        return address;
+    }
+
+    @Override
+    public synchronized int read(int register) throws IOException {
+        transaction();
+        return registers[checkRegister(register, 1)] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(int register, byte[] buffer, int offset, int size) throws IOException {
+        transaction();
+        System.arraycopy(registers, checkRegister(register, size), buffer, offset, size);
+        return size;
+    }
+
+    @Override
+    public synchronized void write(int register, byte value) throws IOException {
+        transaction();
+        switch (checkRegister(register, 1)) {
+            case BME280_REGISTER_SOFTRESET:
+                if ((value & 0xFF) == SOFT_RESET)
+                    reset();
+                break;
+            case BME280_REGISTER_CONTROL:
+                registers[register] = value;
+                int mode = value & 0x03;
+                if (mode == 1 || mode == 2) {
+                    converting = true;
+                    conversionEnd = System.nanoTime() + measurementNanos();
+                } else if (mode == 3) {
+                    nextNormalConversion = System.nanoTime() + measurementNanos();
+                }
+                break;
+            case BME280_REGISTER_CONTROL_HUM:
+            case BME280_REGISTER_CONFIG:
+                registers[register] = value;
+                break;
+            default:
+                // All other registers are read only
+                break;
+        }
+    }
+
+    private int checkRegister(int register, int size) throws IOException {
+        if (register < 0 || size < 0 || register + size > registers.length)
+            throw new IOException("Simulated BME280 has no register 0x" + Integer.toHexString(register));
+        return register;
+    }
+
+    private void transaction() {
+        transactions++;
+        if (latencyNanos > 0)
+            LockSupport.parkNanos(latencyNanos);
+        long now = System.nanoTime();
+        int mode = registers[BME280_REGISTER_CONTROL] & 0x03;
+        if (converting && now - conversionEnd >= 0) {
+            converting = false;
+            latch();
+            // Forced mode returns to sleep once the conversion is done
+            registers[BME280_REGISTER_CONTROL] &= (byte) 0xFC;
+        } else if (mode == 3 && now - nextNormalConversion >= 0) {
+            latch();
+            nextNormalConversion = now + measurementNanos() + standbyNanos();
+        }
+        registers[BME280_REGISTER_STATUS] = (byte) (converting ? STATUS_MEASURING : 0);
+    }
+
+    private static int samples(int osrs) {
+        return osrs == 0 ? 0 : 1 << Math.min(osrs - 1, 4);
+    }
+
+    private int temperatureOversampling() {
+        return (registers[BME280_REGISTER_CONTROL] & 0xFF) >> 5;
+    }
+
+    private int pressureOversampling() {
+        return (registers[BME280_REGISTER_CONTROL] >> 2) & 0x07;
+    }
+
+    private int humidityOversampling() {
+        return registers[BME280_REGISTER_CONTROL_HUM] & 0x07;
+    }
+
+    private long measurementNanos() {
+        long micros = 1250 + 2300 * samples(temperatureOversampling());
+        if (pressureOversampling() != 0)
+            micros += 2300 * samples(pressureOversampling()) + 575;
+        if (humidityOversampling() != 0)
+            micros += 2300 * samples(humidityOversampling()) + 575;
+        return TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
+    private long standbyNanos() {
+        return TimeUnit.MICROSECONDS.toNanos(STANDBY_MICROS[(registers[BME280_REGISTER_CONFIG] & 0xFF) >> 5]);
+    }
+
+    private void latch() {
+        long now = System.currentTimeMillis();
+        int adcT = rawTemperature(environment.temperature(now));
+        int tFine = compensateFineTemperature(calibration, adcT);
+        int adcP = pressureOversampling() == 0 ? 0x80000 : rawPressure(environment.pressure(now), tFine);
+        int adcH = humidityOversampling() == 0 ? 0x8000 : rawHumidity(environment.humidity(now), tFine);
+        if (temperatureOversampling() == 0)
+            adcT = 0x80000;
+        writeU20(BME280_REGISTER_PRESSURE_DATA, adcP);
+        writeU20(BME280_REGISTER_TEMP_DATA, adcT);
+        registers[BME280_REGISTER_HUMIDITY_DATA] = (byte) (adcH >> 8);
+        registers[BME280_REGISTER_HUMIDITY_DATA + 1] = (byte) adcH;
+    }
+
+    private void writeU20(int register, int value) {
+        registers[register] = (byte) (value >> 12);
+        registers[register + 1] = (byte) (value >> 4);
+        registers[register + 2] = (byte) (value << 4);
+    }
+
+    // The compensation formulas are monotonic over the range of realistic readings, so each raw
+    // value is found with a binary search over the ADC range.
+
+    private int rawTemperature(float temperature) {
+        int target = Math.round(temperature * 100);
+        int lo = 0, hi = 0xFFFFF;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compensateTemperature(compensateFineTemperature(calibration, mid)) < target)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private int rawPressure(float pressure, int tFine) {
+        long target = Math.round(pressure * 256.0);
+        int lo = 0, hi = 0xFFFFF;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compensatePressure(calibration, mid, tFine) > target)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private int rawHumidity(float humidity, int tFine) {
+        int target = Math.round(humidity * 1024);
+        int lo = 0, hi = 0xFFFF;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compensateHumidity(calibration, mid, tFine) < target)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+}
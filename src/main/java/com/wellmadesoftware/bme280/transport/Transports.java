@@ -0,0 +1,45 @@
+package com.wellmadesoftware.bme280.transport;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import static com.wellmadesoftware.bme280.BME280.BME280_I2CADDR;
+
+/**
+ * Creates the transport selected on the command line.
+ *
+ * The bme280.transport system property picks one of
+ * <ul>
+ *     <li>pi4j (the default) - the sensor on I2C bus 1</li>
+ *     <li>simulated - a {@link SimulatedBME280Transport}, with bme280.transport.latency.us per transaction</li>
+ *     <li>replay:&lt;file&gt; - a {@link ReplayTransport} looping over the given register dump</li>
+ * </ul>
+ * and setting bme280.transport.record to a file name records every sample with a {@link RecordingTransport}.
+ */
+public class Transports {
+
+    public static I2CTransport fromSystemProperties() throws I2CFactory.UnsupportedBusNumberException, IOException {
+        String spec = System.getProperty("bme280.transport", "pi4j");
+        I2CTransport transport;
+        if (spec.equals("pi4j")) {
+            transport = Pi4jTransport.open(I2CBus.BUS_1, BME280_I2CADDR);
+        } else if (spec.equals("simulated")) {
+            transport = new SimulatedBME280Transport(BME280_I2CADDR, SimulatedBME280Transport.DATASHEET_CALIBRATION,
+                    Environment.daily(21.0f, 3.0f, 101325.0f, 45.0f), Long.getLong("bme280.transport.latency.us", 0));
+        } else if (spec.startsWith("replay:")) {
+            transport = ReplayTransport.load(new File(spec.substring("replay:".length())), true);
+        } else {
+            throw new IllegalArgumentException("Unknown transport : " + spec);
+        }
+
+        String record = System.getProperty("bme280.transport.record");
+        if (record != null) {
+            transport = new RecordingTransport(transport, new FileWriter(record, true));
+        }
+        return transport;
+    }
+}
@@ -0,0 +1,37 @@
+package com.wellmadesoftware.bme280.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Replaces files whole, so a reader such as the web server sees either the old content or the new
+ * and never a half written file.
+ */
+public class AtomicFiles {
+
+    public interface Content {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Write the content to a temporary file next to the target, force it to disk and rename it over
+     * the target
+     */
+    public static void write(File target, Content content) throws IOException {
+        File temporary = new File(target.getParentFile(), "." + target.getName() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temporary)) {
+                content.write(out);
+                out.flush();
+                out.getFD().sync();
+            }
+            Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+    }
+}
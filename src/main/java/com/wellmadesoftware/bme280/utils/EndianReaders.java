@@ -1,26 +1,57 @@
 package com.wellmadesoftware.bme280.utils;
 
-import com.pi4j.io.i2c.I2CDevice;
+import com.wellmadesoftware.bme280.metrics.LatencyHistogram;
+import com.wellmadesoftware.bme280.metrics.Metrics;
+import com.wellmadesoftware.bme280.trace.I2CTrace;
+import com.wellmadesoftware.bme280.transport.I2CTransport;
+
+import java.io.IOException;
 
 public class EndianReaders {
 
+    private static final LatencyHistogram I2C_READS = Metrics.histogram("bme280_i2c_read_seconds",
+            "Time taken by I2C register and block reads");
+    private static final LatencyHistogram I2C_WRITES = Metrics.histogram("bme280_i2c_write_seconds",
+            "Time taken by I2C register writes");
+
     public enum Endianness {
         LITTLE_ENDIAN,
         BIG_ENDIAN
     }
     /**
-     * Read an unsigned byte from the I2C device
+     * Read a single register of the I2C device, passing on any failure. With verbose, the read goes
+     * to the {@link I2CTrace}.
      */
-    public static int readU8(I2CDevice device, int i2caddr, int reg, boolean verbose) throws Exception
+    public static int readRegister(I2CTransport device, int i2caddr, int reg, boolean verbose) throws IOException
     {
-        int result = 0;
+        long start = System.nanoTime();
+        int result;
         try
         {
             result = device.read(reg);
+        }
+        catch (IOException ex)
+        {
             if (verbose)
-                System.out.println("I2C: Device " + i2caddr + " (0x" + Integer.toHexString(i2caddr) +
-                        ") returned " + result + " (0x" + Integer.toHexString(result) +
-                        ") from reg " + reg + " (0x" + Integer.toHexString(reg) + ")");
+                I2CTrace.get().failed(I2CTrace.Kind.READ, i2caddr, reg, System.nanoTime() - start);
+            throw ex;
+        }
+        long latency = System.nanoTime() - start;
+        I2C_READS.record(latency);
+        if (verbose)
+            I2CTrace.get().read(i2caddr, reg, result, latency);
+        return result;
+    }
+
+    /**
+     * Read an unsigned byte from the I2C device. With verbose, the read goes to the {@link I2CTrace}.
+     */
+    public static int readU8(I2CTransport device, int i2caddr, int reg, boolean verbose) throws Exception
+    {
+        int result = 0;
+        try
+        {
+            result = readRegister(device, i2caddr, reg, verbose);
         }
         catch (Exception ex)
         { ex.printStackTrace(); }
@@ -28,42 +59,62 @@ public class EndianReaders {
     }
 
     /**
-     * Read a signed byte from the I2C device
+     * Read a signed byte from the I2C device. With verbose, the read goes to the {@link I2CTrace}.
      */
-    public static int readS8(I2CDevice device, int i2caddr, int reg, boolean verbose) throws Exception
+    public static int readS8(I2CTransport device, int i2caddr, int reg, boolean verbose) throws Exception
     {
         int result = 0;
         try
         {
-            result = device.read(reg); // & 0x7F;
+            result = readRegister(device, i2caddr, reg, verbose); // & 0x7F;
             if (result > 127)
                 result -= 256;
-            if (verbose)
-                System.out.println("I2C: Device " + i2caddr + " returned " + result + " from reg " + reg);
         }
         catch (Exception ex)
         { ex.printStackTrace(); }
         return result; // & 0xFF;
     }
 
-    public static int readU16LE(I2CDevice device, int i2caddr, int register, boolean verbose) throws Exception
+    /**
+     * Write a byte to a register of the I2C device. With verbose, the write goes to the {@link I2CTrace}.
+     */
+    public static void writeU8(I2CTransport device, int i2caddr, int reg, int value, boolean verbose) throws IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            device.write(reg, (byte) value);
+        }
+        catch (IOException ex)
+        {
+            if (verbose)
+                I2CTrace.get().failed(I2CTrace.Kind.WRITE, i2caddr, reg, System.nanoTime() - start);
+            throw ex;
+        }
+        long latency = System.nanoTime() - start;
+        I2C_WRITES.record(latency);
+        if (verbose)
+            I2CTrace.get().write(i2caddr, reg, value, latency);
+    }
+
+    public static int readU16LE(I2CTransport device, int i2caddr, int register, boolean verbose) throws Exception
     {
         return readU16(device, i2caddr, register, Endianness.LITTLE_ENDIAN, verbose);
     }
 
-    public static int readU16BE(I2CDevice device, int i2caddr, int register, boolean verbose) throws Exception
+    public static int readU16BE(I2CTransport device, int i2caddr, int register, boolean verbose) throws Exception
     {
         return readU16(device, i2caddr, register, Endianness.BIG_ENDIAN, verbose);
     }
 
-    public static int readU16(I2CDevice device, int i2caddr, int register, Endianness endianness, boolean verbose) throws Exception
+    public static int readU16(I2CTransport device, int i2caddr, int register, Endianness endianness, boolean verbose) throws Exception
     {
         int hi = readU8(device, i2caddr, register, verbose);
         int lo = readU8(device, i2caddr, register + 1, verbose);
         return ((endianness == Endianness.BIG_ENDIAN) ? (hi << 8) + lo : (lo << 8) + hi); // & 0xFFFF;
     }
 
-    public static int readS16(I2CDevice device, int i2caddr, int register, Endianness endianness, boolean verbose) throws Exception
+    public static int readS16(I2CTransport device, int i2caddr, int register, Endianness endianness, boolean verbose) throws Exception
     {
         int hi = 0, lo = 0;
         if (endianness == Endianness.BIG_ENDIAN)
@@ -79,15 +130,81 @@ public class EndianReaders {
         return ((hi << 8) + lo); // & 0xFFFF;
     }
 
-    public static int readS16LE(I2CDevice device, int i2caddr, int register, boolean verbose) throws Exception
+    public static int readS16LE(I2CTransport device, int i2caddr, int register, boolean verbose) throws Exception
     {
         return readS16(device, i2caddr, register, Endianness.LITTLE_ENDIAN, verbose);
     }
 
-    public static int readS16BE(I2CDevice device, int i2caddr, int register, boolean verbose) throws Exception
+    public static int readS16BE(I2CTransport device, int i2caddr, int register, boolean verbose) throws Exception
     {
         return readS16(device, i2caddr, register, Endianness.BIG_ENDIAN, verbose);
     }
 
+    /**
+     * Read a block of consecutive registers from the I2C device in a single transaction. With
+     * verbose, the read goes to the {@link I2CTrace}.
+     */
+    public static void readBlock(I2CTransport device, int i2caddr, int register, byte[] buffer, int offset, int size, boolean verbose) throws Exception
+    {
+        long start = System.nanoTime();
+        int read;
+        try
+        {
+            read = device.read(register, buffer, offset, size);
+        }
+        catch (IOException ex)
+        {
+            if (verbose)
+                I2CTrace.get().failed(I2CTrace.Kind.BLOCK, i2caddr, register, System.nanoTime() - start);
+            throw ex;
+        }
+        long latency = System.nanoTime() - start;
+        I2C_READS.record(latency);
+        if (read != size)
+        {
+            if (verbose)
+                I2CTrace.get().failed(I2CTrace.Kind.BLOCK, i2caddr, register, latency);
+            throw new IOException("I2C: Device " + i2caddr + " returned " + read + " of " + size +
+                    " bytes from reg " + register + " (0x" + Integer.toHexString(register) + ")");
+        }
+        if (verbose)
+            I2CTrace.get().block(i2caddr, register, buffer, offset, size, latency);
+    }
+
+    /**
+     * Decode an unsigned byte from a buffer filled by readBlock
+     */
+    public static int readU8(byte[] buffer, int offset)
+    {
+        return buffer[offset] & 0xFF;
+    }
+
+    /**
+     * Decode a signed byte from a buffer filled by readBlock
+     */
+    public static int readS8(byte[] buffer, int offset)
+    {
+        return buffer[offset];
+    }
+
+    public static int readU16LE(byte[] buffer, int offset)
+    {
+        return (readU8(buffer, offset + 1) << 8) + readU8(buffer, offset);
+    }
+
+    public static int readS16LE(byte[] buffer, int offset)
+    {
+        return (readS8(buffer, offset + 1) << 8) + readU8(buffer, offset);
+    }
+
+    public static int readU16BE(byte[] buffer, int offset)
+    {
+        return (readU8(buffer, offset) << 8) + readU8(buffer, offset + 1);
+    }
+
+    public static int readS16BE(byte[] buffer, int offset)
+    {
+        return (readS8(buffer, offset) << 8) + readU8(buffer, offset + 1);
+    }
 
 }
\ No newline at end of file
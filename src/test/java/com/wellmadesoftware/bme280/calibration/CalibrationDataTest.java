@@ -0,0 +1,83 @@
+package com.wellmadesoftware.bme280.calibration;
+
+import com.wellmadesoftware.bme280.transport.SimulatedBME280Transport;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that decode reads the register layout of the datasheet, including the split nibbles of H4
+ * and H5, and that encode is its inverse.
+ */
+public class CalibrationDataTest {
+
+    @Test
+    public void decodesRegisterLayout() {
+        byte[] bank1 = new byte[CalibrationData.BANK1_LENGTH];
+        byte[] bank2 = new byte[CalibrationData.BANK2_LENGTH];
+        // T1 = 0x6E70, unsigned, and T2 = -2, signed, little endian
+        bank1[0] = 0x70;
+        bank1[1] = 0x6E;
+        bank1[2] = (byte) 0xFE;
+        bank1[3] = (byte) 0xFF;
+        bank1[0xA1 - CalibrationData.BANK1_REGISTER] = (byte) 0x4B;
+        // H4 = 0xE4 << 4 | low nibble of 0xE5, H5 = 0xE6 << 4 | high nibble of 0xE5
+        bank2[0xE4 - CalibrationData.BANK2_REGISTER] = 0x14;
+        bank2[0xE5 - CalibrationData.BANK2_REGISTER] = (byte) 0xA3;
+        bank2[0xE6 - CalibrationData.BANK2_REGISTER] = (byte) 0xFF;
+        bank2[0xE7 - CalibrationData.BANK2_REGISTER] = (byte) 0xE2;
+
+        CalibrationData calibration = CalibrationData.decode(bank1, bank2);
+        assertEquals(0x6E70, calibration.dig_T1);
+        assertEquals(-2, calibration.dig_T2);
+        assertEquals(0x4B, calibration.dig_H1);
+        assertEquals(0x143, calibration.dig_H4);
+        assertEquals(-16 | 0x0A, calibration.dig_H5);
+        assertEquals(-30, calibration.dig_H6);
+    }
+
+    @Test
+    public void encodeInvertsDecode() {
+        assertRoundTrip(SimulatedBME280Transport.DATASHEET_CALIBRATION);
+        // Every field at the extreme of its range
+        assertRoundTrip(new CalibrationData(65535, -32768, 32767,
+                65535, -32768, 32767, -1, 1, -32768, 32767, -1, 0,
+                255, -32768, 255, -2048, 2047, -128));
+    }
+
+    @Test
+    public void decodeInvertsEncode() {
+        byte[] bank1 = new byte[CalibrationData.BANK1_LENGTH];
+        byte[] bank2 = new byte[CalibrationData.BANK2_LENGTH];
+        for ( int i = 0; i < bank1.length; i++ ) {
+            bank1[i] = (byte) (i * 37 + 11);
+        }
+        // 0xA0 is not calibration data and is left zero by encode
+        bank1[0xA0 - CalibrationData.BANK1_REGISTER] = 0;
+        for ( int i = 0; i < bank2.length; i++ ) {
+            bank2[i] = (byte) (i * 53 + 200);
+        }
+
+        byte[] encoded1 = new byte[CalibrationData.BANK1_LENGTH];
+        byte[] encoded2 = new byte[CalibrationData.BANK2_LENGTH];
+        CalibrationData.decode(bank1, bank2).encode(encoded1, encoded2);
+        assertArrayEquals(bank1, encoded1);
+        assertArrayEquals(bank2, encoded2);
+    }
+
+    private static void assertRoundTrip(CalibrationData expected) {
+        byte[] bank1 = new byte[CalibrationData.BANK1_LENGTH];
+        byte[] bank2 = new byte[CalibrationData.BANK2_LENGTH];
+        expected.encode(bank1, bank2);
+        CalibrationData actual = CalibrationData.decode(bank1, bank2);
+
+        assertArrayEquals(fields(expected), fields(actual));
+    }
+
+    private static int[] fields(CalibrationData c) {
+        return new int[] {c.dig_T1, c.dig_T2, c.dig_T3,
+                c.dig_P1, c.dig_P2, c.dig_P3, c.dig_P4, c.dig_P5, c.dig_P6, c.dig_P7, c.dig_P8, c.dig_P9,
+                c.dig_H1, c.dig_H2, c.dig_H3, c.dig_H4, c.dig_H5, c.dig_H6};
+    }
+}
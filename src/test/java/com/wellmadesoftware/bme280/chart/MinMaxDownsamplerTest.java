@@ -0,0 +1,107 @@
+package com.wellmadesoftware.bme280.chart;
+
+import org.jfree.data.time.TimeSeries;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the series holds exactly the extremes of each bucket, in time order, including the
+ * bucket still filling.
+ */
+public class MinMaxDownsamplerTest {
+
+    @Test
+    public void bucketsCoverRangeInHalfThePoints() {
+        assertEquals(10, MinMaxDownsampler.bucketMillis(1000, 200));
+        assertEquals(11, MinMaxDownsampler.bucketMillis(1001, 200));
+        assertEquals(1000, MinMaxDownsampler.bucketMillis(1000, 1));
+        assertEquals(1, MinMaxDownsampler.bucketMillis(0, 200));
+    }
+
+    @Test
+    public void keepsExtremesOfEveryBucket() {
+        TimeSeries series = new TimeSeries("test");
+        long bucket = 1000;
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(series, 0, bucket);
+        Random random = new Random(5);
+        int buckets = 100;
+        float[] mins = new float[buckets];
+        float[] maxes = new float[buckets];
+        Arrays.fill(mins, Float.POSITIVE_INFINITY);
+        Arrays.fill(maxes, Float.NEGATIVE_INFINITY);
+        for ( long t = 0; t < buckets * bucket; t += 1 + random.nextInt(20) ) {
+            float value = (float) Math.sin(t / 5000.0) * 10 + (random.nextInt(500) == 0 ? 50 : 0);
+            if ( random.nextInt(50) == 0 ) {
+                value = Float.NaN;
+            } else {
+                int b = (int) (t / bucket);
+                mins[b] = Math.min(mins[b], value);
+                maxes[b] = Math.max(maxes[b], value);
+            }
+            downsampler.add(t, value);
+        }
+        downsampler.finish();
+
+        assertTrue(series.getItemCount() <= 2 * buckets);
+        float[] seenMins = new float[buckets];
+        float[] seenMaxes = new float[buckets];
+        Arrays.fill(seenMins, Float.POSITIVE_INFINITY);
+        Arrays.fill(seenMaxes, Float.NEGATIVE_INFINITY);
+        long previous = Long.MIN_VALUE;
+        for ( int i = 0; i < series.getItemCount(); i++ ) {
+            long t = series.getTimePeriod(i).getFirstMillisecond();
+            assertTrue("out of order at " + t, t > previous);
+            previous = t;
+            float value = series.getValue(i).floatValue();
+            int b = (int) (t / bucket);
+            seenMins[b] = Math.min(seenMins[b], value);
+            seenMaxes[b] = Math.max(seenMaxes[b], value);
+        }
+        for ( int b = 0; b < buckets; b++ ) {
+            assertEquals("bucket " + b, mins[b], seenMins[b], 0f);
+            assertEquals("bucket " + b, maxes[b], seenMaxes[b], 0f);
+        }
+    }
+
+    @Test
+    public void openBucketIsRewrittenAsItFills() {
+        TimeSeries series = new TimeSeries("test");
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(series, 0, 100);
+        assertTrue(downsampler.add(0, 5));
+        assertEquals(1, series.getItemCount());
+
+        assertTrue(downsampler.add(10, 7));
+        assertFalse(downsampler.add(20, 6));
+        assertTrue(downsampler.add(30, 1));
+        // The low came after the high, so the points follow suit
+        assertEquals(2, series.getItemCount());
+        assertEquals(10, series.getTimePeriod(0).getFirstMillisecond());
+        assertEquals(7f, series.getValue(0).floatValue(), 0f);
+        assertEquals(30, series.getTimePeriod(1).getFirstMillisecond());
+        assertEquals(1f, series.getValue(1).floatValue(), 0f);
+
+        // The next bucket leaves the closed one alone
+        assertTrue(downsampler.add(150, 3));
+        assertTrue(downsampler.add(160, 9));
+        assertEquals(4, series.getItemCount());
+        assertEquals(1f, series.getValue(1).floatValue(), 0f);
+        assertEquals(9f, series.getValue(3).floatValue(), 0f);
+    }
+
+    @Test
+    public void visitTakesFirstValueAndSkipsNaN() {
+        TimeSeries series = new TimeSeries("test");
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(series, 0, 1000, 10);
+        assertTrue(downsampler.visit(0, new float[] {4, 8}));
+        assertTrue(downsampler.visit(1, new float[] {Float.NaN, 8}));
+        assertFalse(downsampler.add(2, Float.NaN));
+        assertEquals(1, downsampler.finish().getItemCount());
+        assertEquals(4f, series.getValue(0).floatValue(), 0f);
+    }
+}
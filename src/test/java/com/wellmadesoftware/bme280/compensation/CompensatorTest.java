@@ -0,0 +1,81 @@
+package com.wellmadesoftware.bme280.compensation;
+
+import com.wellmadesoftware.bme280.calibration.CalibrationData;
+import com.wellmadesoftware.bme280.transport.SimulatedBME280Transport;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks both compensators against the worked example of the datasheet and against each other over
+ * the range of raw readings a sensor can report.
+ */
+public class CompensatorTest {
+
+    private static final CalibrationData CALIBRATION = SimulatedBME280Transport.DATASHEET_CALIBRATION;
+
+    // The raw readings of the worked example
+    private static final int ADC_T = 519888;
+    private static final int ADC_P = 415148;
+
+    private final Compensator integer = CompensationMode.INTEGER.getCompensator();
+    private final Compensator floating = CompensationMode.FLOAT.getCompensator();
+
+    @Test
+    public void integerMatchesDatasheetExample() {
+        int tFine = IntegerCompensator.compensateFineTemperature(CALIBRATION, ADC_T);
+        assertEquals(128422, tFine);
+        assertEquals(2508, IntegerCompensator.compensateTemperature(tFine));
+        // 100653.25 Pa, the fixed point formula's answer to the example's 100653.27 Pa
+        assertEquals(25767233, IntegerCompensator.compensatePressure(CALIBRATION, ADC_P, tFine));
+
+        assertEquals(25.08f, integer.temperature(CALIBRATION, ADC_T), 0.0f);
+        assertEquals(100653.27f, integer.pressure(CALIBRATION, ADC_P, tFine), 0.05f);
+    }
+
+    @Test
+    public void floatMatchesDatasheetExample() {
+        int tFine = floating.fineTemperature(CALIBRATION, ADC_T);
+        assertEquals(128422, tFine, 1);
+        assertEquals(25.08f, floating.temperature(CALIBRATION, ADC_T), 0.01f);
+        assertEquals(100653.27f, floating.pressure(CALIBRATION, ADC_P, tFine), 0.5f);
+    }
+
+    @Test
+    public void temperatureAgreesAcrossRange() {
+        for ( int adcT = 0x40000; adcT < 0x80000; adcT += 97 ) {
+            assertEquals("adcT " + adcT, floating.temperature(CALIBRATION, adcT), integer.temperature(CALIBRATION, adcT), 0.01f);
+        }
+    }
+
+    @Test
+    public void pressureAgreesAcrossRange() {
+        for ( int adcT = 0x60000; adcT < 0x90000; adcT += 4099 ) {
+            int tFine = integer.fineTemperature(CALIBRATION, adcT);
+            for ( int adcP = 0x40000; adcP < 0x80000; adcP += 257 ) {
+                assertEquals("adcT " + adcT + " adcP " + adcP,
+                        floating.pressure(CALIBRATION, adcP, tFine), integer.pressure(CALIBRATION, adcP, tFine), 0.1f);
+            }
+        }
+    }
+
+    @Test
+    public void humidityAgreesAcrossRange() {
+        for ( int adcT = 0x60000; adcT < 0x90000; adcT += 4099 ) {
+            int tFine = integer.fineTemperature(CALIBRATION, adcT);
+            for ( int adcH = 0; adcH < 0x10000; adcH += 31 ) {
+                assertEquals("adcT " + adcT + " adcH " + adcH,
+                        floating.humidity(CALIBRATION, adcH, tFine), integer.humidity(CALIBRATION, adcH, tFine), 0.02f);
+            }
+        }
+    }
+
+    @Test
+    public void humidityIsClamped() {
+        int tFine = integer.fineTemperature(CALIBRATION, ADC_T);
+        for ( Compensator compensator : new Compensator[] {integer, floating} ) {
+            assertEquals(0.0f, compensator.humidity(CALIBRATION, 0, tFine), 0.0f);
+            assertEquals(100.0f, compensator.humidity(CALIBRATION, 0xFFFF, tFine), 0.0f);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.model.Channel;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static com.wellmadesoftware.bme280.data.repository.InMemoryMeasurementRepository.measurement;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that a partition grows its mapping, searches and removes rows, and reopens with the row
+ * count of its header rather than the size of its files.
+ */
+public class ColumnPartitionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void growsPastInitialMappingAndReopens() throws Exception {
+        File directory = folder.newFolder("1970-01-01");
+        ColumnPartition partition = new ColumnPartition(directory, 0);
+        for ( int i = 0; i < 5000; i++ ) {
+            partition.append(measurement(i * 10L, i));
+        }
+        assertEquals(5000, partition.size());
+        partition.close();
+
+        partition = new ColumnPartition(directory, 0);
+        assertEquals(5000, partition.size());
+        assertEquals(49990, partition.timestamp(4999));
+        assertEquals(4999f, partition.value(Channel.TEMPERATURE, 4999), 0f);
+        assertEquals(100000f + 1234f, partition.read(1234).getPressure(), 0f);
+
+        // Rows added after reopening follow on from the stored ones
+        partition.append(measurement(50000, -1));
+        assertEquals(5001, partition.size());
+        assertEquals(5000, partition.lowerBound(50000));
+        partition.close();
+    }
+
+    @Test
+    public void lowerBoundFindsFirstOfEqualTimestamps() throws Exception {
+        ColumnPartition partition = new ColumnPartition(folder.newFolder("day"), 0);
+        long[] timestamps = {100, 200, 200, 200, 300};
+        for ( long timestamp : timestamps ) {
+            partition.append(measurement(timestamp, 0));
+        }
+        assertEquals(0, partition.lowerBound(Long.MIN_VALUE));
+        assertEquals(0, partition.lowerBound(100));
+        assertEquals(1, partition.lowerBound(101));
+        assertEquals(1, partition.lowerBound(200));
+        assertEquals(4, partition.lowerBound(201));
+        assertEquals(5, partition.lowerBound(301));
+        partition.close();
+    }
+
+    @Test
+    public void removeShiftsLaterRowsDown() throws Exception {
+        File directory = folder.newFolder("day");
+        ColumnPartition partition = new ColumnPartition(directory, 0);
+        for ( int i = 0; i < 10; i++ ) {
+            partition.append(measurement(i, i));
+        }
+        partition.remove(2, 5);
+        assertEquals(5, partition.size());
+        long[] expected = {0, 1, 7, 8, 9};
+        for ( int row = 0; row < expected.length; row++ ) {
+            assertEquals(expected[row], partition.timestamp(row));
+            assertEquals(expected[row], partition.value(Channel.TEMPERATURE, row), 0f);
+        }
+        partition.close();
+
+        // The header, not the length of the files, says where the rows end
+        partition = new ColumnPartition(directory, 0);
+        assertEquals(5, partition.size());
+        assertEquals(9, partition.timestamp(4));
+        partition.close();
+    }
+}
@@ -0,0 +1,160 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.exception.DBException;
+import com.wellmadesoftware.bme280.data.model.Channel;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.wellmadesoftware.bme280.data.repository.InMemoryMeasurementRepository.measurement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks ranges that cross the UTC day partitions, whole-day deletes, more days than are kept
+ * mapped, and that everything survives a reopen.
+ */
+public class ColumnarMeasurementRepositoryTest {
+
+    private static final long DAY = 24 * 3600 * 1000L;
+    private static final long HOUR = 3600 * 1000L;
+    // Midnight UTC, 2017-06-12
+    private static final long MIDNIGHT = 17329 * DAY;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private ColumnarMeasurementRepository repository;
+
+    @Before
+    public void open() {
+        directory = new File(folder.getRoot(), "measurements.columns");
+        repository = new ColumnarMeasurementRepository(directory.getPath());
+    }
+
+    @After
+    public void close() {
+        repository.close();
+    }
+
+    @Test
+    public void rangesCrossMidnight() throws Exception {
+        // Hourly from 22:00 to 02:00, the last row of the first day just before midnight
+        long[] timestamps = {MIDNIGHT - 2 * HOUR, MIDNIGHT - HOUR, MIDNIGHT - 1, MIDNIGHT, MIDNIGHT + HOUR, MIDNIGHT + 2 * HOUR};
+        for ( long timestamp : timestamps ) {
+            repository.create(measurement(timestamp, timestamp / (float) HOUR));
+        }
+        assertTrue(new File(directory, "2017-06-11").isDirectory());
+        assertTrue(new File(directory, "2017-06-12").isDirectory());
+
+        assertEquals(Arrays.asList(MIDNIGHT - HOUR, MIDNIGHT - 1), timestamps(repository.list(MIDNIGHT - HOUR, MIDNIGHT)));
+        assertEquals(Arrays.asList(MIDNIGHT - 1, MIDNIGHT, MIDNIGHT + HOUR),
+                timestamps(repository.list(MIDNIGHT - 1, MIDNIGHT + 2 * HOUR)));
+
+        List<Long> streamed = new ArrayList<>();
+        List<Float> pressures = new ArrayList<>();
+        repository.stream(MeasurementQuery.range(MIDNIGHT - 2 * HOUR, MIDNIGHT + 3 * HOUR).channels(Channel.PRESSURE),
+                (timestamp, values) -> {
+                    streamed.add(timestamp);
+                    pressures.add(values[0]);
+                    return true;
+                });
+        assertEquals(timestamps.length, streamed.size());
+        assertEquals(100000 + (MIDNIGHT + 2 * HOUR) / (float) HOUR, pressures.get(5), 0.01f);
+
+        // With a step of a day, the first row of each day
+        streamed.clear();
+        repository.stream(MeasurementQuery.range(MIDNIGHT - DAY, MIDNIGHT + DAY).step(DAY),
+                (timestamp, values) -> streamed.add(timestamp));
+        assertEquals(Arrays.asList(MIDNIGHT - 2 * HOUR, MIDNIGHT), streamed);
+    }
+
+    @Test
+    public void rejectsOlderThanNewestOfItsDay() throws Exception {
+        repository.create(measurement(MIDNIGHT + HOUR, 1));
+        try {
+            repository.create(measurement(MIDNIGHT + HOUR - 1, 2));
+            fail("Accepted a measurement older than the newest of its day");
+        } catch (DBException ex) {
+            // Expected
+        }
+        // Another day is a partition of its own
+        repository.create(measurement(MIDNIGHT - HOUR, 3));
+        assertEquals(2, repository.list(MIDNIGHT - DAY, MIDNIGHT + DAY).size());
+    }
+
+    @Test
+    public void deleteRangeDropsWholeDays() throws Exception {
+        for ( long hour = -24; hour < 24; hour++ ) {
+            repository.create(measurement(MIDNIGHT + hour * HOUR, hour));
+        }
+        // The whole first day and the first two hours of the second
+        assertEquals(26, repository.deleteRange(Long.MIN_VALUE, MIDNIGHT + 2 * HOUR, 100));
+        assertFalse(new File(directory, "2017-06-11").exists());
+        List<Measurement> left = repository.list(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(22, left.size());
+        assertEquals(MIDNIGHT + 2 * HOUR, left.get(0).getTimestamp());
+
+        // The limit applies across partitions
+        assertEquals(5, repository.deleteRange(Long.MIN_VALUE, Long.MAX_VALUE, 5));
+        assertEquals(MIDNIGHT + 7 * HOUR, repository.list(Long.MIN_VALUE, Long.MAX_VALUE).get(0).getTimestamp());
+    }
+
+    @Test
+    public void reopenKeepsEveryDay() throws Exception {
+        // More days than are kept mapped at once
+        for ( long day = 0; day < 40; day++ ) {
+            for ( int i = 0; i < 3; i++ ) {
+                repository.create(measurement(MIDNIGHT + day * DAY + i * HOUR, day));
+            }
+        }
+        Measurement updated = repository.read(ColumnarMeasurementRepository.id(MIDNIGHT + HOUR));
+        updated.setTemperature(-40);
+        repository.update(updated);
+        repository.delete(repository.read(ColumnarMeasurementRepository.id(MIDNIGHT + 2 * HOUR)));
+        repository.close();
+
+        repository = new ColumnarMeasurementRepository(directory.getPath());
+        List<Measurement> all = repository.list(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(119, all.size());
+        assertEquals(-40f, repository.read(ColumnarMeasurementRepository.id(MIDNIGHT + HOUR)).getTemperature(), 0f);
+        assertNull(repository.read(ColumnarMeasurementRepository.id(MIDNIGHT + 2 * HOUR)));
+        assertEquals(39f, all.get(118).getTemperature(), 0f);
+
+        // Appends carry on after the stored rows, and older ones are still rejected
+        repository.create(measurement(MIDNIGHT + 39 * DAY + 3 * HOUR, 0));
+        try {
+            repository.create(measurement(MIDNIGHT + 39 * DAY, 0));
+            fail("Accepted a measurement older than the newest stored before reopening");
+        } catch (DBException ex) {
+            // Expected
+        }
+        assertEquals(4, repository.list(MIDNIGHT + 39 * DAY, MIDNIGHT + 40 * DAY).size());
+    }
+
+    @Test(expected = DBException.class)
+    public void closedRepositoryRejectsWrites() throws Exception {
+        repository.close();
+        repository.create(measurement(MIDNIGHT, 0));
+    }
+
+    private static List<Long> timestamps(List<Measurement> measurements) {
+        List<Long> timestamps = new ArrayList<>();
+        for ( Measurement measurement : measurements ) {
+            timestamps.add(measurement.getTimestamp());
+        }
+        return timestamps;
+    }
+}
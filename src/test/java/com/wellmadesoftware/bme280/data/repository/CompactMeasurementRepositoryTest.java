@@ -0,0 +1,151 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.exception.DBException;
+import com.wellmadesoftware.bme280.data.model.CompactMeasurement;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.wellmadesoftware.bme280.data.repository.InMemoryMeasurementRepository.measurement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the time ordering rules of the compact store, that they hold across a reopen, and that ids
+ * handed out by create find their rows again.
+ */
+public class CompactMeasurementRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String path;
+    private CompactMeasurementRepository repository;
+
+    @Before
+    public void open() throws Exception {
+        path = new File(folder.getRoot(), "measurements-compact.db").getPath();
+        repository = new CompactMeasurementRepository(path);
+    }
+
+    @After
+    public void close() {
+        repository.close();
+    }
+
+    @Test
+    public void createdIdsReadBackFixedPoint() throws Exception {
+        Measurement created = repository.create(measurement(60000, 21.37f));
+        assertEquals(CompactMeasurement.key(60000, 0), CompactMeasurement.key(created.getId()));
+
+        Measurement read = repository.read(created.getId());
+        assertEquals(60000, read.getTimestamp());
+        assertEquals(21.37f, read.getTemperature(), 0.005f);
+        assertEquals(100021.37f, read.getPressure(), 0.005f);
+        assertEquals(42.137f, read.getHumidity(), 0.005f);
+    }
+
+    @Test
+    public void rejectsOlderThanLast() throws Exception {
+        repository.create(measurement(2000, 1));
+        try {
+            repository.create(measurement(1999, 2));
+            fail("Accepted a measurement older than the last one stored");
+        } catch (DBException ex) {
+            // Expected
+        }
+        // createAll leaves the older ones out and stores the rest
+        List<Measurement> created = repository.createAll(Arrays.asList(
+                measurement(1000, 3), measurement(3000, 4), measurement(2500, 5), measurement(4000, 6)));
+        assertEquals(Arrays.asList(3000L, 4000L), timestamps(created));
+        assertEquals(Arrays.asList(2000L, 3000L, 4000L), timestamps(repository.list(0, Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void sharesMillisecondUpToSequence() throws Exception {
+        int sequences = 1 << CompactMeasurement.SEQUENCE_BITS;
+        List<Measurement> batch = new ArrayList<>();
+        for ( int i = 0; i < sequences; i++ ) {
+            batch.add(measurement(5000, i / 10f));
+        }
+        assertEquals(sequences, repository.createAll(batch).size());
+        try {
+            repository.create(measurement(5000, 0));
+            fail("Accepted more measurements in a millisecond than the sequence holds");
+        } catch (DBException ex) {
+            // Expected
+        }
+        // The next millisecond starts a new sequence
+        repository.create(measurement(5001, 0));
+        List<Measurement> stored = repository.list(5000, 5002);
+        assertEquals(sequences + 1, stored.size());
+        assertEquals(0.1f, stored.get(1).getTemperature(), 0.005f);
+    }
+
+    @Test
+    public void reopenResumesFromLastKey() throws Exception {
+        repository.create(measurement(1000, 1));
+        repository.create(measurement(1000, 2));
+        repository.close();
+
+        repository = new CompactMeasurementRepository(path);
+        try {
+            repository.create(measurement(999, 3));
+            fail("Accepted a measurement older than the last one stored before reopening");
+        } catch (DBException ex) {
+            // Expected
+        }
+        Measurement third = repository.create(measurement(1000, 3));
+        assertEquals(CompactMeasurement.key(1000, 2), CompactMeasurement.key(third.getId()));
+        assertEquals(3, repository.list(0, 2000).size());
+    }
+
+    @Test
+    public void updatesAndDeletesById() throws Exception {
+        Measurement created = repository.create(measurement(1000, 1));
+        repository.create(measurement(2000, 2));
+
+        created.setTemperature(-5.5f);
+        repository.update(created);
+        assertEquals(-5.5f, repository.read(created.getId()).getTemperature(), 0.005f);
+
+        repository.delete(created);
+        assertNull(repository.read(created.getId()));
+        assertEquals(Arrays.asList(2000L), timestamps(repository.list(0, Long.MAX_VALUE)));
+
+        try {
+            repository.update(measurement(2000, 2));
+            fail("Updated by an id the repository did not issue");
+        } catch (DBException ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void deletesRangeOldestFirst() throws Exception {
+        for ( long t = 0; t < 10; t++ ) {
+            repository.create(measurement(t * 1000, t));
+        }
+        assertEquals(3, repository.deleteRange(2000, 8000, 3));
+        assertEquals(Arrays.asList(0L, 1000L, 5000L, 6000L, 7000L, 8000L, 9000L),
+                timestamps(repository.list(0, Long.MAX_VALUE)));
+        assertEquals(3, repository.deleteRange(2000, 8000, 100));
+    }
+
+    private static List<Long> timestamps(List<Measurement> measurements) {
+        List<Long> timestamps = new ArrayList<>();
+        for ( Measurement measurement : measurements ) {
+            timestamps.add(measurement.getTimestamp());
+        }
+        return timestamps;
+    }
+}
@@ -0,0 +1,144 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.exception.DBException;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A repository backed by a list, for testing the repositories that wrap another one. Writes can be
+ * made to fail, or to wait on a latch so a test can look at the wrapper while a write is under way.
+ */
+class InMemoryMeasurementRepository implements MeasurementRepository {
+
+    private final List<Measurement> measurements = new ArrayList<>();
+    volatile boolean failing = false;
+    volatile CountDownLatch writing = null;
+    volatile CountDownLatch gate = null;
+    volatile int batches = 0;
+
+    synchronized int size() {
+        return measurements.size();
+    }
+
+    synchronized List<Measurement> all() {
+        return new ArrayList<>(measurements);
+    }
+
+    @Override
+    public Measurement create(Measurement measurement) throws DBException {
+        List<Measurement> created = createAll(Collections.singletonList(measurement));
+        return created.get(0);
+    }
+
+    @Override
+    public List<Measurement> createAll(Collection<Measurement> batch) throws DBException {
+        if ( writing != null ) {
+            writing.countDown();
+        }
+        if ( gate != null ) {
+            try {
+                gate.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new DBException(ex);
+            }
+        }
+        if ( failing ) {
+            throw new DBException("Store is down");
+        }
+        List<Measurement> created = new ArrayList<>();
+        for ( Measurement measurement : batch ) {
+            created.add(new Measurement(measurement));
+        }
+        synchronized (this) {
+            measurements.addAll(created);
+            measurements.sort(Comparator.comparingLong(Measurement::getTimestamp));
+            batches ++;
+        }
+        return created;
+    }
+
+    @Override
+    public synchronized Measurement read(UUID id) {
+        for ( Measurement measurement : measurements ) {
+            if ( measurement.getId().equals(id) ) {
+                return measurement;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized Measurement update(Measurement measurement) {
+        for ( int i = 0; i < measurements.size(); i++ ) {
+            if ( measurements.get(i).getId().equals(measurement.getId()) ) {
+                measurements.set(i, measurement);
+            }
+        }
+        return measurement;
+    }
+
+    @Override
+    public synchronized void delete(Measurement measurement) {
+        measurements.removeIf(m -> m.getId().equals(measurement.getId()));
+    }
+
+    @Override
+    public synchronized List<Measurement> list(long start, long end) {
+        List<Measurement> results = new ArrayList<>();
+        for ( Measurement measurement : measurements ) {
+            if ( measurement.getTimestamp() >= start && measurement.getTimestamp() < end ) {
+                results.add(measurement);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void stream(MeasurementQuery query, MeasurementVisitor visitor) {
+        MeasurementQuery.Projection projection = query.project(visitor);
+        for ( Measurement measurement : list(query.getStart(), query.getEnd()) ) {
+            if ( !projection.offer(measurement) ) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public synchronized int deleteRange(long start, long end, int limit) {
+        int deleted = 0;
+        for ( Iterator<Measurement> it = measurements.iterator(); it.hasNext() && deleted < limit; ) {
+            Measurement measurement = it.next();
+            if ( measurement.getTimestamp() >= start && measurement.getTimestamp() < end ) {
+                it.remove();
+                deleted ++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public void compact() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    static Measurement measurement(long timestamp, float temperature) {
+        Measurement measurement = new Measurement();
+        measurement.setTimestamp(timestamp);
+        measurement.setTemperature(temperature);
+        measurement.setPressure(100000 + temperature);
+        measurement.setHumidity(40 + temperature / 10);
+        return measurement;
+    }
+}
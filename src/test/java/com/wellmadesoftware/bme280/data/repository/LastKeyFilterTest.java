@@ -0,0 +1,65 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import org.dizitart.no2.Document;
+import org.dizitart.no2.IndexOptions;
+import org.dizitart.no2.IndexType;
+import org.dizitart.no2.Nitrite;
+import org.dizitart.no2.NitriteCollection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.dizitart.no2.filters.Filters.eq;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that the filter finds the highest key however the documents were inserted.
+ */
+public class LastKeyFilterTest {
+
+    private Nitrite db;
+    private NitriteCollection collection;
+
+    @Before
+    public void open() {
+        db = Nitrite.builder().openOrCreate();
+        collection = db.getCollection("rows");
+        collection.createIndex("timestamp", IndexOptions.indexOptions(IndexType.Unique));
+    }
+
+    @After
+    public void close() {
+        db.close();
+    }
+
+    @Test
+    public void emptyCollectionHasNoLast() {
+        assertNull(collection.find(new LastKeyFilter("timestamp")).firstOrDefault());
+    }
+
+    @Test
+    public void findsHighestKey() {
+        List<Long> timestamps = new ArrayList<>();
+        for ( long t = -50; t < 1000; t++ ) {
+            timestamps.add(t * 60000);
+        }
+        Collections.shuffle(timestamps, new Random(7));
+        for ( long timestamp : timestamps ) {
+            collection.insert(Document.createDocument("timestamp", timestamp));
+        }
+        assertEquals(999 * 60000L, last());
+
+        collection.remove(eq("timestamp", 999 * 60000L));
+        assertEquals(998 * 60000L, last());
+    }
+
+    private long last() {
+        return collection.find(new LastKeyFilter("timestamp")).firstOrDefault().get("timestamp", Long.class);
+    }
+}
@@ -0,0 +1,131 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.model.AveragingMeasurement;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.wellmadesoftware.bme280.data.repository.InMemoryMeasurementRepository.measurement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that rows are averaged per period, written out and announced as their periods end, served
+ * for long ranges, and rebuilt from the raw measurements after a restart.
+ */
+public class RollupMeasurementRepositoryTest {
+
+    private static final long MINUTE = RollupTier.MINUTE.getPeriodMillis();
+    private static final long HOUR = RollupTier.HOUR.getPeriodMillis();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final InMemoryMeasurementRepository store = new InMemoryMeasurementRepository();
+    // Recent enough for catch-up, at the start of an hour
+    private final long base = RollupTier.HOUR.periodStart(System.currentTimeMillis() - 3 * HOUR);
+    private String path;
+    private RollupMeasurementRepository repository;
+
+    @Before
+    public void open() {
+        path = new File(folder.getRoot(), "rollups.db").getPath();
+        repository = new RollupMeasurementRepository(store, path);
+    }
+
+    @After
+    public void close() {
+        repository.close();
+    }
+
+    @Test
+    public void averagesEachMinuteAndAnnouncesClosedRows() throws Exception {
+        List<String> rolled = new ArrayList<>();
+        repository.addListener((tier, row) -> rolled.add(tier + "@" + (row.getTimestamp() - base) / MINUTE + "=" + row.getCount()));
+        // Six a minute for three minutes, the temperature counting up from 0
+        for ( int i = 0; i < 18; i++ ) {
+            repository.create(measurement(base + i * 10000, i));
+        }
+        assertEquals(Arrays.asList("MINUTE@0=6", "MINUTE@1=6"), rolled);
+
+        List<AveragingMeasurement> minutes = repository.list(RollupTier.MINUTE, base, base + 3 * MINUTE);
+        assertEquals(3, minutes.size());
+        assertEquals(2.5f, minutes.get(0).getTemperature(), 1e-4f);
+        assertEquals(0f, minutes.get(0).getMinTemperature(), 0f);
+        assertEquals(5f, minutes.get(0).getMaxTemperature(), 0f);
+        // The open row is served too
+        assertEquals(14.5f, minutes.get(2).getTemperature(), 1e-4f);
+
+        List<AveragingMeasurement> hours = repository.list(RollupTier.HOUR, base, base + HOUR);
+        assertEquals(1, hours.size());
+        assertEquals(18, hours.get(0).getCount());
+        assertEquals(8.5f, hours.get(0).getTemperature(), 1e-4f);
+    }
+
+    @Test
+    public void createReturnsWhatTheStoreCreated() throws Exception {
+        Measurement measurement = measurement(base, 1);
+        Measurement created = repository.create(measurement);
+        assertNotSame(measurement, created);
+        assertEquals(store.all().get(0).getId(), created.getId());
+    }
+
+    @Test
+    public void longRangesReadCoarserTier() throws Exception {
+        for ( int i = 0; i < 180; i++ ) {
+            repository.create(measurement(base + i * MINUTE, i % 60));
+        }
+        // Two days is more minutes than a chart needs, so it comes from the hourly rows
+        List<Measurement> rows = repository.list(base - 2 * 24 * HOUR + 3 * HOUR, base + 3 * HOUR);
+        assertEquals(3, rows.size());
+        for ( Measurement row : rows ) {
+            assertTrue(row instanceof AveragingMeasurement);
+            assertEquals(29.5f, row.getTemperature(), 1e-4f);
+        }
+        List<Long> streamed = new ArrayList<>();
+        repository.stream(MeasurementQuery.range(base - 2 * 24 * HOUR + 3 * HOUR, base + 3 * HOUR),
+                (timestamp, values) -> streamed.add(timestamp));
+        assertEquals(Arrays.asList(base, base + HOUR, base + 2 * HOUR), streamed);
+
+        // Short ranges are the raw measurements
+        assertEquals(60, repository.list(base, base + HOUR).size());
+    }
+
+    @Test
+    public void catchUpRebuildsFromRawMeasurements() throws Exception {
+        // Written behind the rollups' back, as if they were lost in a crash
+        for ( int i = 0; i < 120; i++ ) {
+            store.create(measurement(base + i * MINUTE, 2));
+        }
+        repository.catchUp();
+        assertEquals(120, repository.list(RollupTier.MINUTE, base, base + 2 * HOUR).size());
+        assertEquals(60, repository.list(RollupTier.HOUR, base, base + HOUR).get(0).getCount());
+
+        repository.close();
+        repository = new RollupMeasurementRepository(store, path);
+        repository.catchUp();
+        List<AveragingMeasurement> hours = repository.list(RollupTier.HOUR, base, base + 2 * HOUR);
+        assertEquals(2, hours.size());
+        assertEquals(60, hours.get(1).getCount());
+    }
+
+    @Test
+    public void deleteRangeKeepsOpenRow() throws Exception {
+        for ( int i = 0; i < 5; i++ ) {
+            repository.create(measurement(base + i * MINUTE, i));
+        }
+        assertEquals(4, repository.deleteRange(RollupTier.MINUTE, Long.MIN_VALUE, Long.MAX_VALUE, 100));
+        List<AveragingMeasurement> minutes = repository.list(RollupTier.MINUTE, base, base + HOUR);
+        assertEquals(1, minutes.size());
+        assertEquals(base + 4 * MINUTE, minutes.get(0).getTimestamp());
+    }
+}
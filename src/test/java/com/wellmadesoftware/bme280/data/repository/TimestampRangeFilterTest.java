@@ -0,0 +1,110 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import org.dizitart.no2.Document;
+import org.dizitart.no2.Nitrite;
+import org.dizitart.no2.NitriteCollection;
+import org.dizitart.no2.objects.ObjectRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the range and limit of the filter, with the timestamp index walked and without an index.
+ */
+public class TimestampRangeFilterTest {
+
+    // Inserted out of order, with 3000 twice
+    private static final long[] TIMESTAMPS = {5000, 1000, 3000, 9000, 3000, 0, 7000, 2000, 8000, 4000, 6000};
+
+    private Nitrite db;
+
+    @Before
+    public void open() {
+        db = Nitrite.builder().openOrCreate();
+    }
+
+    @After
+    public void close() {
+        db.close();
+    }
+
+    @Test
+    public void indexedRangeIsHalfOpenAndOrdered() {
+        ObjectRepository<Measurement> measurements = indexed();
+        assertEquals(Arrays.asList(3000L, 3000L, 4000L, 5000L, 6000L),
+                timestamps(measurements, new TimestampRangeFilter(2500, 7000)));
+        assertEquals(Arrays.asList(0L, 1000L), timestamps(measurements, new TimestampRangeFilter(Long.MIN_VALUE, 2000)));
+        assertEquals(Collections.emptyList(), timestamps(measurements, new TimestampRangeFilter(9001, Long.MAX_VALUE)));
+        assertEquals(Collections.emptyList(), timestamps(measurements, new TimestampRangeFilter(4000, 4000)));
+    }
+
+    @Test
+    public void indexedLimitKeepsOldest() {
+        ObjectRepository<Measurement> measurements = indexed();
+        assertEquals(Arrays.asList(2000L, 3000L, 3000L),
+                timestamps(measurements, new TimestampRangeFilter("timestamp", 1500, Long.MAX_VALUE, 3)));
+        // The limit can fall between documents sharing a timestamp
+        assertEquals(Arrays.asList(2000L, 3000L),
+                timestamps(measurements, new TimestampRangeFilter("timestamp", 1500, Long.MAX_VALUE, 2)));
+    }
+
+    @Test
+    public void unindexedFieldMatchesIndexed() {
+        NitriteCollection collection = db.getCollection("unindexed");
+        for ( long timestamp : TIMESTAMPS ) {
+            collection.insert(Document.createDocument("at", timestamp));
+        }
+        List<Long> timestamps = new ArrayList<>();
+        for ( Document document : collection.find(new TimestampRangeFilter("at", 2500, 7000, 4)) ) {
+            timestamps.add(document.get("at", Long.class));
+        }
+        Collections.sort(timestamps);
+        assertEquals(Arrays.asList(3000L, 3000L, 4000L, 5000L), timestamps);
+    }
+
+    @Test
+    public void walksLargeIndexInOrder() {
+        ObjectRepository<Measurement> measurements = db.getRepository(Measurement.class);
+        List<Long> expected = new ArrayList<>();
+        for ( long t = 0; t < 2000; t++ ) {
+            expected.add(t * 10);
+        }
+        List<Long> shuffled = new ArrayList<>(expected);
+        Collections.shuffle(shuffled, new Random(1));
+        for ( long timestamp : shuffled ) {
+            measurements.insert(measurement(timestamp));
+        }
+        assertEquals(expected.subList(500, 1500), timestamps(measurements, new TimestampRangeFilter(5000, 15000)));
+    }
+
+    private ObjectRepository<Measurement> indexed() {
+        ObjectRepository<Measurement> measurements = db.getRepository(Measurement.class);
+        for ( long timestamp : TIMESTAMPS ) {
+            measurements.insert(measurement(timestamp));
+        }
+        return measurements;
+    }
+
+    private static Measurement measurement(long timestamp) {
+        Measurement measurement = new Measurement();
+        measurement.setTimestamp(timestamp);
+        return measurement;
+    }
+
+    private static List<Long> timestamps(ObjectRepository<Measurement> measurements, TimestampRangeFilter filter) {
+        List<Long> timestamps = new ArrayList<>();
+        for ( Measurement measurement : measurements.find(filter) ) {
+            timestamps.add(measurement.getTimestamp());
+        }
+        return timestamps;
+    }
+}
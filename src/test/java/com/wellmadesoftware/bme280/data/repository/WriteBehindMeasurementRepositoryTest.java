@@ -0,0 +1,131 @@
+package com.wellmadesoftware.bme280.data.repository;
+
+import com.wellmadesoftware.bme280.data.exception.DBException;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.wellmadesoftware.bme280.data.repository.InMemoryMeasurementRepository.measurement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks when buffered measurements reach the store, that they can be read on the way, and that a
+ * failing store costs the oldest of them rather than unbounded memory.
+ */
+public class WriteBehindMeasurementRepositoryTest {
+
+    private final InMemoryMeasurementRepository store = new InMemoryMeasurementRepository();
+    private WriteBehindMeasurementRepository repository;
+
+    @After
+    public void close() {
+        store.failing = false;
+        store.gate = null;
+        repository.close();
+    }
+
+    @Test
+    public void writesFullBatchesInOneCall() throws Exception {
+        repository = new WriteBehindMeasurementRepository(store, 3, 60000);
+        Measurement first = repository.create(measurement(1000, 1));
+        repository.create(measurement(2000, 2));
+        assertEquals(0, store.size());
+
+        // Buffered measurements are visible before they are written
+        assertSame(first, repository.read(first.getId()));
+        assertEquals(2, repository.list(0, 10000).size());
+
+        repository.create(measurement(3000, 3));
+        assertEquals(3, store.size());
+        assertEquals(1, store.batches);
+    }
+
+    @Test
+    public void flushesOldMeasurementsOnTimer() throws Exception {
+        repository = new WriteBehindMeasurementRepository(store, 100, 50);
+        repository.create(measurement(1000, 1));
+        long deadline = System.currentTimeMillis() + 5000;
+        while ( store.size() == 0 && System.currentTimeMillis() < deadline ) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void closeWritesWhatIsBuffered() throws Exception {
+        repository = new WriteBehindMeasurementRepository(store, 100, 60000);
+        repository.create(measurement(1000, 1));
+        repository.close();
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void failingStoreKeepsNewestUpToBound() throws Exception {
+        repository = new WriteBehindMeasurementRepository(store, 2, 60000, 5);
+        store.failing = true;
+        for ( int i = 0; i < 12; i++ ) {
+            try {
+                repository.create(measurement(i * 1000, i));
+            } catch (DBException ex) {
+                // Every full batch fails to write
+            }
+        }
+        List<Measurement> buffered = repository.list(0, Long.MAX_VALUE);
+        assertEquals(5, buffered.size());
+
+        store.failing = false;
+        repository.flush();
+        List<Long> timestamps = new ArrayList<>();
+        for ( Measurement measurement : store.all() ) {
+            timestamps.add(measurement.getTimestamp());
+        }
+        // The oldest were dropped, the rest kept in order
+        assertEquals(buffered.size(), timestamps.size());
+        assertEquals(Long.valueOf(11000), timestamps.get(timestamps.size() - 1));
+        for ( int i = 1; i < timestamps.size(); i++ ) {
+            assertEquals(timestamps.get(i - 1) + 1000, (long) timestamps.get(i));
+        }
+    }
+
+    @Test
+    public void batchBeingWrittenIsStillReadable() throws Exception {
+        repository = new WriteBehindMeasurementRepository(store, 100, 60000);
+        Measurement measurement = repository.create(measurement(1000, 1));
+
+        store.writing = new CountDownLatch(1);
+        store.gate = new CountDownLatch(1);
+        AtomicReference<DBException> failure = new AtomicReference<>();
+        Thread flusher = new Thread(() -> {
+            try {
+                repository.flush();
+            } catch (DBException ex) {
+                failure.set(ex);
+            }
+        });
+        flusher.start();
+        assertTrue(store.writing.await(5, TimeUnit.SECONDS));
+
+        // Neither in the buffer nor in the store yet
+        assertEquals(0, store.size());
+        assertNotNull(repository.read(measurement.getId()));
+        List<Long> streamed = new ArrayList<>();
+        repository.stream(MeasurementQuery.range(0, 10000), (timestamp, values) -> streamed.add(timestamp));
+        assertEquals(1, streamed.size());
+
+        store.gate.countDown();
+        flusher.join(5000);
+        assertNull(failure.get());
+        assertEquals(1, store.size());
+        assertEquals(measurement.getId(), repository.read(measurement.getId()).getId());
+    }
+}
@@ -0,0 +1,198 @@
+package com.wellmadesoftware.bme280.http;
+
+import com.wellmadesoftware.bme280.chart.ChartGenerator;
+import com.wellmadesoftware.bme280.chart.ImageFormat;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import com.wellmadesoftware.bme280.data.repository.ColumnarMeasurementRepository;
+import com.wellmadesoftware.bme280.data.repository.MeasurementRepository;
+import com.wellmadesoftware.bme280.stats.SlidingWindowStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the server over HTTP on an ephemeral port, backed by a columnar store in a temporary folder.
+ */
+public class ApiServerTest {
+
+    private static final long START = 1497225600000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MeasurementRepository repository;
+    private SlidingWindowStatistics statistics;
+    private ApiServer server;
+
+    @BeforeClass
+    public static void headless() {
+        System.setProperty("java.awt.headless", "true");
+    }
+
+    @Before
+    public void start() throws Exception {
+        repository = new ColumnarMeasurementRepository(folder.newFolder("measurements.columns").getPath());
+        for ( int i = 0; i < 10; i++ ) {
+            repository.create(measurement(START + i * 60000L, 20 + i));
+        }
+        statistics = ChartGenerator.createStatistics();
+        ChartGenerator charts = new ChartGenerator(folder.getRoot().getPath(), ImageFormat.JPEG);
+        server = new ApiServer(0, 2, 4, repository, statistics, charts);
+        server.start();
+    }
+
+    @After
+    public void stop() {
+        server.stop();
+        repository.close();
+    }
+
+    @Test
+    public void latestIsCachedByTimestamp() throws Exception {
+        assertEquals(404, get("/api/latest").getResponseCode());
+
+        server.publish(measurement(START, 21.5f));
+        HttpURLConnection connection = get("/api/latest");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("application/json", connection.getContentType());
+        String body = body(connection);
+        assertTrue(body, body.contains("\"timestamp\":" + START));
+        assertTrue(body, body.contains("\"temperature\":21.5"));
+
+        String etag = connection.getHeaderField("ETag");
+        assertNotNull(etag);
+        assertEquals(304, get("/api/latest", etag).getResponseCode());
+        server.publish(measurement(START + 1, 22));
+        assertEquals(200, get("/api/latest", etag).getResponseCode());
+    }
+
+    @Test
+    public void rangeStreamsJsonAndCsv() throws Exception {
+        String range = "/api/range?start=" + (START + 60000) + "&end=" + (START + 4 * 60000);
+        HttpURLConnection json = get(range + "&channels=temperature");
+        assertEquals(200, json.getResponseCode());
+        assertEquals("[{\"timestamp\":" + (START + 60000) + ",\"temperature\":21.0},"
+                + "{\"timestamp\":" + (START + 120000) + ",\"temperature\":22.0},"
+                + "{\"timestamp\":" + (START + 180000) + ",\"temperature\":23.0}]", body(json));
+
+        HttpURLConnection csv = get(range + "&channels=temperature,humidity&format=csv&limit=2");
+        assertEquals(200, csv.getResponseCode());
+        assertEquals("text/csv", csv.getContentType());
+        assertEquals("timestamp,temperature,humidity\n"
+                + (START + 60000) + ",21.0,42.0\n"
+                + (START + 120000) + ",22.0,42.0\n", body(csv));
+    }
+
+    @Test
+    public void badRequestsAreRejected() throws Exception {
+        assertEquals(400, get("/api/range?channels=wind").getResponseCode());
+        assertEquals(400, get("/api/range?format=xml").getResponseCode());
+        assertEquals(400, get("/api/range?start=yesterday").getResponseCode());
+        assertEquals(404, get("/charts/monthly.jpg").getResponseCode());
+
+        HttpURLConnection post = (HttpURLConnection) url("/api/latest").openConnection();
+        post.setRequestMethod("POST");
+        post.setDoOutput(true);
+        try (OutputStream out = post.getOutputStream()) {
+            out.write('x');
+        }
+        assertEquals(405, post.getResponseCode());
+    }
+
+    @Test
+    public void servesChartsAndMetrics() throws Exception {
+        HttpURLConnection chart = get("/charts/hourly.jpg");
+        assertEquals(200, chart.getResponseCode());
+        assertEquals("image/jpeg", chart.getContentType());
+        byte[] jpeg = bytes(chart);
+        assertEquals((byte) 0xFF, jpeg[0]);
+        assertEquals((byte) 0xD8, jpeg[1]);
+        assertEquals(304, get("/charts/hourly.jpg", chart.getHeaderField("ETag")).getResponseCode());
+
+        HttpURLConnection metrics = get("/metrics");
+        assertEquals(200, metrics.getResponseCode());
+        assertTrue(body(metrics).contains("# TYPE "));
+    }
+
+    @Test
+    public void eventsStreamPublishedMeasurements() throws Exception {
+        HttpURLConnection connection = get("/api/events");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("text/event-stream", connection.getContentType());
+        long deadline = System.currentTimeMillis() + 5000;
+        while ( server.getSubscriberCount() == 0 && System.currentTimeMillis() < deadline ) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, server.getSubscriberCount());
+
+        server.publish(measurement(START + 5, 19));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ( (line = reader.readLine()) != null && !line.equals("event: measurement") ) {
+                // Keep-alive comments
+            }
+            assertEquals("event: measurement", line);
+            String data = reader.readLine();
+            assertTrue(data, data.startsWith("data: {\"timestamp\":" + (START + 5)));
+        }
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http://localhost:" + server.getPort() + path);
+    }
+
+    private HttpURLConnection get(String path) throws IOException {
+        return get(path, null);
+    }
+
+    private HttpURLConnection get(String path, String etag) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url(path).openConnection();
+        connection.setReadTimeout(5000);
+        if ( etag != null ) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        return connection;
+    }
+
+    private static byte[] bytes(HttpURLConnection connection) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ( (n = in.read(buffer)) > 0 ) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static String body(HttpURLConnection connection) throws IOException {
+        return new String(bytes(connection), StandardCharsets.UTF_8);
+    }
+
+    private static Measurement measurement(long timestamp, float temperature) {
+        Measurement measurement = new Measurement();
+        measurement.setTimestamp(timestamp);
+        measurement.setTemperature(temperature);
+        measurement.setHumidity(42);
+        measurement.setPressure(101325);
+        return measurement;
+    }
+}
@@ -0,0 +1,115 @@
+package com.wellmadesoftware.bme280.pipeline;
+
+import com.wellmadesoftware.bme280.metrics.Metrics;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that ticks land on whole multiples of the period, that overruns skip ticks rather than
+ * drift, and that what the scheduler counts reaches the metrics.
+ */
+public class SamplingSchedulerTest {
+
+    @Test
+    public void deadlinesAreWholePeriods() {
+        SamplingScheduler scheduler = new SamplingScheduler(60000);
+        assertEquals(60000, scheduler.nextDeadline(0));
+        assertEquals(60000, scheduler.nextDeadline(59999));
+        assertEquals(120000, scheduler.nextDeadline(60000));
+        assertEquals(0, scheduler.nextDeadline(-1));
+        assertEquals(-60000, scheduler.nextDeadline(-60001));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void periodMustBePositive() {
+        new SamplingScheduler(0);
+    }
+
+    @Test
+    public void runsOnConsecutiveDeadlines() throws Exception {
+        SamplingScheduler scheduler = new SamplingScheduler(100);
+        long jitters = Metrics.histogram("bme280_sample_jitter_seconds", "").getCount();
+        List<Long> deadlines = run(scheduler, 5, deadline -> { });
+
+        for ( int i = 0; i < deadlines.size(); i++ ) {
+            assertEquals(0, deadlines.get(i) % 100);
+            if ( i > 0 ) {
+                assertEquals(deadlines.get(i - 1) + 100, (long) deadlines.get(i));
+            }
+        }
+        assertEquals(5, scheduler.getTicks());
+        assertTrue(Metrics.histogram("bme280_sample_jitter_seconds", "").getCount() - jitters >= 5);
+        assertTrue(scheduler.getMaxJitterMicros() >= scheduler.getMeanJitterMicros());
+    }
+
+    @Test
+    public void overrunSkipsTicks() throws Exception {
+        SamplingScheduler scheduler = new SamplingScheduler(100);
+        long missed = Metrics.counter("bme280_sample_missed_ticks_total", "").getCount();
+        List<Long> deadlines = new CopyOnWriteArrayList<>();
+        run(scheduler, 3, deadline -> {
+            if ( deadlines.isEmpty() ) {
+                // Overrun the first tick by more than two periods
+                Thread.sleep(250);
+            }
+            deadlines.add(deadline);
+        });
+
+        long gap = deadlines.get(1) - deadlines.get(0);
+        assertEquals(0, gap % 100);
+        assertTrue("gap " + gap, gap >= 300);
+        assertTrue(scheduler.getMissedTicks() >= 2);
+        assertEquals(scheduler.getMissedTicks(),
+                Metrics.counter("bme280_sample_missed_ticks_total", "").getCount() - missed);
+    }
+
+    @Test
+    public void failingTaskKeepsSchedule() throws Exception {
+        SamplingScheduler scheduler = new SamplingScheduler(20);
+        run(scheduler, 3, deadline -> {
+            throw new IllegalStateException("Sensor gone");
+        });
+        assertEquals(3, scheduler.getTicks());
+    }
+
+    @Test
+    public void stopWakesWaitingScheduler() throws Exception {
+        SamplingScheduler scheduler = new SamplingScheduler(3600000);
+        Thread runner = new Thread(() -> scheduler.run(deadline -> { }));
+        runner.start();
+        Thread.sleep(50);
+        scheduler.stop();
+        runner.join(1000);
+        assertFalse(runner.isAlive());
+        assertEquals(0, scheduler.getTicks());
+    }
+
+    /**
+     * Run the task until it has run the given number of times
+     *
+     * @return the deadlines it ran for
+     */
+    private static List<Long> run(SamplingScheduler scheduler, int ticks, SamplingScheduler.Task task) throws InterruptedException {
+        List<Long> deadlines = new CopyOnWriteArrayList<>();
+        Thread runner = new Thread(() -> scheduler.run(deadline -> {
+            try {
+                task.run(deadline);
+            } finally {
+                deadlines.add(deadline);
+                if ( deadlines.size() == ticks ) {
+                    scheduler.stop();
+                }
+            }
+        }));
+        runner.start();
+        runner.join(10000);
+        assertFalse(runner.isAlive());
+        return deadlines;
+    }
+}
@@ -0,0 +1,124 @@
+package com.wellmadesoftware.bme280.pipeline;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks each backpressure policy against a handler held up on a latch, and that closing hands
+ * over what is queued.
+ */
+public class StageTest {
+
+    private final List<Integer> handled = new CopyOnWriteArrayList<>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Stage<Integer> stage;
+
+    @After
+    public void close() {
+        release.countDown();
+        stage.close(5000);
+    }
+
+    /**
+     * A stage whose handler waits for release on the first item
+     */
+    private Stage<Integer> heldUp(int capacity, BackpressurePolicy policy) throws InterruptedException {
+        stage = new Stage<>("test", capacity, policy, item -> {
+            started.countDown();
+            release.await();
+            handled.add(item);
+        });
+        assertTrue(stage.offer(0));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return stage;
+    }
+
+    @Test
+    public void handlesInOrderAndDrainsOnClose() {
+        stage = new Stage<>("test", 100, BackpressurePolicy.DROP, handled::add);
+        for ( int i = 0; i < 50; i++ ) {
+            assertTrue(stage.offer(i));
+        }
+        stage.close(5000);
+        assertEquals(50, handled.size());
+        assertEquals(50, stage.getHandled());
+        for ( int i = 0; i < 50; i++ ) {
+            assertEquals(i, (int) handled.get(i));
+        }
+        assertFalse(stage.offer(50));
+    }
+
+    @Test
+    public void dropDiscardsNewest() throws Exception {
+        heldUp(2, BackpressurePolicy.DROP);
+        assertTrue(stage.offer(1));
+        assertTrue(stage.offer(2));
+        assertFalse(stage.offer(3));
+        assertFalse(stage.offer(4));
+        assertEquals(2, stage.getDropped());
+
+        release.countDown();
+        stage.close(5000);
+        assertEquals(Arrays.asList(0, 1, 2), handled);
+    }
+
+    @Test
+    public void coalesceKeepsNewest() throws Exception {
+        heldUp(2, BackpressurePolicy.COALESCE);
+        assertTrue(stage.offer(1));
+        assertTrue(stage.offer(2));
+        assertFalse(stage.offer(3));
+        assertFalse(stage.offer(4));
+        assertEquals(2, stage.getDropped());
+
+        release.countDown();
+        stage.close(5000);
+        assertEquals(Arrays.asList(0, 3, 4), handled);
+    }
+
+    @Test
+    public void blockWaitsForRoom() throws Exception {
+        heldUp(1, BackpressurePolicy.BLOCK);
+        assertTrue(stage.offer(1));
+        Thread producer = new Thread(() -> stage.offer(2));
+        producer.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while ( producer.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline ) {
+            Thread.sleep(5);
+        }
+        assertEquals(Thread.State.WAITING, producer.getState());
+
+        release.countDown();
+        producer.join(5000);
+        stage.close(5000);
+        assertEquals(Arrays.asList(0, 1, 2), handled);
+        assertEquals(0, stage.getDropped());
+    }
+
+    @Test
+    public void failingHandlerCarriesOn() {
+        stage = new Stage<>("test", 10, BackpressurePolicy.DROP, item -> {
+            if ( item % 2 == 0 ) {
+                throw new IllegalStateException("Even item " + item);
+            }
+            handled.add(item);
+        });
+        for ( int i = 0; i < 6; i++ ) {
+            stage.offer(i);
+        }
+        stage.close(5000);
+        assertEquals(Arrays.asList(1, 3, 5), handled);
+        assertEquals(6, stage.getHandled());
+    }
+}
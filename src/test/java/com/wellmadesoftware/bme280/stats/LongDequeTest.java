@@ -0,0 +1,62 @@
+package com.wellmadesoftware.bme280.stats;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the ring against ArrayDeque through wrap-around and growth.
+ */
+public class LongDequeTest {
+
+    @Test
+    public void matchesArrayDeque() {
+        LongDeque deque = new LongDeque();
+        ArrayDeque<Long> expected = new ArrayDeque<>();
+        Random random = new Random(3);
+        for ( int i = 0; i < 100000; i++ ) {
+            int op = random.nextInt(10);
+            if ( op < 5 || expected.isEmpty() ) {
+                long value = random.nextLong();
+                deque.addLast(value);
+                expected.addLast(value);
+            } else if ( op < 8 ) {
+                assertEquals((long) expected.pollFirst(), deque.pollFirst());
+            } else {
+                assertEquals((long) expected.pollLast(), deque.pollLast());
+            }
+            assertEquals(expected.size(), deque.size());
+            if ( !expected.isEmpty() ) {
+                assertEquals((long) expected.peekFirst(), deque.peekFirst());
+                assertEquals((long) expected.peekLast(), deque.peekLast());
+            }
+        }
+    }
+
+    @Test
+    public void growsWhileWrapped() {
+        LongDeque deque = new LongDeque();
+        // Move the head into the middle of the initial ring, then fill past its capacity
+        for ( int i = 0; i < 10; i++ ) {
+            deque.addLast(i);
+            deque.pollFirst();
+        }
+        for ( long i = 0; i < 100; i++ ) {
+            deque.addLast(i);
+        }
+        for ( long i = 0; i < 100; i++ ) {
+            assertEquals(i, deque.pollFirst());
+        }
+        assertTrue(deque.isEmpty());
+
+        deque.addLast(7);
+        deque.clear();
+        assertTrue(deque.isEmpty());
+        deque.addLast(8);
+        assertEquals(8, deque.peekFirst());
+    }
+}
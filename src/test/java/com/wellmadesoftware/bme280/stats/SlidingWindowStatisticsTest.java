@@ -0,0 +1,100 @@
+package com.wellmadesoftware.bme280.stats;
+
+import com.wellmadesoftware.bme280.data.model.Channel;
+import com.wellmadesoftware.bme280.data.model.HiLowAvg;
+import com.wellmadesoftware.bme280.data.model.Measurement;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the incremental statistics against a direct computation over the same windows.
+ */
+public class SlidingWindowStatisticsTest {
+
+    private static final long MINUTE = 60000;
+
+    @Test
+    public void matchesDirectComputation() {
+        SlidingWindowStatistics statistics = new SlidingWindowStatistics(Channel.TEMPERATURE, Channel.PRESSURE)
+                .addWindow("10m", 10 * MINUTE)
+                .addWindow("1h", 60 * MINUTE);
+        List<Measurement> history = new ArrayList<>();
+        Random random = new Random(11);
+        long now = 1000000000000L;
+        float temperature = 20;
+        // Five hours at uneven intervals, enough to grow and wrap the ring, with some readings missing
+        for ( int i = 0; i < 2000; i++ ) {
+            now += 1000 + random.nextInt(15000);
+            temperature += random.nextGaussian() * 0.3f;
+            Measurement measurement = new Measurement();
+            measurement.setTimestamp(now);
+            measurement.setTemperature(random.nextInt(20) == 0 ? Float.NaN : temperature);
+            measurement.setPressure(101325 + (float) random.nextGaussian() * 50);
+            statistics.add(measurement);
+            history.add(measurement);
+
+            if ( i % 37 == 0 ) {
+                long at = now + random.nextInt(120000);
+                for ( Channel channel : new Channel[] {Channel.TEMPERATURE, Channel.PRESSURE} ) {
+                    assertWindow(history, channel, "10m", 10 * MINUTE, at, statistics.get("10m", channel, at));
+                    assertWindow(history, channel, "1h", 60 * MINUTE, at, statistics.get("1h", channel, at));
+                }
+                now = at;
+            }
+        }
+    }
+
+    @Test
+    public void emptyWindowHasNoReadings() {
+        SlidingWindowStatistics statistics = new SlidingWindowStatistics(Channel.HUMIDITY).addWindow("1m", MINUTE);
+        Measurement measurement = new Measurement();
+        measurement.setTimestamp(0);
+        measurement.setHumidity(40);
+        statistics.add(measurement);
+        assertEquals(1, statistics.get("1m", Channel.HUMIDITY, MINUTE).count);
+
+        HiLowAvg expired = statistics.getAll(Channel.HUMIDITY, MINUTE + 1).get(0);
+        assertEquals(0, expired.count);
+        assertEquals("1m", expired.title);
+
+        // A window emptied out starts over cleanly
+        measurement.setTimestamp(5 * MINUTE);
+        measurement.setHumidity(55.5f);
+        statistics.add(measurement);
+        assertEquals(55.5f, statistics.get("1m", Channel.HUMIDITY, 5 * MINUTE).avg, 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void untrackedChannelIsRejected() {
+        new SlidingWindowStatistics(Channel.HUMIDITY).addWindow("1m", MINUTE).get("1m", Channel.PRESSURE, 0);
+    }
+
+    private static void assertWindow(List<Measurement> history, Channel channel, String title, long duration, long now, HiLowAvg actual) {
+        float hi = Float.NEGATIVE_INFINITY;
+        float low = Float.POSITIVE_INFINITY;
+        double sum = 0;
+        int count = 0;
+        for ( Measurement measurement : history ) {
+            float value = channel.valueOf(measurement);
+            if ( measurement.getTimestamp() >= now - duration && !Float.isNaN(value) ) {
+                hi = Math.max(hi, value);
+                low = Math.min(low, value);
+                sum += value;
+                count ++;
+            }
+        }
+        String at = title + " " + channel + " at " + now;
+        assertEquals(at, title, actual.title);
+        assertEquals(at, count, actual.count);
+        if ( count > 0 ) {
+            assertEquals(at, hi, actual.hi, 0f);
+            assertEquals(at, low, actual.low, 0f);
+            assertEquals(at, sum / count, actual.avg, Math.abs(sum / count) * 1e-6);
+        }
+    }
+}